@@ -0,0 +1,48 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.flock.config.HasKnownMembers;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking lifecycle operations for the local flock member.
+ * <p>
+ * Failures that {@link FlockProtocol} would throw
+ * instead complete the returned future exceptionally.
+ *
+ * @param <T> the common message type.
+ * @see FlockProtocol
+ */
+public interface AsyncFlockProtocol<T> {
+
+    /**
+     * Joins the flock described by the given configuration, as a new member.
+     *
+     * @param knownMembers minimal preexisting configuration.
+     * @return a future completing once joined.
+     * @see FlockProtocol#joinFlock(HasKnownMembers)
+     */
+    CompletableFuture<Void> joinFlockAsync(final HasKnownMembers knownMembers);
+
+    /**
+     * Re-joins the flock described by the given configuration, as an existing member.
+     *
+     * @param memberId     last known member ID.
+     * @param knownMembers last known configuration.
+     * @return a future completing once re-joined.
+     * @see FlockProtocol#reJoinFlock(int, HasKnownMembers)
+     */
+    CompletableFuture<Void> reJoinFlockAsync(final int memberId, final HasKnownMembers knownMembers);
+
+    /**
+     * Sends a message without waiting,
+     * so that many messages may be in flight to each member at once.
+     * The returned future completes with the message's clocks
+     * once every other member has acknowledged the message's local clock value.
+     *
+     * @param message the message.
+     * @return a future of the message's clocks.
+     * @see FlockProtocol#sendMessage(Object)
+     */
+    CompletableFuture<EventClocks> sendMessageAsync(final T message);
+}
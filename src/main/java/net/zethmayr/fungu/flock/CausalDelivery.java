@@ -0,0 +1,228 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.throwing.Result;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.zethmayr.fungu.flock.PermanentNopException.becausePermanentNop;
+import static net.zethmayr.fungu.flock.RetryableNopException.becauseRetryNop;
+import static net.zethmayr.fungu.throwing.ResultFactory.failure;
+import static net.zethmayr.fungu.throwing.ResultFactory.success;
+
+/**
+ * Delivers broadcast messages to a {@link FlockProtocol} in causal order.
+ * <p>
+ * Message clocks here count broadcasts:
+ * a message from member {@code j} with clocks {@code V}
+ * is deliverable once {@code V[j] - 1} messages from {@code j}
+ * and {@code V[k]} messages from each other member {@code k} have been delivered.
+ * Messages arriving early are held back,
+ * indexed by the first (member, count) they are missing,
+ * so each delivery examines only the messages waiting on it.
+ * A message the downstream rejects is not counted as delivered,
+ * so messages which follow it stay held back until it is offered again and accepted.
+ * <p>
+ * All operations are serialized.
+ *
+ * @param <T> the common message type.
+ */
+public final class CausalDelivery<T> {
+
+    private final Object lock = new Object();
+    private final FlockProtocol<T> downstream;
+    private final long[] delivered;
+    private final Map<Dependency, List<Held<T>>> waiting = new HashMap<>();
+
+    private int depth;
+    private int maxDepth;
+    private long deliveredCount;
+    private long heldBackCount;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    record Dependency(int member, long count) {
+    }
+
+    private record Held<T>(T message, EventClocks sent, long heldSince) {
+    }
+
+    /**
+     * Counters describing the hold-back queue.
+     *
+     * @param depth          the number of messages currently held back.
+     * @param maxDepth       the most messages held back at once.
+     * @param delivered      the number of messages delivered.
+     * @param heldBack       the number of delivered messages that were held back.
+     * @param totalWaitNanos the total time delivered messages were held back.
+     * @param maxWaitNanos   the longest time a delivered message was held back.
+     */
+    public record Metrics(int depth, int maxDepth, long delivered, long heldBack,
+                          long totalWaitNanos, long maxWaitNanos) {
+
+        /**
+         * Returns the mean time held back, over messages that were held back.
+         *
+         * @return the mean wait, or zero if none waited.
+         */
+        public long meanWaitNanos() {
+            return heldBack == 0 ? 0L : totalWaitNanos / heldBack;
+        }
+    }
+
+    /**
+     * Creates a delivery stage with the given broadcast counts already delivered.
+     *
+     * @param downstream      receives messages in causal order.
+     * @param deliveredCounts the number of messages already delivered from each member.
+     */
+    public CausalDelivery(final FlockProtocol<T> downstream, final long[] deliveredCounts) {
+        this.downstream = downstream;
+        this.delivered = deliveredCounts.clone();
+    }
+
+    /**
+     * Accepts an arriving message, delivering it and any messages it unblocks,
+     * or holding it back until its dependencies are delivered.
+     *
+     * @param message the message.
+     * @param sent    the sender and broadcast counts of the message.
+     * @return the result of each delivery this arrival caused, in delivery order;
+     * empty if the message was held back.
+     * @throws RetryableNopException if the clock vectors are different lengths.
+     * @throws PermanentNopException if the message was already delivered.
+     */
+    public List<Result<T, NopException>> offer(final T message, final EventClocks sent) throws NopException {
+        final long[] clocks = sent.clocks();
+        final int sender = sent.memberId();
+        synchronized (lock) {
+            if (clocks.length != delivered.length) {
+                throw becauseRetryNop("Size disagreement");
+            }
+            if (clocks[sender] <= delivered[sender]) {
+                throw becausePermanentNop("Already delivered");
+            }
+            final List<Result<T, NopException>> results = new ArrayList<>();
+            final Deque<Held<T>> ready = new ArrayDeque<>();
+            route(new Held<>(message, sent, -1L), ready, results);
+            while (!ready.isEmpty()) {
+                deliverWithinLock(ready.poll(), ready, results);
+            }
+            return results;
+        }
+    }
+
+    private void route(final Held<T> held, final Deque<Held<T>> ready, final List<Result<T, NopException>> results) {
+        final long[] clocks = held.sent().clocks();
+        final int sender = held.sent().memberId();
+        if (clocks[sender] <= delivered[sender]) {
+            // a duplicate that was held back alongside its original
+            dropDuplicate(held, results);
+            return;
+        }
+        final Dependency missing = missing(clocks, sender);
+        if (missing == null) {
+            ready.add(held);
+            return;
+        }
+        final Held<T> holding;
+        if (held.heldSince() < 0) {
+            holding = new Held<>(held.message(), held.sent(), System.nanoTime());
+            maxDepth = Math.max(maxDepth, ++depth);
+        } else {
+            holding = held;
+        }
+        waiting.computeIfAbsent(missing, d -> new ArrayList<>(1)).add(holding);
+    }
+
+    private void dropDuplicate(final Held<T> held, final List<Result<T, NopException>> results) {
+        if (held.heldSince() >= 0) {
+            depth--;
+        }
+        results.add(failure(becausePermanentNop("Already delivered")));
+    }
+
+    private Dependency missing(final long[] clocks, final int sender) {
+        if (clocks[sender] != delivered[sender] + 1) {
+            return new Dependency(sender, clocks[sender] - 1);
+        }
+        for (int k = 0; k < clocks.length; k++) {
+            if (k != sender && clocks[k] > delivered[k]) {
+                return new Dependency(k, clocks[k]);
+            }
+        }
+        return null;
+    }
+
+    private void deliverWithinLock(final Held<T> held, final Deque<Held<T>> ready, final List<Result<T, NopException>> results) {
+        final int sender = held.sent().memberId();
+        final long count = held.sent().clocks()[sender];
+        if (count <= delivered[sender]) {
+            // a duplicate that became ready alongside its original
+            dropDuplicate(held, results);
+            return;
+        }
+        if (held.heldSince() >= 0) {
+            depth--;
+        }
+        try {
+            downstream.receiveMessage(held.message(), held.sent().clocks());
+        } catch (final NopException e) {
+            // not delivered, so whatever follows it stays held back
+            results.add(failure(e));
+            return;
+        }
+        delivered[sender] = count;
+        deliveredCount++;
+        if (held.heldSince() >= 0) {
+            final long waited = System.nanoTime() - held.heldSince();
+            heldBackCount++;
+            totalWaitNanos += waited;
+            maxWaitNanos = Math.max(maxWaitNanos, waited);
+        }
+        results.add(success(held.message()));
+        final List<Held<T>> unblocked = waiting.remove(new Dependency(sender, count));
+        if (unblocked != null) {
+            for (final Held<T> next : unblocked) {
+                route(next, ready, results);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of messages delivered from each member.
+     *
+     * @return the delivered counts.
+     */
+    public long[] delivered() {
+        synchronized (lock) {
+            return delivered.clone();
+        }
+    }
+
+    /**
+     * Returns the number of messages currently held back.
+     *
+     * @return the queue depth.
+     */
+    public int depth() {
+        synchronized (lock) {
+            return depth;
+        }
+    }
+
+    /**
+     * Returns the hold-back counters as of the time of call.
+     *
+     * @return a metrics snapshot.
+     */
+    public Metrics metrics() {
+        synchronized (lock) {
+            return new Metrics(depth, maxDepth, deliveredCount, heldBackCount, totalWaitNanos, maxWaitNanos);
+        }
+    }
+}
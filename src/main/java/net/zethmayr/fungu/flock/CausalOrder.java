@@ -0,0 +1,74 @@
+package net.zethmayr.fungu.flock;
+
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.BOTH;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.SOME_GREATER;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.SOME_LESSER;
+
+/**
+ * The causal relation of a first clock vector to a second,
+ * distinguishing identical from concurrent vectors.
+ */
+public enum CausalOrder {
+    /**
+     * The vectors are identical.
+     */
+    EQUAL,
+    /**
+     * The first vector strictly precedes (is obsoleted by) the second.
+     */
+    BEFORE,
+    /**
+     * The first vector strictly follows (obsoletes) the second.
+     */
+    AFTER,
+    /**
+     * Neither vector precedes the other.
+     */
+    CONCURRENT;
+
+    private static final CausalOrder[] BY_FLAGS = new CausalOrder[BOTH + 1];
+
+    static {
+        BY_FLAGS[0] = EQUAL;
+        BY_FLAGS[SOME_LESSER] = BEFORE;
+        BY_FLAGS[SOME_GREATER] = AFTER;
+        BY_FLAGS[BOTH] = CONCURRENT;
+    }
+
+    /**
+     * Returns the relation for the given comparison flags.
+     *
+     * @param orderFlags flags from {@link FlockArrayUtilities#orderFlags(long[], long[])}.
+     * @return the causal relation.
+     */
+    static CausalOrder ofFlags(final int orderFlags) {
+        return BY_FLAGS[orderFlags];
+    }
+
+    /**
+     * Returns the relation of the second vector to the first.
+     *
+     * @return the reversed relation.
+     */
+    public CausalOrder reversed() {
+        return switch (this) {
+            case BEFORE -> AFTER;
+            case AFTER -> BEFORE;
+            default -> this;
+        };
+    }
+
+    /**
+     * Returns the equivalent {@link Comparable} partial ordering result,
+     * where both equal and concurrent vectors compare as {@code 0}.
+     *
+     * @return a comparison result.
+     */
+    public int comparison() {
+        return switch (this) {
+            case BEFORE -> -1;
+            case AFTER -> 1;
+            default -> 0;
+        };
+    }
+}
@@ -0,0 +1,267 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.flock.FlockClocks.ClockData;
+
+import java.nio.ByteBuffer;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseStaticsOnly;
+
+/**
+ * Reads and writes {@link EventClocks} as compact binary.
+ * <p>
+ * The encoding is a flags byte, the member ID and vector length as unsigned varints,
+ * then each clock value as a zigzag varint.
+ * When a reference vector of the same length is given,
+ * values are written as deltas against it,
+ * so vectors close to the last one exchanged with a peer take about a byte per member.
+ * The reader must then supply the same reference.
+ * <p>
+ * Values are transferred directly between the buffer and the vector,
+ * without intermediate arrays, so direct buffers are read and written in place.
+ */
+public final class ClockCodec {
+
+    private ClockCodec() {
+        throw becauseStaticsOnly();
+    }
+
+    /**
+     * Flags values written as deltas against a reference vector.
+     */
+    static final byte DELTA = 1;
+
+    private static final int MAX_VARINT_BYTES = 10;
+
+    /**
+     * Writes the given clocks without a reference vector.
+     *
+     * @param clocks the clocks.
+     * @param target the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public static void write(final EventClocks clocks, final ByteBuffer target) {
+        write(clocks, null, target);
+    }
+
+    /**
+     * Writes the given clocks,
+     * as deltas against the reference vector if it is the same length.
+     *
+     * @param clocks    the clocks.
+     * @param reference a reference vector, or {@code null}.
+     * @param target    the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public static void write(final EventClocks clocks, final long[] reference, final ByteBuffer target) {
+        final long[] values = clocks.clocks();
+        final boolean delta = reference != null && reference.length == values.length;
+        target.put(delta ? DELTA : 0);
+        writeVarLong(clocks.memberId(), target);
+        writeVarLong(values.length, target);
+        for (int n = 0; n < values.length; n++) {
+            writeVarLong(zigzag(delta ? values[n] - reference[n] : values[n]), target);
+        }
+    }
+
+    /**
+     * Returns the number of bytes {@link #write(EventClocks, long[], ByteBuffer)} will write.
+     *
+     * @param clocks    the clocks.
+     * @param reference a reference vector, or {@code null}.
+     * @return the encoded size.
+     */
+    public static int encodedSize(final EventClocks clocks, final long[] reference) {
+        final long[] values = clocks.clocks();
+        final boolean delta = reference != null && reference.length == values.length;
+        int size = 1 + varLongSize(clocks.memberId()) + varLongSize(values.length);
+        for (int n = 0; n < values.length; n++) {
+            size += varLongSize(zigzag(delta ? values[n] - reference[n] : values[n]));
+        }
+        return size;
+    }
+
+    /**
+     * Reads clocks written without a reference vector.
+     *
+     * @param source the buffer to read from.
+     * @return the clocks.
+     * @throws IllegalArgumentException          if the clocks were written as deltas, or are malformed.
+     * @throws java.nio.BufferUnderflowException if the buffer is truncated.
+     */
+    public static EventClocks read(final ByteBuffer source) {
+        return read(source, null);
+    }
+
+    /**
+     * Reads clocks,
+     * applying deltas against the reference vector if they were written as deltas.
+     *
+     * @param source    the buffer to read from.
+     * @param reference the reference vector used by the writer, or {@code null}.
+     * @return the clocks.
+     * @throws IllegalArgumentException          if the reference does not match, or the clocks are malformed.
+     * @throws java.nio.BufferUnderflowException if the buffer is truncated.
+     */
+    public static EventClocks read(final ByteBuffer source, final long[] reference) {
+        final boolean delta = (source.get() & DELTA) != 0;
+        final int memberId = readVarInt(source);
+        final long[] values = new long[readCount(source, 1)];
+        if (delta && (reference == null || reference.length != values.length)) {
+            throw becauseIllegal("Reference of %s members does not match", values.length);
+        }
+        if (memberId >= values.length) {
+            throw becauseIllegal("ID %s is out of range", memberId);
+        }
+        for (int n = 0; n < values.length; n++) {
+            final long value = unzigzag(readVarLong(source));
+            values[n] = delta ? reference[n] + value : value;
+        }
+        return new ClockData(memberId, values);
+    }
+
+    /**
+     * Writes changed clock values.
+     * Indices are written as gaps from the previous index.
+     *
+     * @param delta  the changed clock values.
+     * @param target the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public static void writeDelta(final ClockDelta delta, final ByteBuffer target) {
+        final int[] indices = delta.indices();
+        final long[] values = delta.values();
+        writeVarLong(delta.memberId(), target);
+        writeVarLong(delta.length(), target);
+        writeVarLong(indices.length, target);
+        for (int d = 0, previous = -1; d < indices.length; previous = indices[d++]) {
+            writeVarLong(indices[d] - previous - 1, target);
+            writeVarLong(zigzag(values[d]), target);
+        }
+    }
+
+    /**
+     * Reads changed clock values.
+     *
+     * @param source the buffer to read from.
+     * @return the changed clock values.
+     * @throws IllegalArgumentException          if the values are malformed.
+     * @throws java.nio.BufferUnderflowException if the buffer is truncated.
+     */
+    public static ClockDelta readDelta(final ByteBuffer source) {
+        final int memberId = readVarInt(source);
+        final int length = readVarInt(source);
+        // each entry is at least a gap byte and a value byte
+        final int size = readCount(source, 2);
+        if (memberId >= length || size > length) {
+            throw becauseIllegal("Delta of %s of %s members is out of range", size, length);
+        }
+        final int[] indices = new int[size];
+        final long[] values = new long[size];
+        for (int d = 0, previous = -1; d < size; previous = indices[d++]) {
+            final long index = previous + 1L + readVarInt(source);
+            if (index >= length) {
+                throw becauseIllegal("ID %s is out of range", index);
+            }
+            indices[d] = (int) index;
+            values[d] = unzigzag(readVarLong(source));
+        }
+        return new ClockDelta(memberId, length, indices, values);
+    }
+
+    /**
+     * Writes an unsigned variable-length integer.
+     *
+     * @param value  the value, read as unsigned.
+     * @param target the buffer to write to.
+     */
+    static void writeVarLong(long value, final ByteBuffer target) {
+        while ((value & ~0x7FL) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned variable-length integer.
+     *
+     * @param source the buffer to read from.
+     * @return the value, read as unsigned.
+     * @throws IllegalArgumentException if the value is too long.
+     */
+    static long readVarLong(final ByteBuffer source) {
+        long value = 0;
+        for (int shift = 0, n = 0; n < MAX_VARINT_BYTES; shift += 7, n++) {
+            final byte next = source.get();
+            value |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                return value;
+            }
+        }
+        throw becauseIllegal("Malformed variable-length value");
+    }
+
+    /**
+     * Reads an unsigned variable-length integer that must fit an int.
+     *
+     * @param source the buffer to read from.
+     * @return the value.
+     * @throws IllegalArgumentException if the value does not fit.
+     */
+    static int readVarInt(final ByteBuffer source) {
+        final long value = readVarLong(source);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw becauseIllegal("Value %s is out of range", value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads the number of entries that follow,
+     * rejecting counts the remaining bytes cannot hold
+     * before anything is allocated for them.
+     *
+     * @param source     the buffer to read from.
+     * @param leastBytes the fewest bytes each entry is written in.
+     * @return the count.
+     * @throws IllegalArgumentException if the count does not fit the remaining bytes.
+     */
+    static int readCount(final ByteBuffer source, final int leastBytes) {
+        final int count = readVarInt(source);
+        if (count > source.remaining() / leastBytes) {
+            throw becauseIllegal("Count %s exceeds the %s bytes remaining", count, source.remaining());
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes needed for an unsigned variable-length integer.
+     *
+     * @param value the value, read as unsigned.
+     * @return the encoded size.
+     */
+    static int varLongSize(final long value) {
+        return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 6) / 7);
+    }
+
+    /**
+     * Maps signed values onto unsigned values so small magnitudes stay small.
+     *
+     * @param value a signed value.
+     * @return the zigzag value.
+     */
+    static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Reverses {@link #zigzag(long)}.
+     *
+     * @param value a zigzag value.
+     * @return the signed value.
+     */
+    static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
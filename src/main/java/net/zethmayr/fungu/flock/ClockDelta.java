@@ -0,0 +1,75 @@
+package net.zethmayr.fungu.flock;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+
+/**
+ * Presents the clock values for a message
+ * which changed since the receiving peer last acknowledged the sender's clocks.
+ *
+ * @param memberId the sending member's ID.
+ * @param length   the sender's full vector length.
+ * @param indices  the changed indices, ascending.
+ * @param values   the changed values, parallel to the indices.
+ */
+public record ClockDelta(int memberId, int length, int[] indices, long[] values) {
+
+    /**
+     * Validates the entries, since receivers search the indices.
+     *
+     * @throws IllegalArgumentException if the indices are not ascending within the length,
+     *                                  or are not parallel to the values.
+     */
+    public ClockDelta {
+        if (length < 0 || indices.length != values.length || indices.length > length) {
+            throw becauseIllegal("Delta of %s indices and %s values is invalid for length %s",
+                    indices.length, values.length, length);
+        }
+        int previous = -1;
+        for (final int index : indices) {
+            if (index <= previous || index >= length) {
+                throw becauseIllegal("Delta index %s is out of order or range", index);
+            }
+            previous = index;
+        }
+    }
+
+    /**
+     * Returns the number of changed entries.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * Returns the entries of the current counters
+     * which differ from the known values.
+     * If the known values are missing or a different length,
+     * all entries are returned.
+     *
+     * @param memberId the local member ID.
+     * @param known    the values known to the peer, or {@code null}.
+     * @param current  the current counters.
+     * @return the changed entries.
+     */
+    static ClockDelta between(final int memberId, final long[] known, final FlockMember[] current) {
+        final boolean comparable = known != null && known.length == current.length;
+        int size = 0;
+        for (int n = 0; n < current.length; n++) {
+            if (!comparable || current[n].get() != known[n]) {
+                size++;
+            }
+        }
+        final int[] indices = new int[size];
+        final long[] values = new long[size];
+        for (int n = 0, d = 0; n < current.length && d < size; n++) {
+            final long value = current[n].get();
+            if (!comparable || value != known[n]) {
+                indices[d] = n;
+                values[d++] = value;
+            }
+        }
+        return new ClockDelta(memberId, current.length, indices, values);
+    }
+}
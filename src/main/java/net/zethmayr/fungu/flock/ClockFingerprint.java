@@ -0,0 +1,73 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.core.declarations.GarbageFree;
+
+/**
+ * A fixed-size summary of a clock vector,
+ * so that peers can check agreement before exchanging values.
+ * <p>
+ * The hash is a sum of one mixed term per index and value,
+ * so it can be updated in place as single values change.
+ * Equal vectors always have equal fingerprints;
+ * unequal vectors have equal fingerprints only by a 64-bit hash collision.
+ *
+ * @param length the vector length.
+ * @param sum    the sum of the values.
+ * @param hash   the sum of the mixed terms.
+ */
+public record ClockFingerprint(int length, long sum, long hash) {
+
+    /**
+     * The encoded size in bytes.
+     */
+    public static final int BYTES = Integer.BYTES + 2 * Long.BYTES;
+
+    private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Returns the fingerprint of the given values.
+     *
+     * @param values clock values.
+     * @return their fingerprint.
+     */
+    public static ClockFingerprint of(final long[] values) {
+        long sum = 0L;
+        long hash = 0L;
+        for (int n = 0; n < values.length; n++) {
+            sum += values[n];
+            hash += term(n, values[n]);
+        }
+        return new ClockFingerprint(values.length, sum, hash);
+    }
+
+    /**
+     * Returns the hash term for a value at an index.
+     *
+     * @param index the index.
+     * @param value the value.
+     * @return the mixed term.
+     */
+    @GarbageFree
+    static long term(final int index, final long value) {
+        return mix(value + mix((index + 1L) * GOLDEN));
+    }
+
+    /**
+     * Returns the hash change when the value at an index changes.
+     *
+     * @param index    the index.
+     * @param oldValue the previous value.
+     * @param newValue the new value.
+     * @return the amount to add to the hash.
+     */
+    @GarbageFree
+    static long change(final int index, final long oldValue, final long newValue) {
+        return term(index, newValue) - term(index, oldValue);
+    }
+
+    private static long mix(final long z) {
+        long x = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+}
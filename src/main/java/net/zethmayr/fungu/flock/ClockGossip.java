@@ -0,0 +1,295 @@
+package net.zethmayr.fungu.flock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+
+/**
+ * Spreads clock values between messages,
+ * by periodically exchanging {@link FlockClocks#digest(URI) digests} with random peers,
+ * so that idle members stay near-converged
+ * and their next message does not carry a large merge.
+ * <p>
+ * Each exchange first compares {@link ClockFingerprint fingerprints},
+ * and only on disagreement pushes the values changed since the peer last acknowledged them,
+ * and merges the peer's reply, neither counting as a local event.
+ * The caller supplies the {@link Exchange} over its own transport,
+ * and on the receiving side passes each digest to {@link #exchanged(URI, ClockDelta)}.
+ * {@link GossipSettings} bound the interval, fanout and entries sent per round.
+ */
+public final class ClockGossip implements Closeable {
+
+    private final FlockClocks clocks;
+    private final Exchange exchange;
+    private final GossipSettings settings;
+    private final Random random;
+    private final Object lock = new Object();
+
+    private final AtomicLong rounds = new AtomicLong();
+    private final AtomicLong exchanges = new AtomicLong();
+    private final AtomicLong agreements = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong entriesSent = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+    private boolean ownScheduler;
+    private ScheduledFuture<?> next;
+    private boolean closed;
+
+    /**
+     * Delivers a digest to a peer and returns the peer's reply.
+     */
+    @FunctionalInterface
+    public interface Exchange {
+
+        /**
+         * Sends the digest to the peer,
+         * which should pass it to {@link ClockGossip#exchanged(URI, ClockDelta)}.
+         *
+         * @param peer   the peer's location.
+         * @param digest the local changed clock values.
+         * @return the peer's changed clock values, or {@code null} for none.
+         * @throws IOException  if the peer could not be reached.
+         * @throws NopException if the peer rejected the digest.
+         */
+        ClockDelta exchange(final URI peer, final ClockDelta digest) throws IOException, NopException;
+
+        /**
+         * Sends the fingerprint to the peer,
+         * which should pass it to {@link ClockGossip#agrees(ClockFingerprint)}.
+         * By default, assumes disagreement so that every exchange sends a digest.
+         *
+         * @param peer        the peer's location.
+         * @param fingerprint the local clock fingerprint.
+         * @return whether the peer's clocks agree.
+         * @throws IOException if the peer could not be reached.
+         */
+        default boolean agrees(final URI peer, final ClockFingerprint fingerprint) throws IOException {
+            return false;
+        }
+    }
+
+    /**
+     * What one round did.
+     *
+     * @param contacted the number of peers contacted.
+     * @param agreed    the number of peers whose fingerprints matched, so were sent no entries.
+     * @param entries   the number of clock entries sent.
+     * @param failed    the number of exchanges which failed.
+     */
+    public record Round(int contacted, int agreed, int entries, int failed) {
+    }
+
+    /**
+     * Counters over all rounds.
+     *
+     * @param rounds      the number of rounds run.
+     * @param exchanges   the number of peers contacted.
+     * @param agreements  the number of peers whose fingerprints matched.
+     * @param failures    the number of exchanges which failed.
+     * @param entriesSent the number of clock entries sent.
+     */
+    public record Metrics(long rounds, long exchanges, long agreements, long failures, long entriesSent) {
+    }
+
+    /**
+     * Creates a stopped gossip scheduler.
+     *
+     * @param clocks   the local clocks.
+     * @param exchange delivers digests to peers.
+     * @param settings the round tuning.
+     * @param random   chooses peers and jitter.
+     */
+    public ClockGossip(final FlockClocks clocks, final Exchange exchange,
+                       final GossipSettings settings, final Random random) {
+        this.clocks = clocks;
+        this.exchange = exchange;
+        this.settings = settings;
+        this.random = random;
+    }
+
+    /**
+     * Starts rounds on a new daemon thread, stopped by {@link #close()}.
+     *
+     * @throws IllegalStateException if already started or closed.
+     */
+    public void start() {
+        final ScheduledExecutorService own = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "clock-gossip");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            start(own);
+        } catch (final IllegalStateException e) {
+            own.shutdown();
+            throw e;
+        }
+        synchronized (lock) {
+            ownScheduler = true;
+        }
+    }
+
+    /**
+     * Starts rounds on the given scheduler,
+     * which is not shut down by {@link #close()}.
+     *
+     * @param scheduler runs rounds.
+     * @throws IllegalStateException if already started or closed.
+     */
+    public void start(final ScheduledExecutorService scheduler) {
+        synchronized (lock) {
+            if (closed || this.scheduler != null) {
+                throw new IllegalStateException(closed ? "Closed" : "Already started");
+            }
+            this.scheduler = scheduler;
+            scheduleWithinLock();
+        }
+    }
+
+    private void scheduleWithinLock() {
+        final long delay;
+        synchronized (random) {
+            delay = settings.nextDelayNanos(random.nextDouble());
+        }
+        next = scheduler.schedule(this::scheduledRound, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void scheduledRound() {
+        try {
+            round();
+        } finally {
+            synchronized (lock) {
+                if (!closed) {
+                    scheduleWithinLock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one round now,
+     * exchanging digests with random peers within the fanout and entry budget.
+     *
+     * @return what the round did.
+     */
+    public Round round() {
+        final List<URI> peers = choosePeers();
+        int contacted = 0;
+        int agreed = 0;
+        int entries = 0;
+        int failed = 0;
+        for (final URI peer : peers) {
+            if (entries >= settings.entryBudget()) {
+                break;
+            }
+            contacted++;
+            try {
+                if (exchange.agrees(peer, clocks.fingerprint())) {
+                    agreed++;
+                    continue;
+                }
+                final long[] known = clocks.clocks();
+                final ClockDelta digest = clocks.digest(peer);
+                entries += digest.size();
+                final ClockDelta reply = exchange.exchange(peer, digest);
+                clocks.acknowledge(peer, known);
+                if (reply != null) {
+                    clocks.digestReceived(reply);
+                }
+            } catch (final IOException | NopException e) {
+                failed++;
+                clocks.forget(peer);
+            }
+        }
+        rounds.incrementAndGet();
+        exchanges.addAndGet(contacted);
+        agreements.addAndGet(agreed);
+        failures.addAndGet(failed);
+        entriesSent.addAndGet(entries);
+        return new Round(contacted, agreed, entries, failed);
+    }
+
+    private List<URI> choosePeers() {
+        final URI[] locations = clocks.locations();
+        final int self = clocks.clockData().memberId();
+        final List<URI> peers = new ArrayList<>(locations.length);
+        for (int n = 0; n < locations.length; n++) {
+            if (n != self) {
+                peers.add(locations[n]);
+            }
+        }
+        synchronized (random) {
+            final int chosen = Math.min(settings.fanout(), peers.size());
+            for (int n = 0; n < chosen; n++) {
+                final int swap = n + random.nextInt(peers.size() - n);
+                peers.set(swap, peers.set(n, peers.get(swap)));
+            }
+            return peers.subList(0, chosen);
+        }
+    }
+
+    /**
+     * Returns whether a fingerprint received from a peer matches the local clocks.
+     *
+     * @param fingerprint the sender's clock fingerprint.
+     * @return whether the clocks agree.
+     */
+    public boolean agrees(final ClockFingerprint fingerprint) {
+        return clocks.agrees(fingerprint);
+    }
+
+    /**
+     * Merges a digest received from a peer
+     * and returns the local values changed since that peer's last acknowledgement, as the reply.
+     *
+     * @param from   the sending peer's location.
+     * @param digest the sender's changed clock values.
+     * @return the reply digest.
+     * @throws RetryableNopException if the clock vectors are different lengths.
+     * @throws PermanentNopException if the remote advances the local clock
+     */
+    public ClockDelta exchanged(final URI from, final ClockDelta digest) throws NopException {
+        if (from == null) {
+            throw becauseIllegal("No sender location");
+        }
+        clocks.digestReceived(digest);
+        return clocks.digest(from);
+    }
+
+    /**
+     * Returns the counters as of the time of call.
+     *
+     * @return a metrics snapshot.
+     */
+    public Metrics metrics() {
+        return new Metrics(rounds.get(), exchanges.get(), agreements.get(), failures.get(), entriesSent.get());
+    }
+
+    /**
+     * Stops scheduling rounds,
+     * shutting down the scheduler if it was created by {@link #start()}.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            if (next != null) {
+                next.cancel(false);
+            }
+            if (ownScheduler) {
+                scheduler.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.flock.config.HasKnownMembers;
+import net.zethmayr.fungu.flock.config.KnownMember;
+import net.zethmayr.fungu.flock.config.KnownMemberConfigProps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+
+/**
+ * Persists the clocks of a {@link FlockClocks} member to a memory-mapped file,
+ * for {@link FlockProtocol#reJoinFlock(int, HasKnownMembers) re-joining} after a restart.
+ * <p>
+ * Each local event stores only the local clock value into the mapping.
+ * Every {@link #flushEvery()} events, and on {@link FlockClocks#flushJournal()},
+ * all values are stored and the mapping is forced to storage.
+ * Membership changes rewrite the whole journal,
+ * into a temporary file which is then renamed over it,
+ * so a crash during a rewrite leaves the previous journal whole.
+ * <p>
+ * Since up to {@link #flushEvery()} local events may not have reached storage,
+ * {@link #recover(Path) recovery} advances the local clock by that many,
+ * so sequence values are never reused.
+ * <p>
+ * A journal is written only by the clocks it is {@link FlockClocks#journalTo(ClockJournal) attached} to,
+ * within their lock.
+ */
+public final class ClockJournal implements Closeable {
+
+    private static final int MAGIC = 0x464c4b4a;
+    private static final int MEMBER_ID = 4;
+    private static final int LENGTH = 8;
+    private static final int FLUSH_EVERY = 12;
+    private static final int LOCATION_BYTES = 16;
+    private static final int VALUES = 24;
+    private static final int NO_LOCATION = -1;
+
+    private final Path path;
+    private final int flushEvery;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int length;
+    private int localOffset;
+    private long sinceFlush;
+
+    private ClockJournal(final Path path, final FileChannel channel, final int flushEvery) {
+        this.path = path;
+        this.channel = channel;
+        this.flushEvery = flushEvery;
+    }
+
+    /**
+     * Opens a journal at the given path, creating the file if needed.
+     * Any existing contents are replaced once the journal is attached.
+     *
+     * @param path       the journal file.
+     * @param flushEvery the number of local events between forced writes.
+     * @return an open journal.
+     * @throws IOException              if the file cannot be opened.
+     * @throws IllegalArgumentException if the flush interval is not positive.
+     */
+    public static ClockJournal open(final Path path, final int flushEvery) throws IOException {
+        if (flushEvery <= 0) {
+            throw becauseIllegal("Flush interval %s is not positive", flushEvery);
+        }
+        return new ClockJournal(path, FileChannel.open(path, CREATE, READ, WRITE), flushEvery);
+    }
+
+    /**
+     * Returns the number of local events between forced writes.
+     *
+     * @return the flush interval.
+     */
+    public int flushEvery() {
+        return flushEvery;
+    }
+
+    /**
+     * Replaces the journal contents,
+     * writing them to a temporary file and renaming it over the journal.
+     * If this fails, the journal is left as it was.
+     *
+     * @param memberId  the local member ID.
+     * @param values    all clock values.
+     * @param locations all member locations.
+     * @throws IOException if the replacement cannot be written or moved into place.
+     */
+    void rewrite(final int memberId, final long[] values, final URI[] locations) throws IOException {
+        final byte[][] encoded = new byte[locations.length][];
+        int locationBytes = 0;
+        for (int n = 0; n < locations.length; n++) {
+            encoded[n] = locations[n] == null ? null : locations[n].toString().getBytes(StandardCharsets.UTF_8);
+            locationBytes += Integer.BYTES + (encoded[n] == null ? 0 : encoded[n].length);
+        }
+        final int size = VALUES + values.length * Long.BYTES + locationBytes;
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        final FileChannel replacement = FileChannel.open(temporary, CREATE, READ, WRITE, TRUNCATE_EXISTING);
+        final MappedByteBuffer replacing;
+        try {
+            replacing = replacement.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            for (int n = 0; n < values.length; n++) {
+                replacing.putLong(VALUES + n * Long.BYTES, values[n]);
+            }
+            int offset = VALUES + values.length * Long.BYTES;
+            for (final byte[] location : encoded) {
+                if (location == null) {
+                    replacing.putInt(offset, NO_LOCATION);
+                    offset += Integer.BYTES;
+                } else {
+                    replacing.putInt(offset, location.length).put(offset + Integer.BYTES, location);
+                    offset += Integer.BYTES + location.length;
+                }
+            }
+            replacing.putInt(0, MAGIC)
+                    .putInt(MEMBER_ID, memberId)
+                    .putInt(LENGTH, values.length)
+                    .putInt(FLUSH_EVERY, flushEvery)
+                    .putInt(LOCATION_BYTES, locationBytes);
+            replacing.force();
+            Files.move(temporary, path, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (final IOException | RuntimeException e) {
+            replacement.close();
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        final FileChannel replaced = channel;
+        channel = replacement;
+        mapped = replacing;
+        length = values.length;
+        localOffset = VALUES + memberId * Long.BYTES;
+        sinceFlush = 0;
+        try {
+            replaced.close();
+        } catch (final IOException e) {
+            // the replacement is already in place, and the replaced file is no longer linked
+        }
+    }
+
+    /**
+     * Stores the local clock value,
+     * after it advanced by the given number of local events.
+     *
+     * @param localValue the new local clock value.
+     * @param events     the number of local events the value advanced by.
+     * @return whether a flush is due.
+     */
+    boolean recordLocal(final long localValue, final long events) {
+        mapped.putLong(localOffset, localValue);
+        sinceFlush += events;
+        return sinceFlush >= flushEvery;
+    }
+
+    /**
+     * Returns the number of local events recorded since the last flush,
+     * which recovery must not exceed.
+     *
+     * @return the unflushed event count.
+     */
+    long unflushed() {
+        return sinceFlush;
+    }
+
+    /**
+     * Stores all clock values, which must have the journaled length.
+     *
+     * @param values all clock values.
+     */
+    void write(final long[] values) {
+        if (values.length != length) {
+            throw FlockArrayUtilities.becauseLengthDisagreement();
+        }
+        for (int n = 0; n < values.length; n++) {
+            mapped.putLong(VALUES + n * Long.BYTES, values[n]);
+        }
+    }
+
+    /**
+     * Forces the stored values to storage.
+     */
+    void flush() {
+        mapped.force();
+        sinceFlush = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mapped != null) {
+            flush();
+        }
+        channel.close();
+    }
+
+    /**
+     * Reads the member ID and known members from a journal.
+     *
+     * @param path the journal file.
+     * @return the recovered configuration.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if the file is not a journal, or is truncated or corrupt.
+     */
+    public static Recovery recover(final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, READ)) {
+            final MappedByteBuffer read = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (read.capacity() < VALUES || read.getInt(0) != MAGIC) {
+                throw becauseIllegal("%s is not a clock journal", path);
+            }
+            final int memberId = read.getInt(MEMBER_ID);
+            final int length = read.getInt(LENGTH);
+            final long margin = read.getInt(FLUSH_EVERY);
+            final int locationBytes = read.getInt(LOCATION_BYTES);
+            // each member takes a value and at least a location length
+            if (length < 0 || length > (read.capacity() - VALUES) / (Long.BYTES + Integer.BYTES)
+                    || memberId < 0 || memberId >= length || margin <= 0
+                    || locationBytes < length * Integer.BYTES
+                    || locationBytes > read.capacity() - VALUES - length * Long.BYTES) {
+                throw becauseCorrupt(path);
+            }
+            final int end = VALUES + length * Long.BYTES + locationBytes;
+            final List<KnownMember> members = new ArrayList<>(length);
+            int offset = VALUES + length * Long.BYTES;
+            for (int n = 0; n < length; n++) {
+                if (end - offset < Integer.BYTES) {
+                    throw becauseCorrupt(path);
+                }
+                final int locationLength = read.getInt(offset);
+                offset += Integer.BYTES;
+                if (locationLength != NO_LOCATION && (locationLength < 0 || locationLength > end - offset)) {
+                    throw becauseCorrupt(path);
+                }
+                final KnownMemberConfigProps member = new KnownMemberConfigProps();
+                member.setIndex(n);
+                member.setInitialValue(read.getLong(VALUES + n * Long.BYTES) + (n == memberId ? margin : 0L));
+                if (locationLength != NO_LOCATION) {
+                    final byte[] location = new byte[locationLength];
+                    read.get(offset, location);
+                    member.setLocation(new String(location, StandardCharsets.UTF_8));
+                    offset += locationLength;
+                }
+                members.add(member);
+            }
+            if (offset != end) {
+                throw becauseCorrupt(path);
+            }
+            return new Recovery(memberId, List.copyOf(members));
+        }
+    }
+
+    private static IllegalArgumentException becauseCorrupt(final Path path) {
+        return becauseIllegal("%s is a truncated or corrupt clock journal", path);
+    }
+
+    /**
+     * Configuration recovered from a journal.
+     *
+     * @param memberId     the last known member ID.
+     * @param knownMembers the last known members, in index order.
+     */
+    public record Recovery(int memberId, List<KnownMember> knownMembers) implements HasKnownMembers {
+
+        @Override
+        public List<KnownMember> getKnownMembers() {
+            return knownMembers;
+        }
+
+        /**
+         * Returns the known members as an array,
+         * as accepted by {@link FlockClocks#FlockClocks(int, KnownMember[])}.
+         *
+         * @return the known members.
+         */
+        public KnownMember[] knownMemberArray() {
+            return knownMembers.toArray(KnownMember[]::new);
+        }
+    }
+}
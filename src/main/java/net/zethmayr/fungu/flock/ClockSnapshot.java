@@ -0,0 +1,92 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.core.declarations.GarbageFree;
+import net.zethmayr.fungu.core.declarations.ReuseResults;
+
+import java.util.Arrays;
+
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.rangeCheck;
+
+/**
+ * An immutable view of the clock values as of some version of the local member.
+ * <p>
+ * Individual values are read in place;
+ * only {@link #clocks()} copies.
+ *
+ * @see FlockClocks#snapshot()
+ */
+@ReuseResults
+public final class ClockSnapshot implements EventClocks {
+
+    private final long version;
+    private final int memberId;
+    private final long[] values;
+
+    ClockSnapshot(final long version, final int memberId, final long[] values) {
+        this.version = version;
+        this.memberId = memberId;
+        this.values = values;
+    }
+
+    /**
+     * Returns the mutation count of the source clocks when this snapshot was taken.
+     *
+     * @return the version.
+     */
+    @GarbageFree
+    public long version() {
+        return version;
+    }
+
+    @GarbageFree
+    @Override
+    public int memberId() {
+        return memberId;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Since snapshots are shared, this is a copy.
+     *
+     * @return a copy of the clock values.
+     */
+    @Override
+    public long[] clocks() {
+        return values.clone();
+    }
+
+    /**
+     * Returns the number of clock values.
+     *
+     * @return the vector length.
+     */
+    @GarbageFree
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns a single clock value.
+     *
+     * @param index a member index.
+     * @return the clock value.
+     * @throws IllegalArgumentException if the index is not within the valid range.
+     */
+    @GarbageFree
+    public long clock(final int index) {
+        rangeCheck(index, values);
+        return values[index];
+    }
+
+    @GarbageFree
+    @Override
+    public long localClock() {
+        return values[memberId];
+    }
+
+    @Override
+    public String toString() {
+        return "ClockSnapshot[version=" + version + ", memberId=" + memberId + ", clocks=" + Arrays.toString(values) + "]";
+    }
+}
@@ -2,12 +2,10 @@ package net.zethmayr.fungu.flock;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.ToLongFunction;
-import java.util.stream.IntStream;
 
-import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
-import static net.zethmayr.fungu.flock.FlockArrayUtilities.box;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.orderFlags;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.reversed;
 
 /**
  * Presents a stable view of the clock values for a given event.
@@ -49,6 +47,18 @@ public interface EventClocks extends Comparable<EventClocks> {
         return compareSimilarVectors(clocks(), compared.clocks());
     }
 
+    /**
+     * Returns the causal relation of this event to the given event,
+     * in a single pass over the clock values.
+     *
+     * @param compared the compared event.
+     * @return the causal relation.
+     * @see #causalOrder(long[], long[])
+     */
+    default CausalOrder causalOrder(@NotNull final EventClocks compared) {
+        return causalOrder(clocks(), compared.clocks());
+    }
+
     /**
      * Compares two boxed event timestamp vectors in place.
      * Returns {@code -1} if the first vector strictly precedes (is obsoleted by) the second vector.
@@ -67,33 +77,12 @@ public interface EventClocks extends Comparable<EventClocks> {
             final T[] ourClocks, final ToLongFunction<T> ourUnboxer,
             final U[] theirClocks, final ToLongFunction<U> theirUnboxer
     ) {
-        if (theirClocks.length != ourClocks.length) {
-            throw becauseIllegal("Not comparable");
-        }
-        final AtomicBoolean someOursLesser = new AtomicBoolean(false);
-        final AtomicBoolean someOursGreater = new AtomicBoolean(false);
-        IntStream.range(0, theirClocks.length)
-                .parallel()
-                .forEach(n -> {
-                    if (ourUnboxer.applyAsLong(ourClocks[n]) > theirUnboxer.applyAsLong(theirClocks[n])) {
-                        someOursGreater.set(true);
-                    }
-                    if (ourUnboxer.applyAsLong(ourClocks[n]) < theirUnboxer.applyAsLong(theirClocks[n])) {
-                        someOursLesser.set(true);
-                    }
-                });
-        if (someOursLesser.get() && !someOursGreater.get()) {
-            return -1;
-        }
-        if (someOursGreater.get() && !someOursLesser.get()) {
-            return 1;
-        }
-        return 0;
+        return comparisonOf(orderFlags(ourClocks, ourUnboxer, theirClocks, theirUnboxer));
     }
 
     /**
      * Compares boxed vs unboxed timestamp vectors,
-     * boxing primitives.
+     * unboxing in place.
      *
      * @param ourClocks   the boxed vector.
      * @param ourUnboxer the unboxer for the first vector
@@ -106,12 +95,12 @@ public interface EventClocks extends Comparable<EventClocks> {
             final T[] ourClocks, final ToLongFunction<T> ourUnboxer,
             final long[] theirClocks
     ) {
-        return compareSimilarVectors(ourClocks, ourUnboxer, box(theirClocks), Long::longValue);
+        return comparisonOf(orderFlags(ourClocks, ourUnboxer, theirClocks));
     }
 
     /**
      * Compares unboxed vs boxed timestamp vectors,
-     * boxing primitives.
+     * unboxing in place.
      *
      * @param ourClocks   the unboxed vector.
      * @param theirClocks the boxed vector.
@@ -125,17 +114,91 @@ public interface EventClocks extends Comparable<EventClocks> {
             final U[] theirClocks,
             final ToLongFunction<U> theirUnboxer
     ) {
-        return compareSimilarVectors(box(ourClocks), Long::longValue, theirClocks, theirUnboxer);
+        return comparisonOf(reversed(orderFlags(theirClocks, theirUnboxer, ourClocks)));
     }
 
     /**
      * Compares primitive vs primitive timestamp vectors.
+     * This neither allocates nor boxes for vectors
+     * shorter than the parallel comparison threshold,
+     * and stops as soon as the vectors are known to be concurrent.
+     *
      * @param ourClocks the first (commonly local) vector.
      * @param theirClocks the second (commonly remote) vector.
      * @return a comparison result
      * @see #compareSimilarVectors(Object[], ToLongFunction, Object[], ToLongFunction)
      */
     static int compareSimilarVectors(final long[] ourClocks, final long[] theirClocks) {
-        return compareSimilarVectors(box(ourClocks), Long::longValue, box(theirClocks), Long::longValue);
+        return comparisonOf(orderFlags(ourClocks, theirClocks));
+    }
+
+    /**
+     * Returns the causal relation of two primitive timestamp vectors,
+     * distinguishing identical from concurrent vectors in a single pass.
+     *
+     * @param ourClocks   the first (commonly local) vector.
+     * @param theirClocks the second (commonly remote) vector.
+     * @return the causal relation.
+     * @throws IllegalArgumentException if the vectors are different lengths.
+     */
+    static CausalOrder causalOrder(final long[] ourClocks, final long[] theirClocks) {
+        return CausalOrder.ofFlags(orderFlags(ourClocks, theirClocks));
+    }
+
+    /**
+     * Returns the causal relation of boxed vs unboxed timestamp vectors.
+     *
+     * @param ourClocks   the boxed vector.
+     * @param ourUnboxer  the unboxer for the first vector.
+     * @param theirClocks the unboxed vector.
+     * @param <T>         the first vector's boxing type.
+     * @return the causal relation.
+     * @see #causalOrder(long[], long[])
+     */
+    static <T> CausalOrder causalOrder(
+            final T[] ourClocks, final ToLongFunction<T> ourUnboxer,
+            final long[] theirClocks
+    ) {
+        return CausalOrder.ofFlags(orderFlags(ourClocks, ourUnboxer, theirClocks));
+    }
+
+    /**
+     * Returns the causal relation of unboxed vs boxed timestamp vectors.
+     *
+     * @param ourClocks    the unboxed vector.
+     * @param theirClocks  the boxed vector.
+     * @param theirUnboxer the unboxer for the second vector.
+     * @param <U>          the second vector's boxing type.
+     * @return the causal relation.
+     * @see #causalOrder(long[], long[])
+     */
+    static <U> CausalOrder causalOrder(
+            final long[] ourClocks,
+            final U[] theirClocks, final ToLongFunction<U> theirUnboxer
+    ) {
+        return CausalOrder.ofFlags(reversed(orderFlags(theirClocks, theirUnboxer, ourClocks)));
+    }
+
+    /**
+     * Returns the causal relation of two boxed timestamp vectors.
+     *
+     * @param ourClocks    the first vector.
+     * @param ourUnboxer   the unboxer for the first vector.
+     * @param theirClocks  the second vector.
+     * @param theirUnboxer the unboxer for the second vector.
+     * @param <T>          the first vector's boxing type.
+     * @param <U>          the second vector's boxing type.
+     * @return the causal relation.
+     * @see #causalOrder(long[], long[])
+     */
+    static <T, U> CausalOrder causalOrder(
+            final T[] ourClocks, final ToLongFunction<T> ourUnboxer,
+            final U[] theirClocks, final ToLongFunction<U> theirUnboxer
+    ) {
+        return CausalOrder.ofFlags(orderFlags(ourClocks, ourUnboxer, theirClocks, theirUnboxer));
+    }
+
+    private static int comparisonOf(final int orderFlags) {
+        return CausalOrder.ofFlags(orderFlags).comparison();
     }
 }
@@ -1,5 +1,7 @@
 package net.zethmayr.fungu.flock;
 
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToLongFunction;
 import java.util.stream.IntStream;
 
 import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
@@ -10,6 +12,26 @@ final class FlockArrayUtilities {
         throw becauseStaticsOnly();
     }
 
+    /**
+     * Flags that some first value is less than its second value.
+     */
+    static final int SOME_LESSER = 1;
+
+    /**
+     * Flags that some first value is greater than its second value.
+     */
+    static final int SOME_GREATER = 2;
+
+    /**
+     * Flags that the vectors are concurrent.
+     */
+    static final int BOTH = SOME_LESSER | SOME_GREATER;
+
+    /**
+     * The vector length at which comparisons are split across threads.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+
     static <T> void rangeCheck(final long[] primary, final T[] secondary) {
         if (primary.length != secondary.length) {
             throw becauseLengthDisagreement();
@@ -28,14 +50,117 @@ final class FlockArrayUtilities {
         }
     }
 
-    static Long[] box(final long[] primitives) {
-        final Long[] boxed = new Long[primitives.length];
-        IntStream.range(0, primitives.length)
+    static void stridedCheck(final long[] values, final int stride) {
+        if (stride <= 0 || values.length % stride != 0) {
+            throw becauseIllegal("Stride %s does not divide %s values", stride, values.length);
+        }
+    }
+
+    /**
+     * Compares two vectors element by element,
+     * returning {@link #SOME_LESSER} and/or {@link #SOME_GREATER} flags,
+     * or zero if the vectors are equal.
+     * Stops early once both flags are set.
+     *
+     * @param ours   the first vector.
+     * @param theirs the second vector.
+     * @return the comparison flags.
+     * @throws IllegalArgumentException if the vectors are different lengths.
+     */
+    static int orderFlags(final long[] ours, final long[] theirs) {
+        comparableCheck(ours.length, theirs.length);
+        if (ours.length >= PARALLEL_THRESHOLD) {
+            return parallelOrderFlags(ours.length, n -> Long.compare(ours[n], theirs[n]));
+        }
+        int flags = 0;
+        for (int n = 0; n < ours.length && flags != BOTH; n++) {
+            flags |= orderFlag(ours[n], theirs[n]);
+        }
+        return flags;
+    }
+
+    /**
+     * Compares boxed vs unboxed vectors without boxing.
+     *
+     * @param ours       the boxed vector.
+     * @param ourUnboxer the unboxer for the first vector.
+     * @param theirs     the unboxed vector.
+     * @param <T>        the first vector's boxing type.
+     * @return the comparison flags.
+     * @see #orderFlags(long[], long[])
+     */
+    static <T> int orderFlags(final T[] ours, final ToLongFunction<T> ourUnboxer, final long[] theirs) {
+        comparableCheck(ours.length, theirs.length);
+        if (ours.length >= PARALLEL_THRESHOLD) {
+            return parallelOrderFlags(ours.length, n -> Long.compare(ourUnboxer.applyAsLong(ours[n]), theirs[n]));
+        }
+        int flags = 0;
+        for (int n = 0; n < ours.length && flags != BOTH; n++) {
+            flags |= orderFlag(ourUnboxer.applyAsLong(ours[n]), theirs[n]);
+        }
+        return flags;
+    }
+
+    /**
+     * Compares two boxed vectors.
+     *
+     * @param ours         the first vector.
+     * @param ourUnboxer   the unboxer for the first vector.
+     * @param theirs       the second vector.
+     * @param theirUnboxer the unboxer for the second vector.
+     * @param <T>          the first vector's boxing type.
+     * @param <U>          the second vector's boxing type.
+     * @return the comparison flags.
+     * @see #orderFlags(long[], long[])
+     */
+    static <T, U> int orderFlags(
+            final T[] ours, final ToLongFunction<T> ourUnboxer,
+            final U[] theirs, final ToLongFunction<U> theirUnboxer
+    ) {
+        comparableCheck(ours.length, theirs.length);
+        if (ours.length >= PARALLEL_THRESHOLD) {
+            return parallelOrderFlags(ours.length, n -> Long.compare(
+                    ourUnboxer.applyAsLong(ours[n]), theirUnboxer.applyAsLong(theirs[n])));
+        }
+        int flags = 0;
+        for (int n = 0; n < ours.length && flags != BOTH; n++) {
+            flags |= orderFlag(ourUnboxer.applyAsLong(ours[n]), theirUnboxer.applyAsLong(theirs[n]));
+        }
+        return flags;
+    }
+
+    /**
+     * Returns the flags for the reversed comparison.
+     *
+     * @param flags comparison flags.
+     * @return the flags with first and second vectors exchanged.
+     */
+    static int reversed(final int flags) {
+        return (flags & SOME_LESSER) << 1 | (flags & SOME_GREATER) >> 1;
+    }
+
+    private static int orderFlag(final long ours, final long theirs) {
+        return ours < theirs
+                ? SOME_LESSER
+                : ours > theirs ? SOME_GREATER : 0;
+    }
+
+    private static int parallelOrderFlags(final int length, final IntUnaryOperator comparison) {
+        return IntStream.range(0, length)
                 .parallel()
-                .forEach(n ->
-                        boxed[n] = primitives[n]
-                );
-        return boxed;
+                .map(n -> {
+                    final int compared = comparison.applyAsInt(n);
+                    return compared < 0
+                            ? SOME_LESSER
+                            : compared > 0 ? SOME_GREATER : 0;
+                })
+                .reduce(0, (a, b) -> a | b);
+    }
+
+    private static void comparableCheck(final int ourLength, final int theirLength) {
+        if (ourLength != theirLength) {
+            throw becauseIllegal("Not comparable");
+        }
     }
 
     static IllegalArgumentException becauseOutOfRange(final int index) {
@@ -2,29 +2,39 @@ package net.zethmayr.fungu.flock;
 
 import net.zethmayr.fungu.core.declarations.ReuseResults;
 import net.zethmayr.fungu.flock.config.KnownMember;
+import net.zethmayr.fungu.throwing.Result;
 import net.zethmayr.fungu.throwing.Sink;
 import net.zethmayr.fungu.throwing.ThrowingFunction;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.IntBinaryOperator;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static net.zethmayr.fungu.DecisionHelper.maybeWith;
 import static net.zethmayr.fungu.throwing.ResultFactory.evaluateThrowing;
-import static net.zethmayr.fungu.UponHelper.with;
+import static net.zethmayr.fungu.throwing.ResultFactory.failure;
+import static net.zethmayr.fungu.throwing.ResultFactory.success;
 import static net.zethmayr.fungu.core.ExceptionFactory.becauseImpossible;
 import static net.zethmayr.fungu.flock.EventClocks.compareSimilarVectors;
 import static net.zethmayr.fungu.flock.FlockArrayUtilities.rangeCheck;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.stridedCheck;
 import static net.zethmayr.fungu.flock.FlockClocks.IndexAdjustment.INSERTION;
-import static net.zethmayr.fungu.flock.FlockClocks.IndexAdjustment.NONE;
 import static net.zethmayr.fungu.flock.PermanentNopException.becausePermanentNop;
 import static net.zethmayr.fungu.flock.PermanentNopException.permanentNopBecause;
 import static net.zethmayr.fungu.flock.RetryableNopException.becauseRetryNop;
@@ -34,19 +44,28 @@ import static net.zethmayr.fungu.throwing.Sinkable.sinking;
 /**
  * Implements vector clocks for a process.
  */
-public class FlockClocks {
+public class FlockClocks implements MemberClocks {
 
     private final AtomicInteger memberId;
     private final AtomicReference<FlockMember[]> clocks;
 
-    private record ClockData(int memberId, long[] clocks) implements EventClocks {
+    record ClockData(int memberId, long[] clocks) implements EventClocks {
     }
 
     private final Object lock = new Object();
 
-    private static final Supplier<PermanentNopException> BECAUSE_ADDITION_OBSOLETE =
+    private final AtomicLong version = new AtomicLong();
+    private volatile ClockSnapshot published = new ClockSnapshot(-1L, -1, new long[0]);
+    private long fingerprintSum;
+    private long fingerprintHash;
+    private volatile ClockJournal journal;
+    private volatile LongAdder stripedEvents;
+
+    private final Map<URI, long[]> acknowledged = new ConcurrentHashMap<>();
+
+    static final Supplier<PermanentNopException> BECAUSE_ADDITION_OBSOLETE =
             permanentNopBecause("Addition is obsolete");
-    private static final Supplier<PermanentNopException> BECAUSE_RETIREMENT_OBSOLETE =
+    static final Supplier<PermanentNopException> BECAUSE_RETIREMENT_OBSOLETE =
             permanentNopBecause("Retirement is obsolete");
 
     private static final URI NO_LOCATION = evaluateThrowing(() -> new URI("")).get();
@@ -73,6 +92,7 @@ public class FlockClocks {
                         .mapToObj(x -> new FlockMember(clocks[x], locations[x]))
                         .toArray(FlockMember[]::new)
         );
+        refingerprintWithinLock();
     }
 
     /**
@@ -94,6 +114,7 @@ public class FlockClocks {
                         .apply(initialMembers[n]));
         this.clocks = new AtomicReference<>(initialClocks);
         sink().raiseChecked(URISyntaxException.class);
+        refingerprintWithinLock();
     }
 
     /**
@@ -103,9 +124,67 @@ public class FlockClocks {
      *
      * @return the new local sequence value.
      */
+    @Override
     public long localEvent() {
         synchronized (lock) {
-            return clocks.get()[memberId.getOpaque()].incrementAndGet();
+            foldWithinLock();
+            return advanceLocalWithinLock(1);
+        }
+    }
+
+    private long advanceLocalWithinLock(final long events) {
+        version.incrementAndGet();
+        final int localId = memberId.getOpaque();
+        final long localValue = clocks.get()[localId].addAndGet(events);
+        fingerprintSum += events;
+        fingerprintHash += ClockFingerprint.change(localId, localValue - events, localValue);
+        final ClockJournal current = journal;
+        // a fold advances by many events at once, each of which counts toward the recovery margin
+        if (current != null && current.recordLocal(localValue, events)) {
+            current.write(clocks());
+            current.flush();
+        }
+        return localValue;
+    }
+
+    /**
+     * Switches {@link #locally(Runnable)} to counting local events
+     * on striped per-thread cells, without taking the lock.
+     * Counted events are folded into the local clock,
+     * as one advance, by the next operation which sends, receives,
+     * or reports the clocks under the lock;
+     * so the local clock stays monotonic,
+     * and remote values are still checked against every event that could have been sent.
+     * Until folded, counted events are not seen by {@link #clocks()}.
+     * <p>
+     * Once enabled, the mode stays enabled.
+     */
+    public void stripeLocalEvents() {
+        synchronized (lock) {
+            if (stripedEvents == null) {
+                stripedEvents = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Returns whether {@link #locally(Runnable)} counts on striped cells.
+     *
+     * @return whether striped counting is enabled.
+     * @see #stripeLocalEvents()
+     */
+    public boolean stripesLocalEvents() {
+        return stripedEvents != null;
+    }
+
+    private void foldWithinLock() {
+        final LongAdder striped = stripedEvents;
+        if (striped != null) {
+            // each cell is swapped to zero atomically, so concurrent increments land in this fold or the next
+            final long events = striped.sumThenReset();
+            if (events != 0) {
+                advanceLocalWithinLock(events);
+            }
         }
     }
 
@@ -119,20 +198,71 @@ public class FlockClocks {
      * @throws RetryableNopException if the clock vectors are different lengths.
      * @throws PermanentNopException if the remote advances the local clock
      */
+    @Override
     public EventClocks messageReceived(final long[] sentClocks) throws NopException {
-        final EventClocks clockData;
         synchronized (lock) {
-            final FlockMember[] oldClocks = clocks.get(); // identical reference copy
-            if (sentClocks.length == oldClocks.length) {
-                checkImpersonationWithinLock(sentClocks, NONE, 0);
-                localEvent();
-                mergeValuesOntoCounters(sentClocks, oldClocks); // does not need to update reference
-            } else {
-                throw becauseRetryNop("Size disagreement");
+            return receivedWithinLock(sentClocks, 0, sentClocks.length);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All messages are merged under a single acquisition of the lock.
+     */
+    @Override
+    public List<Result<EventClocks, NopException>> messagesReceived(final long[][] sentClocks) {
+        final List<Result<EventClocks, NopException>> results = new ArrayList<>(sentClocks.length);
+        synchronized (lock) {
+            for (final long[] sent : sentClocks) {
+                results.add(resultWithinLock(sent, 0, sent.length));
             }
-            clockData = clockData();
         }
-        return clockData;
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All messages are merged under a single acquisition of the lock,
+     * reading each message's values in place.
+     */
+    @Override
+    public List<Result<EventClocks, NopException>> messagesReceived(final long[] sentClocks, final int stride) {
+        stridedCheck(sentClocks, stride);
+        final List<Result<EventClocks, NopException>> results = new ArrayList<>(sentClocks.length / stride);
+        synchronized (lock) {
+            for (int offset = 0; offset < sentClocks.length; offset += stride) {
+                results.add(resultWithinLock(sentClocks, offset, stride));
+            }
+        }
+        return results;
+    }
+
+    private Result<EventClocks, NopException> resultWithinLock(final long[] sentClocks, final int offset, final int length) {
+        try {
+            return success(receivedWithinLock(sentClocks, offset, length));
+        } catch (final NopException e) {
+            // only rejections are results; other exceptions propagate as from messageReceived
+            return failure(e);
+        }
+    }
+
+    private EventClocks receivedWithinLock(final long[] sentClocks, final int offset, final int length) throws NopException {
+        final FlockMember[] oldClocks = clocks.get(); // identical reference copy
+        if (length != oldClocks.length) {
+            throw becauseRetryNop("Size disagreement");
+        }
+        checkImpersonation(sentClocks, offset + memberId.get(), getLocalClockWithinLock());
+        localEvent();
+        for (int n = 0; n < length; n++) { // does not need to update reference
+            final long old = oldClocks[n].get();
+            if (sentClocks[offset + n] > old) {
+                oldClocks[n].set(sentClocks[offset + n]);
+                fingerprintChangedWithinLock(n, old, sentClocks[offset + n]);
+            }
+        }
+        return clockData();
     }
 
     enum IndexAdjustment implements IntBinaryOperator {
@@ -161,8 +291,19 @@ public class FlockClocks {
     }
 
     private void checkImpersonationWithinLock(final long[] sentClocks, final IndexAdjustment adjustment, final int changePoint) throws PermanentNopException {
-        final int adjustedId = adjustment.applyAsInt(memberId.get(), changePoint);
-        final long max = getLocalClockWithinLock();
+        checkImpersonation(sentClocks, adjustment.applyAsInt(memberId.get(), changePoint), getLocalClockWithinLock());
+    }
+
+    /**
+     * Rejects remote values which claim to know of local events
+     * which have not yet occurred locally.
+     *
+     * @param sentClocks the remote values.
+     * @param adjustedId the local member ID, as indexed in the remote values.
+     * @param max        the current local clock.
+     * @throws PermanentNopException if the remote advances the local clock.
+     */
+    static void checkImpersonation(final long[] sentClocks, final int adjustedId, final long max) throws PermanentNopException {
         if (sentClocks[adjustedId] > max) {
             throw becausePermanentNop("Remote advance over local");
         }
@@ -198,6 +339,7 @@ public class FlockClocks {
      *
      * @return the clock data for a message.
      */
+    @Override
     public EventClocks messageClocks() {
         /*
          * Note that the internal use of this method
@@ -209,17 +351,273 @@ public class FlockClocks {
         }
     }
 
+    /**
+     * For a message being sent to the given peer,
+     * increments the local clock
+     * and returns the clock values changed since the peer's last acknowledgement.
+     * Until the peer acknowledges clocks of the current length,
+     * all values are returned.
+     *
+     * @param peer the receiving peer's location.
+     * @return the changed clock values for a message.
+     * @see #acknowledge(URI, long[])
+     */
+    public ClockDelta messageDelta(final URI peer) {
+        synchronized (lock) {
+            localEvent();
+            return ClockDelta.between(memberId.get(), acknowledged.get(peer), clocks.get());
+        }
+    }
+
+    /**
+     * Records that the given peer has received the given clock values,
+     * so later deltas to that peer can omit them.
+     * Acknowledgements not of the current membership's length are from an earlier layout,
+     * and are ignored.
+     *
+     * @param peer          the acknowledging peer's location.
+     * @param receivedClocks clock values the peer has received.
+     */
+    public void acknowledge(final URI peer, final long[] receivedClocks) {
+        synchronized (lock) {
+            // under the lock, so the layout cannot change after remapping the other acknowledgements
+            if (receivedClocks.length != clocks.get().length) {
+                return;
+            }
+            acknowledged.merge(peer, receivedClocks.clone(), (known, received) -> {
+                for (int n = 0; n < known.length; n++) {
+                    received[n] = Math.max(known[n], received[n]);
+                }
+                return received;
+            });
+        }
+    }
+
+    /**
+     * Moves acknowledged values to the indices of the changed membership,
+     * since a retirement and an addition can leave the length unchanged.
+     * An added member's value is marked unknown, so the next delta to each peer carries it.
+     */
+    private void remapAcknowledgedWithinLock(final IndexAdjustment adjustment, final int changePoint) {
+        final int length = clocks.get().length;
+        final int oldLength = adjustment == INSERTION ? length - 1 : length + 1;
+        acknowledged.entrySet().removeIf(entry -> entry.getValue().length != oldLength);
+        acknowledged.replaceAll((peer, known) -> {
+            final long[] remapped = new long[length];
+            for (int n = 0; n < known.length; n++) {
+                if (adjustment != INSERTION && n == changePoint) {
+                    continue;
+                }
+                remapped[adjustment.applyAsInt(n, changePoint)] = known[n];
+            }
+            if (adjustment == INSERTION) {
+                remapped[changePoint] = -1L;
+            }
+            return remapped;
+        });
+    }
+
+    /**
+     * Forgets the given peer's acknowledgements,
+     * so the next delta to that peer carries all values.
+     *
+     * @param peer the peer's location.
+     */
+    public void forget(final URI peer) {
+        acknowledged.remove(peer);
+    }
+
+    /**
+     * For a message received with changed clock values only,
+     * increments the local clock
+     * and merges the changed values
+     * without expanding them to a full vector.
+     *
+     * @param sentDelta the remote changed clock values.
+     * @return updated local clocks from the message.
+     * @throws RetryableNopException if the clock vectors are different lengths.
+     * @throws PermanentNopException if the remote advances the local clock
+     */
+    public EventClocks deltaReceived(final ClockDelta sentDelta) throws NopException {
+        synchronized (lock) {
+            checkDeltaWithinLock(sentDelta);
+            localEvent();
+            mergeDeltaWithinLock(sentDelta);
+            return clockData();
+        }
+    }
+
+    /**
+     * Returns the clock values changed since the given peer's last acknowledgement,
+     * without a local event,
+     * for exchanging knowledge of the flock outside of messages.
+     *
+     * @param peer the receiving peer's location.
+     * @return the changed clock values.
+     * @see #messageDelta(URI)
+     * @see #digestReceived(ClockDelta)
+     */
+    public ClockDelta digest(final URI peer) {
+        synchronized (lock) {
+            foldWithinLock();
+            return ClockDelta.between(memberId.get(), acknowledged.get(peer), clocks.get());
+        }
+    }
+
+    /**
+     * Merges changed clock values received outside of messages,
+     * without a local event.
+     *
+     * @param sentDigest the remote changed clock values.
+     * @return updated local clocks.
+     * @throws RetryableNopException if the clock vectors are different lengths.
+     * @throws PermanentNopException if the remote advances the local clock
+     * @see #digest(URI)
+     */
+    public EventClocks digestReceived(final ClockDelta sentDigest) throws NopException {
+        synchronized (lock) {
+            checkDeltaWithinLock(sentDigest);
+            if (mergeDeltaWithinLock(sentDigest)) {
+                version.incrementAndGet();
+            }
+            return clockData();
+        }
+    }
+
+    private void checkDeltaWithinLock(final ClockDelta sentDelta) throws NopException {
+        if (sentDelta.length() != clocks.get().length) {
+            throw becauseRetryNop("Size disagreement");
+        }
+        final int localIndex = Arrays.binarySearch(sentDelta.indices(), memberId.get());
+        if (localIndex >= 0 && sentDelta.values()[localIndex] > getLocalClockWithinLock()) {
+            throw becausePermanentNop("Remote advance over local");
+        }
+    }
+
+    private boolean mergeDeltaWithinLock(final ClockDelta sentDelta) {
+        final FlockMember[] oldClocks = clocks.get();
+        final int[] indices = sentDelta.indices();
+        final long[] values = sentDelta.values();
+        boolean changed = false;
+        for (int d = 0; d < indices.length; d++) {
+            final FlockMember counter = oldClocks[indices[d]];
+            final long old = counter.get();
+            if (values[d] > old) {
+                counter.set(values[d]);
+                fingerprintChangedWithinLock(indices[d], old, values[d]);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
     /**
      * Returns a copy of the clock data as of the time of call.
      *
      * @return a clock data snapshot.
      */
+    @Override
     public EventClocks clockData() {
         synchronized (lock) {
+            foldWithinLock();
             return new ClockData(memberId.get(), clocks());
         }
     }
 
+    /**
+     * Returns an immutable snapshot of the clock data,
+     * shared by all callers until the clocks next change.
+     * Repeated calls without intervening changes
+     * neither lock nor allocate.
+     *
+     * @return the current clock snapshot.
+     */
+    @ReuseResults
+    public ClockSnapshot snapshot() {
+        final ClockSnapshot current = published;
+        final LongAdder striped = stripedEvents;
+        if (current.version() == version.get() && (striped == null || striped.sum() == 0)) {
+            return current;
+        }
+        synchronized (lock) {
+            foldWithinLock();
+            final long changes = version.get();
+            if (published.version() != changes) {
+                published = new ClockSnapshot(changes, memberId.get(), clocks());
+            }
+            return published;
+        }
+    }
+
+    /**
+     * Attaches a journal, replacing its contents with the current clocks.
+     * Later local events and membership changes are written to it.
+     *
+     * @param journal an open journal.
+     * @throws IOException if the journal cannot be written.
+     * @see ClockJournal#recover(java.nio.file.Path)
+     */
+    public void journalTo(@NotNull final ClockJournal journal) throws IOException {
+        synchronized (lock) {
+            foldWithinLock();
+            final FlockMember[] current = clocks.get();
+            journal.rewrite(memberId.get(), clockValues(current), memberLocations(current));
+            this.journal = journal;
+        }
+    }
+
+    /**
+     * Writes all clock values to the attached journal, if any,
+     * and forces them to storage.
+     * Suitable for periodic scheduling.
+     */
+    public void flushJournal() {
+        synchronized (lock) {
+            foldWithinLock();
+            final ClockJournal current = journal;
+            if (current != null) {
+                current.write(clocks());
+                current.flush();
+            }
+        }
+    }
+
+    /**
+     * Rewrites the attached journal, if any, with a proposed membership
+     * and the sent clocks merged onto it,
+     * before the membership change is committed,
+     * so that a failed rewrite leaves the clocks unchanged.
+     *
+     * @param proposedId the local member ID after the change.
+     * @param proposed   the proposed counters.
+     * @param sentClocks the sent clocks, of the proposed length.
+     * @throws UncheckedIOException if the journal cannot be written.
+     */
+    private void rewriteJournalWithinLock(final int proposedId, final FlockMember[] proposed, final long[] sentClocks) {
+        final ClockJournal current = journal;
+        if (current != null) {
+            final long[] values = clockValues(proposed);
+            for (int n = 0; n < values.length; n++) {
+                values[n] = Math.max(values[n], sentClocks[n]);
+            }
+            try {
+                current.rewrite(proposedId, values, memberLocations(proposed));
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of changes to the clocks so far,
+     * for comparison with {@link ClockSnapshot#version()}.
+     *
+     * @return the current version.
+     */
+    public long version() {
+        return version.get();
+    }
+
     /**
      * Runs a local event that
      * will not make reference to the clock values
@@ -227,11 +625,18 @@ public class FlockClocks {
      * <p>
      * Note that sampling the local values from within the event
      * has no guarantee of returning relevant values.
+     * When {@link #stripeLocalEvents() striped}, the event is counted without the lock.
      *
      * @param event a local event.
      */
+    @Override
     public void locally(final Runnable event) {
-        localEvent();
+        final LongAdder striped = stripedEvents;
+        if (striped == null) {
+            localEvent();
+        } else {
+            striped.increment();
+        }
         event.run();
     }
 
@@ -247,6 +652,7 @@ public class FlockClocks {
      *
      * @param clockedEvent an event receiving a unique set of clock values.
      */
+    @Override
     public void locally(final Consumer<EventClocks> clockedEvent) {
         final EventClocks clocks;
         synchronized (lock) {
@@ -257,15 +663,53 @@ public class FlockClocks {
     }
 
     private long getLocalClockWithinLock() {
+        foldWithinLock();
         return clocks.get()[memberId.get()].get();
     }
 
+    /**
+     * Returns a fixed-size summary of the current known clock values,
+     * maintained as values change rather than computed on each call.
+     *
+     * @return the clock fingerprint.
+     */
+    @Override
+    public ClockFingerprint fingerprint() {
+        synchronized (lock) {
+            foldWithinLock();
+            return new ClockFingerprint(clocks.get().length, fingerprintSum, fingerprintHash);
+        }
+    }
+
+    /**
+     * Returns whether the given fingerprint matches the current known clock values,
+     * in which case there is nothing to exchange with its sender.
+     *
+     * @param remote a peer's fingerprint.
+     * @return whether the fingerprints agree.
+     */
+    public boolean agrees(final ClockFingerprint remote) {
+        return fingerprint().equals(remote);
+    }
+
+    private void fingerprintChangedWithinLock(final int index, final long oldValue, final long newValue) {
+        fingerprintSum += newValue - oldValue;
+        fingerprintHash += ClockFingerprint.change(index, oldValue, newValue);
+    }
+
+    private void refingerprintWithinLock() {
+        final ClockFingerprint current = ClockFingerprint.of(clocks());
+        fingerprintSum = current.sum();
+        fingerprintHash = current.hash();
+    }
+
     /**
      * Returns the current local clock value,
      * with no further consistency guarantees.
      *
      * @return the local clock value.
      */
+    @Override
     public long localClock() {
         synchronized (lock) {
             return getLocalClockWithinLock();
@@ -277,12 +721,24 @@ public class FlockClocks {
      *
      * @return the known clock values.
      */
+    @Override
     public long[] clocks() {
         return clockValues(clocks.get());
     }
 
+    @Override
     public URI[] locations() {
-        return Stream.of(clocks.get())
+        return memberLocations(clocks.get());
+    }
+
+    /**
+     * Returns the locations of the given counters.
+     *
+     * @param members some clock counters.
+     * @return the counter locations.
+     */
+    static URI[] memberLocations(final FlockMember[] members) {
+        return Stream.of(members)
                 .map(FlockMember::getLocation)
                 .toArray(URI[]::new);
     }
@@ -294,9 +750,11 @@ public class FlockClocks {
      * @return the counter values.
      */
     static long[] clockValues(final FlockMember[] proposed) {
-        return Stream.of(proposed)
-                .mapToLong(FlockMember::get)
-                .toArray();
+        final long[] values = new long[proposed.length];
+        for (int n = 0; n < values.length; n++) {
+            values[n] = proposed[n].get();
+        }
+        return values;
     }
 
     /**
@@ -308,18 +766,24 @@ public class FlockClocks {
      * @param sentClocks proposed new minimum clocks.
      * @throws PermanentNopException    if the proposed insertion is inconsistent with the current clocks.
      * @throws IllegalArgumentException if the index is not within the valid range.
+     * @throws UncheckedIOException     if the attached journal cannot be rewritten; the membership is unchanged.
      */
+    @Override
     public void addMember(final int newIndex, final URI newLocation, final long[] sentClocks) throws PermanentNopException {
         synchronized (lock) {
             checkImpersonationWithinLock(sentClocks, INSERTION, newIndex);
-            Optional.of(proposeInsertion(newIndex, newLocation))
+            final FlockMember[] proposed = Optional.of(proposeInsertion(newIndex, newLocation))
                     .filter(a -> a.length == sentClocks.length)
                     .filter(a -> compareSimilarVectors(sentClocks, a, FlockMember::get) != -1)
-                    .map(with(a -> mergeValuesOntoCounters(sentClocks, a),
-                            clocks::set))
-                    .map(a -> memberId)
-                    .map(maybeWith(m -> m.get() >= newIndex, AtomicInteger::incrementAndGet))
                     .orElseThrow(BECAUSE_ADDITION_OBSOLETE);
+            final int local = memberId.get();
+            rewriteJournalWithinLock(local >= newIndex ? local + 1 : local, proposed, sentClocks);
+            version.incrementAndGet();
+            mergeValuesOntoCounters(sentClocks, proposed);
+            clocks.set(proposed);
+            memberId.set(local >= newIndex ? local + 1 : local);
+            remapAcknowledgedWithinLock(INSERTION, newIndex);
+            refingerprintWithinLock();
         }
     }
 
@@ -332,7 +796,20 @@ public class FlockClocks {
      * @return new proposed counters accommodating the new index.
      */
     FlockMember[] proposeInsertion(final int newIndex, @NotNull final URI newLocation) {
-        final FlockMember[] oldClocks = clocks.get();
+        return proposeInsertion(clocks.get(), newIndex, newLocation);
+    }
+
+    /**
+     * Returns new proposed counters with
+     * an insertion at the given index,
+     * sharing the given counters.
+     *
+     * @param oldClocks   existing clock counters.
+     * @param newIndex    an index no greater than the number of counters.
+     * @param newLocation the new member's location.
+     * @return new proposed counters accommodating the new index.
+     */
+    static FlockMember[] proposeInsertion(final FlockMember[] oldClocks, final int newIndex, final URI newLocation) {
         final FlockMember[] moreClocks = new FlockMember[oldClocks.length + 1];
         System.arraycopy(oldClocks, 0, moreClocks, 0, newIndex);
         moreClocks[newIndex] = new FlockMember(0L, newLocation);
@@ -370,6 +847,7 @@ public class FlockClocks {
      * @param newIndex an index no greater than the local vector length.
      * @return new proposed values accommodating the new index.
      */
+    @Override
     public long[] proposeInsertValues(final int newIndex) {
         return clockValues(proposeInsertion(newIndex, null));
     }
@@ -384,20 +862,27 @@ public class FlockClocks {
      * @throws PermanentNopException    if the proposed removal is inconsistent with the current clocks.
      * @throws IllegalStateException    if removing the node at this index - we are presumed to have crashed.
      * @throws IllegalArgumentException if the index is not within the valid range.
+     * @throws UncheckedIOException     if the attached journal cannot be rewritten; the membership is unchanged.
      */
+    @Override
     public void retireMember(final int oldIndex, final long[] sentClocks) throws PermanentNopException {
         synchronized (lock) {
             if (memberId.get() == oldIndex) {
                 throw becauseImpossible("This instance %s is already presumed dead", memberId);
             }
-            Optional.of(proposeDeletion(oldIndex))
+            foldWithinLock();
+            final FlockMember[] proposed = Optional.of(proposeDeletion(oldIndex))
                     .filter(a -> a.length == sentClocks.length)
                     .filter(a -> compareSimilarVectors(sentClocks, a, FlockMember::get) != -1)
-                    .map(with(a -> mergeValuesOntoCounters(sentClocks, a),
-                            clocks::set))
-                    .map(a -> memberId)
-                    .map(maybeWith(m -> m.get() > oldIndex, AtomicInteger::decrementAndGet))
                     .orElseThrow(BECAUSE_RETIREMENT_OBSOLETE);
+            final int local = memberId.get();
+            rewriteJournalWithinLock(local > oldIndex ? local - 1 : local, proposed, sentClocks);
+            version.incrementAndGet();
+            mergeValuesOntoCounters(sentClocks, proposed);
+            clocks.set(proposed);
+            memberId.set(local > oldIndex ? local - 1 : local);
+            remapAcknowledgedWithinLock(IndexAdjustment.DELETION, oldIndex);
+            refingerprintWithinLock();
         }
     }
 
@@ -410,7 +895,19 @@ public class FlockClocks {
      * @return new proposed counters removing the given index.
      */
     FlockMember[] proposeDeletion(final int oldIndex) {
-        final FlockMember[] oldClocks = clocks.get();
+        return proposeDeletion(clocks.get(), oldIndex);
+    }
+
+    /**
+     * Returns new proposed counters with
+     * a deletion at the given index,
+     * sharing the given counters.
+     *
+     * @param oldClocks existing clock counters.
+     * @param oldIndex  an index smaller than the number of counters.
+     * @return new proposed counters removing the given index.
+     */
+    static FlockMember[] proposeDeletion(final FlockMember[] oldClocks, final int oldIndex) {
         rangeCheck(oldIndex, oldClocks);
         final FlockMember[] lessClocks = new FlockMember[oldClocks.length - 1];
         System.arraycopy(oldClocks, 0, lessClocks, 0, oldIndex);
@@ -428,6 +925,7 @@ public class FlockClocks {
      * @param oldIndex an index smaller than the local vector length.
      * @return new proposed values removing the given index.
      */
+    @Override
     public long[] proposeDeleteValues(final int oldIndex) {
         return clockValues(proposeDeletion(oldIndex));
     }
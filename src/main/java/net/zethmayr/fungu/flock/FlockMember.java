@@ -38,6 +38,20 @@ class FlockMember {
         return clock.incrementAndGet();
     }
 
+    long addAndGet(final long delta) {
+        return clock.addAndGet(delta);
+    }
+
+    /**
+     * Atomically raises the clock to at least the given value.
+     *
+     * @param newValue a known clock value.
+     * @return the resulting clock value.
+     */
+    long advance(final long newValue) {
+        return clock.accumulateAndGet(newValue, Math::max);
+    }
+
     URI getLocation() {
         return location;
     }
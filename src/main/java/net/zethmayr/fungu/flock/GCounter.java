@@ -0,0 +1,198 @@
+package net.zethmayr.fungu.flock;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.flock.ClockCodec.readCount;
+import static net.zethmayr.fungu.flock.ClockCodec.readVarLong;
+import static net.zethmayr.fungu.flock.ClockCodec.varLongSize;
+import static net.zethmayr.fungu.flock.ClockCodec.writeVarLong;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.rangeCheck;
+import static net.zethmayr.fungu.flock.FlockClocks.checkImpersonation;
+import static net.zethmayr.fungu.flock.FlockClocks.clockValues;
+import static net.zethmayr.fungu.flock.FlockClocks.mergeValuesOntoCounters;
+import static net.zethmayr.fungu.flock.RetryableNopException.becauseRetryNop;
+
+/**
+ * A grow-only replicated counter with one slot per flock member,
+ * laid out by the same member indices as {@link FlockClocks}.
+ * <p>
+ * Local increments go to a per-thread striped adder,
+ * so hot counters do not contend,
+ * and are folded into the local slot when the counter is snapshotted or merged.
+ * Replicas merge by the slot-wise maximum, as clocks do.
+ */
+public final class GCounter {
+
+    private final int memberId;
+    private final FlockMember[] slots;
+    private final long localBase;
+    private final LongAdder pending = new LongAdder();
+    private final Object lock = new Object();
+
+    /**
+     * Creates a zero counter over the given member's current membership.
+     *
+     * @param membership the local member's clocks.
+     */
+    public GCounter(final MemberClocks membership) {
+        this(membership.clockData().memberId(), new long[membership.locations().length], membership.locations());
+    }
+
+    /**
+     * Creates a counter with the given slot values.
+     *
+     * @param memberId  the local member ID.
+     * @param values    the slot values.
+     * @param locations the member locations.
+     * @throws IllegalArgumentException if the ID is out of range or the arrays differ in length.
+     */
+    public GCounter(final int memberId, final long[] values, final URI[] locations) {
+        rangeCheck(memberId, values);
+        rangeCheck(values, locations);
+        this.memberId = memberId;
+        this.slots = new FlockMember[values.length];
+        for (int n = 0; n < values.length; n++) {
+            slots[n] = new FlockMember(values[n], locations[n]);
+        }
+        this.localBase = values[memberId];
+    }
+
+    /**
+     * Adds one to the local slot.
+     */
+    public void increment() {
+        pending.increment();
+    }
+
+    /**
+     * Adds to the local slot.
+     *
+     * @param amount a non-negative amount.
+     * @throws IllegalArgumentException if the amount is negative.
+     */
+    public void add(final long amount) {
+        if (amount < 0) {
+            throw becauseIllegal("Amount %s is negative", amount);
+        }
+        pending.add(amount);
+    }
+
+    /**
+     * Returns the counter value: the sum of all slots, including unfolded local increments.
+     *
+     * @return the value.
+     */
+    public long value() {
+        fold();
+        long sum = 0;
+        for (final FlockMember slot : slots) {
+            sum += slot.get();
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the number of members.
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    private void fold() {
+        slots[memberId].advance(localBase + pending.sum());
+    }
+
+    /**
+     * Folds local increments into the local slot
+     * and returns the slot values, to send to other replicas.
+     *
+     * @return the slot values.
+     */
+    public long[] snapshot() {
+        fold();
+        return clockValues(slots);
+    }
+
+    /**
+     * Merges slot values received from another replica.
+     *
+     * @param received the remote slot values.
+     * @throws RetryableNopException if the memberships are different sizes.
+     * @throws PermanentNopException if the remote advances the local slot.
+     */
+    public void merge(final long[] received) throws NopException {
+        if (received.length != slots.length) {
+            throw becauseRetryNop("Size disagreement");
+        }
+        synchronized (lock) {
+            fold();
+            checkImpersonation(received, memberId, slots[memberId].get());
+            mergeValuesOntoCounters(received, slots);
+        }
+    }
+
+    /**
+     * Returns the number of bytes {@link #write(long[], ByteBuffer)} writes for the given snapshot.
+     * Size buffers from the same snapshot that is written,
+     * since concurrent increments change the size of later snapshots.
+     *
+     * @param snapshot slot values from {@link #snapshot()}.
+     * @return the encoded size.
+     */
+    public static int encodedSize(final long[] snapshot) {
+        int size = varLongSize(snapshot.length);
+        for (final long value : snapshot) {
+            size += varLongSize(value);
+        }
+        return size;
+    }
+
+    /**
+     * Writes slot values, as a length then each value, in unsigned varints.
+     *
+     * @param snapshot slot values from {@link #snapshot()}.
+     * @param target   the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public static void write(final long[] snapshot, final ByteBuffer target) {
+        writeVarLong(snapshot.length, target);
+        for (final long value : snapshot) {
+            writeVarLong(value, target);
+        }
+    }
+
+    /**
+     * Folds local increments and writes one snapshot of the slot values.
+     *
+     * @param target the buffer to write to.
+     * @return the snapshot written.
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     * @see #write(long[], ByteBuffer)
+     */
+    public long[] write(final ByteBuffer target) {
+        final long[] snapshot = snapshot();
+        write(snapshot, target);
+        return snapshot;
+    }
+
+    /**
+     * Reads slot values written by {@link #write(long[], ByteBuffer)}, for {@link #merge(long[])}.
+     *
+     * @param source the buffer to read from.
+     * @return the slot values.
+     * @throws IllegalArgumentException          if the values are malformed.
+     * @throws java.nio.BufferUnderflowException if the buffer is truncated.
+     */
+    public static long[] read(final ByteBuffer source) {
+        final long[] values = new long[readCount(source, 1)];
+        for (int n = 0; n < values.length; n++) {
+            values[n] = readVarLong(source);
+        }
+        return values;
+    }
+}
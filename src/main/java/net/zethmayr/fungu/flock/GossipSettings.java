@@ -0,0 +1,54 @@
+package net.zethmayr.fungu.flock;
+
+import java.time.Duration;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+
+/**
+ * Tunes {@link ClockGossip} rounds, and so its bandwidth cost.
+ * <p>
+ * Each round starts after {@code interval}, varied by up to {@code jitter} of the interval either way,
+ * and exchanges digests with up to {@code fanout} random peers,
+ * stopping early once {@code entryBudget} clock entries have been sent.
+ *
+ * @param interval    the mean time between rounds.
+ * @param jitter      the greatest variation of each interval, as a fraction of it.
+ * @param fanout      the most peers contacted per round.
+ * @param entryBudget the most clock entries sent per round, checked before each exchange.
+ */
+public record GossipSettings(Duration interval, double jitter, int fanout, int entryBudget) {
+
+    /**
+     * One peer per second, give or take a quarter second, with no entry limit.
+     */
+    public static final GossipSettings DEFAULT = new GossipSettings(Duration.ofSeconds(1), 0.25, 1, Integer.MAX_VALUE);
+
+    /**
+     * Validates the settings.
+     *
+     * @throws IllegalArgumentException if the interval or a limit is not positive,
+     *                                  or the jitter is outside [0, 1).
+     */
+    public GossipSettings {
+        if (interval.isZero() || interval.isNegative()) {
+            throw becauseIllegal("Interval %s is not positive", interval);
+        }
+        if (!(jitter >= 0.0 && jitter < 1.0)) {
+            throw becauseIllegal("Jitter %s must be within [0, 1)", jitter);
+        }
+        if (fanout <= 0 || entryBudget <= 0) {
+            throw becauseIllegal("Limits %s, %s are not positive", fanout, entryBudget);
+        }
+    }
+
+    /**
+     * Returns a jittered delay before the next round.
+     *
+     * @param uniform a uniformly distributed value in [0, 1).
+     * @return the delay in nanoseconds.
+     */
+    long nextDelayNanos(final double uniform) {
+        final double factor = 1.0 + jitter * (2.0 * uniform - 1.0);
+        return Math.max(1L, (long) (interval.toNanos() * factor));
+    }
+}
@@ -0,0 +1,284 @@
+package net.zethmayr.fungu.flock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.rangeCheck;
+
+/**
+ * Indexes recorded events by their clocks,
+ * answering which events causally precede, follow or are concurrent with a given event
+ * without comparing it to every recorded event.
+ * <p>
+ * Events are partitioned by member and sorted by local clock.
+ * Within a member's partition the clock vectors only grow,
+ * so an event {@code f} of member {@code j} precedes {@code x}
+ * exactly when {@code f.localClock() <= x.clocks()[j]},
+ * and follows an event {@code x} of member {@code m}
+ * exactly when {@code f.clocks()[m] >= x.localClock()}.
+ * Each query is then two binary searches per member,
+ * plus the cost of collecting the answer.
+ * <p>
+ * Events must come from one consistent history of fixed length;
+ * {@link #add(EventClocks)} rejects an event which is not ordered
+ * with its neighbours in its member's partition.
+ * All operations are serialized.
+ */
+public final class HappenedBeforeIndex {
+
+    private final Object lock = new Object();
+    private final List<List<Entry>> partitions;
+    private int size;
+
+    private record Entry(EventClocks event, long[] clocks, long localClock) {
+    }
+
+    /**
+     * Creates an empty index for clock vectors of the given length.
+     *
+     * @param length the vector length.
+     * @throws IllegalArgumentException if the length is not positive.
+     */
+    public HappenedBeforeIndex(final int length) {
+        if (length <= 0) {
+            throw becauseIllegal("Length %s is not positive", length);
+        }
+        partitions = new ArrayList<>(length);
+        for (int n = 0; n < length; n++) {
+            partitions.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Returns the indexed vector length.
+     *
+     * @return the vector length.
+     */
+    public int length() {
+        return partitions.size();
+    }
+
+    /**
+     * Returns the number of indexed events.
+     *
+     * @return the event count.
+     */
+    public int size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /**
+     * Adds an event.
+     * Events arriving in local clock order per member are appended without shifting.
+     *
+     * @param event an event.
+     * @throws IllegalArgumentException if the event's vector is the wrong length,
+     *                                  its local clock is already indexed,
+     *                                  or it is not ordered with the neighbouring events of its member.
+     */
+    public void add(final EventClocks event) {
+        final Entry entry = entryOf(event);
+        synchronized (lock) {
+            final List<Entry> partition = partitions.get(event.memberId());
+            final int at = firstLocalAbove(partition, entry.localClock);
+            if (at > 0) {
+                final Entry before = partition.get(at - 1);
+                if (before.localClock == entry.localClock) {
+                    throw becauseIllegal("Member %s local clock %s is already indexed", event.memberId(), entry.localClock);
+                }
+                checkOrdered(before, entry);
+            }
+            if (at < partition.size()) {
+                checkOrdered(entry, partition.get(at));
+            }
+            partition.add(at, entry);
+            size++;
+        }
+    }
+
+    /**
+     * Adds events in order.
+     *
+     * @param events some events.
+     * @throws IllegalArgumentException as for {@link #add(EventClocks)}; earlier events remain added.
+     */
+    public void addAll(final Iterable<? extends EventClocks> events) {
+        for (final EventClocks event : events) {
+            add(event);
+        }
+    }
+
+    private Entry entryOf(final EventClocks event) {
+        final long[] clocks = event.clocks();
+        if (clocks.length != partitions.size()) {
+            throw becauseIllegal("Length %s is not %s", clocks.length, partitions.size());
+        }
+        rangeCheck(event.memberId(), clocks);
+        return new Entry(event, clocks, clocks[event.memberId()]);
+    }
+
+    private static void checkOrdered(final Entry earlier, final Entry later) {
+        if (EventClocks.causalOrder(earlier.clocks, later.clocks) != CausalOrder.BEFORE) {
+            throw becauseIllegal("Member %s events at %s and %s are not causally ordered",
+                    earlier.event.memberId(), earlier.localClock, later.localClock);
+        }
+    }
+
+    /**
+     * Returns the indexed events which causally precede the given event.
+     *
+     * @param event an event from the indexed history, indexed or not.
+     * @return the preceding events, by member then local clock.
+     * @throws IllegalArgumentException if the event's vector is the wrong length.
+     */
+    public List<EventClocks> predecessors(final EventClocks event) {
+        return query(event, Region.BEFORE);
+    }
+
+    /**
+     * Returns the indexed events which causally follow the given event.
+     *
+     * @param event an event from the indexed history, indexed or not.
+     * @return the following events, by member then local clock.
+     * @throws IllegalArgumentException if the event's vector is the wrong length.
+     */
+    public List<EventClocks> successors(final EventClocks event) {
+        return query(event, Region.AFTER);
+    }
+
+    /**
+     * Returns the indexed events which are concurrent with the given event.
+     *
+     * @param event an event from the indexed history, indexed or not.
+     * @return the concurrent events, by member then local clock.
+     * @throws IllegalArgumentException if the event's vector is the wrong length.
+     */
+    public List<EventClocks> concurrent(final EventClocks event) {
+        return query(event, Region.CONCURRENT);
+    }
+
+    /**
+     * Returns the number of indexed events in each causal relation to the given event,
+     * without collecting them.
+     *
+     * @param event an event from the indexed history, indexed or not.
+     * @return the counts.
+     * @throws IllegalArgumentException if the event's vector is the wrong length.
+     */
+    public Counts counts(final EventClocks event) {
+        final Entry query = entryOf(event);
+        synchronized (lock) {
+            int before = 0;
+            int after = 0;
+            int concurrent = 0;
+            for (int j = 0; j < partitions.size(); j++) {
+                final List<Entry> partition = partitions.get(j);
+                final int precedingEnd = precedingEnd(partition, j, query);
+                final int followingStart = Math.max(precedingEnd, followingStart(partition, j, query));
+                before += precedingEnd;
+                concurrent += concurrentEnd(j, query, precedingEnd, followingStart) - precedingEnd;
+                after += partition.size() - followingStart;
+            }
+            return new Counts(before, concurrent, after, size - before - concurrent - after);
+        }
+    }
+
+    /**
+     * The number of indexed events in each causal relation to some event.
+     *
+     * @param before     the number of preceding events.
+     * @param concurrent the number of concurrent events.
+     * @param after      the number of following events.
+     * @param equal      the number of events with the same member and local clock.
+     */
+    public record Counts(int before, int concurrent, int after, int equal) {
+    }
+
+    private enum Region {
+        BEFORE,
+        CONCURRENT,
+        AFTER
+    }
+
+    private List<EventClocks> query(final EventClocks event, final Region region) {
+        final Entry query = entryOf(event);
+        synchronized (lock) {
+            final List<EventClocks> found = new ArrayList<>();
+            for (int j = 0; j < partitions.size(); j++) {
+                final List<Entry> partition = partitions.get(j);
+                final int precedingEnd = precedingEnd(partition, j, query);
+                final int followingStart = Math.max(precedingEnd, followingStart(partition, j, query));
+                final int from = switch (region) {
+                    case BEFORE -> 0;
+                    case CONCURRENT -> precedingEnd;
+                    case AFTER -> followingStart;
+                };
+                final int to = switch (region) {
+                    case BEFORE -> precedingEnd;
+                    case CONCURRENT -> concurrentEnd(j, query, precedingEnd, followingStart);
+                    case AFTER -> partition.size();
+                };
+                for (int n = from; n < to; n++) {
+                    found.add(partition.get(n).event);
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Returns the end of the events of member {@code j} which precede the query,
+     * excluding the query itself.
+     */
+    private static int precedingEnd(final List<Entry> partition, final int j, final Entry query) {
+        final long known = query.clocks[j];
+        return j == query.event.memberId()
+                ? firstLocalAbove(partition, known - 1)
+                : firstLocalAbove(partition, known);
+    }
+
+    /**
+     * Returns the end of the events of member {@code j} which are concurrent with the query:
+     * none of the query's own member, where the events between are the query itself.
+     */
+    private static int concurrentEnd(final int j, final Entry query, final int precedingEnd, final int followingStart) {
+        return j == query.event.memberId() ? precedingEnd : followingStart;
+    }
+
+    /**
+     * Returns the start of the events of member {@code j} which follow the query,
+     * excluding the query itself.
+     */
+    private static int followingStart(final List<Entry> partition, final int j, final Entry query) {
+        final int m = query.event.memberId();
+        final long bound = j == m ? query.localClock + 1 : query.localClock;
+        int low = 0;
+        int high = partition.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (partition.get(mid).clocks[m] < bound) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int firstLocalAbove(final List<Entry> partition, final long localClock) {
+        int low = 0;
+        int high = partition.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (partition.get(mid).localClock <= localClock) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
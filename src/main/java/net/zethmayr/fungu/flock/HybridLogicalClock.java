@@ -0,0 +1,156 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.core.declarations.GarbageFree;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.flock.PermanentNopException.becausePermanentNop;
+
+/**
+ * Implements a hybrid logical clock for a process,
+ * producing 64-bit timestamps which follow causality like a Lamport clock
+ * while staying close to physical time.
+ * <p>
+ * A timestamp holds physical milliseconds in its upper {@value #PHYSICAL_BITS} bits
+ * and a logical counter in its lower {@value #LOGICAL_BITS} bits,
+ * so timestamps order as plain longs and support wall-clock range queries.
+ * A counter overflowing simply carries into the physical part.
+ * <p>
+ * If {@code e} happened before {@code f} then {@code e}'s timestamp is less than {@code f}'s,
+ * but not conversely; where concurrency must be detected, use {@link FlockClocks} alongside,
+ * and send the timestamp alone where ordering is enough.
+ * Updates are lock-free and allocate nothing.
+ */
+public final class HybridLogicalClock {
+
+    /**
+     * The number of low bits holding the logical counter.
+     */
+    public static final int LOGICAL_BITS = 16;
+
+    /**
+     * The number of high bits holding physical milliseconds.
+     */
+    public static final int PHYSICAL_BITS = Long.SIZE - LOGICAL_BITS;
+
+    private static final long LOGICAL_MASK = (1L << LOGICAL_BITS) - 1;
+
+    private final AtomicLong last = new AtomicLong();
+    private final LongSupplier millis;
+    private final long maxDrift;
+
+    /**
+     * Creates a clock over the system time,
+     * accepting remote timestamps up to the given distance ahead.
+     *
+     * @param maxDriftMillis the greatest accepted remote lead, in milliseconds.
+     * @throws IllegalArgumentException if the drift is negative.
+     */
+    public HybridLogicalClock(final long maxDriftMillis) {
+        this(System::currentTimeMillis, maxDriftMillis);
+    }
+
+    /**
+     * Creates a clock over the given time source.
+     *
+     * @param millis         the physical time, in milliseconds.
+     * @param maxDriftMillis the greatest accepted remote lead, in milliseconds.
+     * @throws IllegalArgumentException if the drift is negative.
+     */
+    public HybridLogicalClock(final LongSupplier millis, final long maxDriftMillis) {
+        if (maxDriftMillis < 0) {
+            throw becauseIllegal("Drift %s is negative", maxDriftMillis);
+        }
+        this.millis = millis;
+        this.maxDrift = maxDriftMillis;
+    }
+
+    /**
+     * Returns a timestamp from its parts.
+     *
+     * @param physical physical milliseconds.
+     * @param logical  a logical counter, less than {@code 2^LOGICAL_BITS}.
+     * @return the timestamp.
+     */
+    @GarbageFree
+    public static long timestamp(final long physical, final int logical) {
+        return physical << LOGICAL_BITS | (logical & LOGICAL_MASK);
+    }
+
+    /**
+     * Returns the physical milliseconds of a timestamp.
+     *
+     * @param timestamp a timestamp.
+     * @return the physical part.
+     */
+    @GarbageFree
+    public static long physical(final long timestamp) {
+        return timestamp >>> LOGICAL_BITS;
+    }
+
+    /**
+     * Returns the logical counter of a timestamp.
+     *
+     * @param timestamp a timestamp.
+     * @return the logical part.
+     */
+    @GarbageFree
+    public static int logical(final long timestamp) {
+        return (int) (timestamp & LOGICAL_MASK);
+    }
+
+    /**
+     * For a local or send event,
+     * advances the clock and returns the event's timestamp.
+     *
+     * @return a timestamp greater than every previous one from this clock.
+     */
+    @GarbageFree
+    public long localEvent() {
+        final long now = timestamp(millis.getAsLong(), 0);
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            next = Math.max(previous + 1, now);
+        } while (!last.compareAndSet(previous, next));
+        return next;
+    }
+
+    /**
+     * For a message received with the given timestamp,
+     * advances the clock past both it and the local time,
+     * and returns the receive event's timestamp.
+     *
+     * @param sent the remote timestamp.
+     * @return a timestamp greater than the remote timestamp and every previous one from this clock.
+     * @throws PermanentNopException if the remote physical time leads the local time by more than the drift allowed.
+     */
+    @GarbageFree
+    public long messageReceived(final long sent) throws PermanentNopException {
+        final long physicalNow = millis.getAsLong();
+        if (physical(sent) - physicalNow > maxDrift) {
+            throw becausePermanentNop("Remote clock too far ahead");
+        }
+        final long now = timestamp(physicalNow, 0);
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            next = Math.max(Math.max(previous, sent) + 1, now);
+        } while (!last.compareAndSet(previous, next));
+        return next;
+    }
+
+    /**
+     * Returns the latest timestamp issued, without advancing.
+     *
+     * @return the current timestamp.
+     */
+    @GarbageFree
+    public long current() {
+        return last.get();
+    }
+}
@@ -0,0 +1,577 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.core.declarations.ReuseResults;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+
+/**
+ * An immutable interval tree clock stamp,
+ * after Almeida, Baquero and Fonte,
+ * for flocks whose members join and leave without coordination.
+ * <p>
+ * A stamp pairs an ID tree, the share of the unit interval the member owns,
+ * with an event tree, the member's knowledge of events over the interval.
+ * A new member is made by {@link #fork() forking} an existing stamp,
+ * and a leaving member's share is returned by {@link #join(IntervalTreeClock) joining} its stamp into another,
+ * so membership changes touch only the two stamps involved
+ * and the trees stay as small as the current membership allows.
+ * Messages carry an {@link #peek() anonymous} copy of the sender's stamp.
+ * <p>
+ * Stamps compare like {@link EventClocks}, by {@link #causalOrder(IntervalTreeClock)},
+ * and have a compact bit-level {@link #encode() encoding}.
+ */
+@ReuseResults
+public final class IntervalTreeClock implements Comparable<IntervalTreeClock> {
+
+    /**
+     * The cost of expanding a leaf when choosing where to grow,
+     * large enough that growing inside existing structure is always preferred.
+     */
+    private static final long EXPANSION_COST = 1L << 32;
+
+    private static final IntervalTreeClock SEED = new IntervalTreeClock(Id.ONE, Event.leaf(0));
+
+    private final Id id;
+    private final Event event;
+
+    private IntervalTreeClock(final Id id, final Event event) {
+        this.id = id;
+        this.event = event;
+    }
+
+    /**
+     * Returns the stamp of a flock's first member, which owns the whole interval.
+     *
+     * @return the seed stamp.
+     */
+    public static IntervalTreeClock seed() {
+        return SEED;
+    }
+
+    /**
+     * Splits this stamp's share between two stamps with the same knowledge,
+     * one kept by this member and one given to a new member.
+     *
+     * @return the two stamps.
+     */
+    public IntervalTreeClock[] fork() {
+        final Id[] halves = id.split();
+        return new IntervalTreeClock[]{
+                new IntervalTreeClock(halves[0], event),
+                new IntervalTreeClock(halves[1], event)
+        };
+    }
+
+    /**
+     * Returns a stamp with this stamp's knowledge and no share,
+     * to send with a message.
+     *
+     * @return an anonymous stamp.
+     */
+    public IntervalTreeClock peek() {
+        return id == Id.ZERO ? this : new IntervalTreeClock(Id.ZERO, event);
+    }
+
+    /**
+     * For a local event, returns the stamp after recording it.
+     *
+     * @return the advanced stamp.
+     * @throws IllegalStateException if this stamp is anonymous.
+     */
+    public IntervalTreeClock event() {
+        if (id == Id.ZERO) {
+            throw new IllegalStateException("Anonymous stamps cannot record events");
+        }
+        final Event filled = fill(id, event);
+        return new IntervalTreeClock(id, filled.equals(event) ? grow(id, event).event : filled);
+    }
+
+    /**
+     * Returns the stamp combining this and the given stamp's shares and knowledge,
+     * as when receiving a message or absorbing a leaving member.
+     *
+     * @param other another stamp.
+     * @return the joined stamp.
+     * @throws IllegalArgumentException if the stamps' shares overlap.
+     */
+    public IntervalTreeClock join(final IntervalTreeClock other) {
+        return new IntervalTreeClock(Id.sum(id, other.id), Event.join(event, other.event));
+    }
+
+    /**
+     * For a message received with the given stamp,
+     * returns the stamp after merging its knowledge and recording the receipt.
+     *
+     * @param sent the sender's (anonymous) stamp.
+     * @return the advanced stamp.
+     */
+    public IntervalTreeClock messageReceived(final IntervalTreeClock sent) {
+        return join(sent.peek()).event();
+    }
+
+    /**
+     * Returns whether this stamp owns no share, so cannot record events.
+     *
+     * @return whether anonymous.
+     */
+    public boolean isAnonymous() {
+        return id == Id.ZERO;
+    }
+
+    /**
+     * Returns the causal relation of this stamp's knowledge to the given stamp's.
+     *
+     * @param compared the compared stamp.
+     * @return the causal relation.
+     * @see EventClocks#causalOrder(EventClocks)
+     */
+    public CausalOrder causalOrder(@NotNull final IntervalTreeClock compared) {
+        final boolean before = Event.leq(event, compared.event);
+        final boolean after = Event.leq(compared.event, event);
+        return before ? (after ? CausalOrder.EQUAL : CausalOrder.BEFORE)
+                : (after ? CausalOrder.AFTER : CausalOrder.CONCURRENT);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is a partial ordering.
+     *
+     * @see #causalOrder(IntervalTreeClock)
+     */
+    @Override
+    public int compareTo(@NotNull final IntervalTreeClock compared) {
+        return causalOrder(compared).comparison();
+    }
+
+    /**
+     * Returns the encoded stamp:
+     * the ID tree then the event tree, each node tagged in two or three bits,
+     * and each count in a variable number of bits growing with its magnitude.
+     *
+     * @return the encoding.
+     */
+    public byte[] encode() {
+        final BitWriter writer = new BitWriter();
+        id.write(writer);
+        event.write(writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Returns the stamp from its encoding.
+     *
+     * @param encoded an encoding from {@link #encode()}.
+     * @return the stamp.
+     * @throws IllegalArgumentException if the encoding is truncated.
+     */
+    public static IntervalTreeClock decode(final byte[] encoded) {
+        final BitReader reader = new BitReader(encoded);
+        final Id id = Id.read(reader);
+        return new IntervalTreeClock(id, Event.read(reader));
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other || other instanceof IntervalTreeClock stamp
+                && id.equals(stamp.id)
+                && event.equals(stamp.event);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * id.hashCode() + event.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + id + ", " + event + ")";
+    }
+
+    private static Event fill(final Id id, final Event event) {
+        if (id == Id.ZERO || event.isLeaf()) {
+            return event;
+        }
+        if (id == Id.ONE) {
+            return Event.leaf(event.max());
+        }
+        if (id.left == Id.ONE) {
+            final Event right = fill(id.right, event.right);
+            return Event.node(event.base, Event.leaf(Math.max(event.left.max(), right.min())), right);
+        }
+        if (id.right == Id.ONE) {
+            final Event left = fill(id.left, event.left);
+            return Event.node(event.base, left, Event.leaf(Math.max(event.right.max(), left.min())));
+        }
+        return Event.node(event.base, fill(id.left, event.left), fill(id.right, event.right));
+    }
+
+    private record Grown(Event event, long cost) {
+    }
+
+    private static Grown grow(final Id id, final Event event) {
+        if (event.isLeaf()) {
+            if (id == Id.ONE) {
+                return new Grown(Event.leaf(event.base + 1), 0);
+            }
+            final Grown expanded = grow(id, Event.expanded(event.base));
+            return new Grown(expanded.event, expanded.cost + EXPANSION_COST);
+        }
+        if (id.left == Id.ZERO) {
+            final Grown right = grow(id.right, event.right);
+            return new Grown(Event.node(event.base, event.left, right.event), right.cost + 1);
+        }
+        if (id.right == Id.ZERO) {
+            final Grown left = grow(id.left, event.left);
+            return new Grown(Event.node(event.base, left.event, event.right), left.cost + 1);
+        }
+        final Grown left = grow(id.left, event.left);
+        final Grown right = grow(id.right, event.right);
+        return left.cost < right.cost
+                ? new Grown(Event.node(event.base, left.event, event.right), left.cost + 1)
+                : new Grown(Event.node(event.base, event.left, right.event), right.cost + 1);
+    }
+
+    /**
+     * An ID tree: none, all, or a split of the interval.
+     */
+    private static final class Id {
+
+        static final Id ZERO = new Id(null, null);
+        static final Id ONE = new Id(null, null);
+
+        final Id left;
+        final Id right;
+
+        private Id(final Id left, final Id right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        static Id node(final Id left, final Id right) {
+            if (left == ZERO && right == ZERO) {
+                return ZERO;
+            }
+            if (left == ONE && right == ONE) {
+                return ONE;
+            }
+            return new Id(left, right);
+        }
+
+        boolean isLeaf() {
+            return this == ZERO || this == ONE;
+        }
+
+        Id[] split() {
+            if (this == ZERO) {
+                return new Id[]{ZERO, ZERO};
+            }
+            if (this == ONE) {
+                return new Id[]{new Id(ONE, ZERO), new Id(ZERO, ONE)};
+            }
+            if (left == ZERO) {
+                final Id[] halves = right.split();
+                return new Id[]{node(ZERO, halves[0]), node(ZERO, halves[1])};
+            }
+            if (right == ZERO) {
+                final Id[] halves = left.split();
+                return new Id[]{node(halves[0], ZERO), node(halves[1], ZERO)};
+            }
+            return new Id[]{node(left, ZERO), node(ZERO, right)};
+        }
+
+        static Id sum(final Id first, final Id second) {
+            if (first == ZERO) {
+                return second;
+            }
+            if (second == ZERO) {
+                return first;
+            }
+            if (first.isLeaf() || second.isLeaf()) {
+                throw becauseIllegal("IDs %s and %s overlap", first, second);
+            }
+            return node(sum(first.left, second.left), sum(first.right, second.right));
+        }
+
+        void write(final BitWriter writer) {
+            if (isLeaf()) {
+                writer.write(0, 2);
+                writer.write(this == ONE ? 1 : 0, 1);
+            } else if (left == ZERO) {
+                writer.write(1, 2);
+                right.write(writer);
+            } else if (right == ZERO) {
+                writer.write(2, 2);
+                left.write(writer);
+            } else {
+                writer.write(3, 2);
+                left.write(writer);
+                right.write(writer);
+            }
+        }
+
+        static Id read(final BitReader reader) {
+            return switch ((int) reader.read(2)) {
+                case 0 -> reader.read(1) == 1 ? ONE : ZERO;
+                case 1 -> node(ZERO, read(reader));
+                case 2 -> node(read(reader), ZERO);
+                default -> {
+                    final Id left = read(reader);
+                    yield node(left, read(reader));
+                }
+            };
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return this == other || other instanceof Id tree && !isLeaf() && !tree.isLeaf()
+                    && left.equals(tree.left) && right.equals(tree.right);
+        }
+
+        @Override
+        public int hashCode() {
+            return this == ZERO ? 0 : this == ONE ? 1 : 31 * left.hashCode() + right.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this == ZERO ? "0" : this == ONE ? "1" : "(" + left + ", " + right + ")";
+        }
+    }
+
+    /**
+     * An event tree: a base count, and optionally further counts over each half of the interval.
+     */
+    private static final class Event {
+
+        private static final Event[] SMALL = new Event[16];
+
+        static {
+            Arrays.setAll(SMALL, Event::new);
+        }
+
+        final long base;
+        final Event left;
+        final Event right;
+
+        private Event(final long base) {
+            this(base, null, null);
+        }
+
+        private Event(final long base, final Event left, final Event right) {
+            this.base = base;
+            this.left = left;
+            this.right = right;
+        }
+
+        static Event leaf(final long base) {
+            return base >= 0 && base < SMALL.length ? SMALL[(int) base] : new Event(base);
+        }
+
+        /**
+         * Returns a normalized node.
+         */
+        static Event node(final long base, final Event left, final Event right) {
+            if (left.isLeaf() && right.isLeaf() && left.base == right.base) {
+                return leaf(base + left.base);
+            }
+            final long sunk = Math.min(left.min(), right.min());
+            return new Event(base + sunk, left.sink(sunk), right.sink(sunk));
+        }
+
+        /**
+         * Returns an unnormalized node with zero children, for growing into.
+         */
+        static Event expanded(final long base) {
+            return new Event(base, leaf(0), leaf(0));
+        }
+
+        boolean isLeaf() {
+            return left == null;
+        }
+
+        Event lift(final long amount) {
+            return amount == 0 ? this : isLeaf() ? leaf(base + amount) : new Event(base + amount, left, right);
+        }
+
+        Event sink(final long amount) {
+            return lift(-amount);
+        }
+
+        long min() {
+            return isLeaf() ? base : base + Math.min(left.min(), right.min());
+        }
+
+        long max() {
+            return isLeaf() ? base : base + Math.max(left.max(), right.max());
+        }
+
+        static boolean leq(final Event first, final Event second) {
+            if (first.isLeaf()) {
+                return first.base <= second.base;
+            }
+            if (first.base > second.base) {
+                return false;
+            }
+            if (second.isLeaf()) {
+                return leq(first.left.lift(first.base), second)
+                        && leq(first.right.lift(first.base), second);
+            }
+            return leq(first.left.lift(first.base), second.left.lift(second.base))
+                    && leq(first.right.lift(first.base), second.right.lift(second.base));
+        }
+
+        static Event join(final Event first, final Event second) {
+            if (first.isLeaf() && second.isLeaf()) {
+                return leaf(Math.max(first.base, second.base));
+            }
+            if (first.base > second.base) {
+                return join(second, first);
+            }
+            final long difference = second.base - first.base;
+            final Event firstLeft = first.isLeaf() ? leaf(0) : first.left;
+            final Event firstRight = first.isLeaf() ? leaf(0) : first.right;
+            final Event secondLeft = second.isLeaf() ? leaf(0) : second.left;
+            final Event secondRight = second.isLeaf() ? leaf(0) : second.right;
+            return node(first.base,
+                    join(firstLeft, secondLeft.lift(difference)),
+                    join(firstRight, secondRight.lift(difference)));
+        }
+
+        void write(final BitWriter writer) {
+            if (isLeaf()) {
+                writer.write(1, 1);
+                writer.writeCount(base);
+                return;
+            }
+            writer.write(0, 1);
+            final boolean leftZero = left.isLeaf() && left.base == 0;
+            final boolean rightZero = right.isLeaf() && right.base == 0;
+            if (base == 0) {
+                writer.write(leftZero ? 0 : rightZero ? 1 : 2, 2);
+            } else {
+                writer.write(3, 2);
+                writer.write(leftZero ? 0 : rightZero ? 1 : 2, 2);
+                writer.writeCount(base);
+            }
+            if (!leftZero) {
+                left.write(writer);
+            }
+            if (!rightZero) {
+                right.write(writer);
+            }
+        }
+
+        static Event read(final BitReader reader) {
+            if (reader.read(1) == 1) {
+                return leaf(reader.readCount());
+            }
+            final int tag = (int) reader.read(2);
+            final int shape = tag == 3 ? (int) reader.read(2) : tag;
+            final long base = tag == 3 ? reader.readCount() : 0;
+            final Event left = shape == 0 ? leaf(0) : read(reader);
+            final Event right = shape == 1 ? leaf(0) : read(reader);
+            return new Event(base, left, right);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return this == other || other instanceof Event tree
+                    && base == tree.base
+                    && Objects.equals(left, tree.left)
+                    && Objects.equals(right, tree.right);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(base, left, right);
+        }
+
+        @Override
+        public String toString() {
+            return isLeaf() ? Long.toString(base) : "(" + base + ", " + left + ", " + right + ")";
+        }
+    }
+
+    /**
+     * Writes bits most significant first.
+     */
+    private static final class BitWriter {
+
+        private byte[] bytes = new byte[16];
+        private long bits;
+
+        void write(final long value, final int width) {
+            for (int n = width - 1; n >= 0; n--) {
+                final int index = (int) (bits >>> 3);
+                if (index == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                if ((value >>> n & 1) != 0) {
+                    bytes[index] |= (byte) (0x80 >>> (bits & 7));
+                }
+                bits++;
+            }
+        }
+
+        /**
+         * Writes a non-negative count as a run of continuation bits,
+         * then the count less the capacity of shorter widths, in a width two more than the run.
+         */
+        void writeCount(final long count) {
+            long remaining = count;
+            int width = 2;
+            while (width < Long.SIZE - 1 && remaining >= 1L << width) {
+                write(1, 1);
+                remaining -= 1L << width;
+                width++;
+            }
+            write(0, 1);
+            write(remaining, width);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, (int) ((bits + 7) >>> 3));
+        }
+    }
+
+    /**
+     * Reads bits most significant first.
+     */
+    private static final class BitReader {
+
+        private final byte[] bytes;
+        private long bits;
+
+        BitReader(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long read(final int width) {
+            long value = 0;
+            for (int n = 0; n < width; n++) {
+                final int index = (int) (bits >>> 3);
+                if (index >= bytes.length) {
+                    throw becauseIllegal("Encoding is truncated at bit %s", bits);
+                }
+                value = value << 1 | (bytes[index] >>> (7 - (bits & 7)) & 1);
+                bits++;
+            }
+            return value;
+        }
+
+        long readCount() {
+            long offset = 0;
+            int width = 2;
+            while (read(1) == 1) {
+                offset += 1L << width;
+                width++;
+            }
+            return offset + read(width);
+        }
+    }
+}
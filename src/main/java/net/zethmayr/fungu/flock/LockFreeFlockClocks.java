@@ -0,0 +1,213 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.core.declarations.ReuseResults;
+import net.zethmayr.fungu.flock.FlockClocks.ClockData;
+import net.zethmayr.fungu.flock.config.KnownMember;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseImpossible;
+import static net.zethmayr.fungu.flock.EventClocks.compareSimilarVectors;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.rangeCheck;
+import static net.zethmayr.fungu.flock.FlockClocks.BECAUSE_ADDITION_OBSOLETE;
+import static net.zethmayr.fungu.flock.FlockClocks.BECAUSE_RETIREMENT_OBSOLETE;
+import static net.zethmayr.fungu.flock.FlockClocks.IndexAdjustment.DELETION;
+import static net.zethmayr.fungu.flock.FlockClocks.IndexAdjustment.INSERTION;
+import static net.zethmayr.fungu.flock.FlockClocks.checkImpersonation;
+import static net.zethmayr.fungu.flock.FlockClocks.clockValues;
+import static net.zethmayr.fungu.flock.FlockClocks.memberLocations;
+import static net.zethmayr.fungu.flock.FlockClocks.proposeDeletion;
+import static net.zethmayr.fungu.flock.FlockClocks.proposeInsertion;
+import static net.zethmayr.fungu.flock.RetryableNopException.becauseRetryNop;
+
+/**
+ * Implements vector clocks for a process
+ * without a common monitor.
+ * <p>
+ * Local increments and merges are per-member atomic operations,
+ * so they never block each other or snapshots.
+ * Membership changes publish a new member array sharing the existing counters,
+ * so operations racing a membership change still land on the right counter.
+ * Snapshots are not a consistent cut across concurrent merges,
+ * but every value they report has been received or produced locally,
+ * and the local value they report is unique to the operation that produced it.
+ *
+ * @see FlockClocks
+ */
+public class LockFreeFlockClocks implements MemberClocks {
+
+    private record Membership(int memberId, FlockMember[] members) {
+    }
+
+    private final AtomicReference<Membership> membership;
+
+    /**
+     * Creates a new member based on the given ID, clocks, and locations.
+     *
+     * @param memberId  the member ID.
+     * @param clocks    the clock values.
+     * @param locations the member locations.
+     * @throws IllegalArgumentException if the ID is out of range of the given clocks.
+     * @see FlockClocks#FlockClocks(int, long[], URI[])
+     */
+    @ReuseResults
+    public LockFreeFlockClocks(final int memberId, final long[] clocks, final URI[] locations) {
+        rangeCheck(memberId, clocks);
+        rangeCheck(clocks, locations);
+        final FlockMember[] members = new FlockMember[clocks.length];
+        for (int n = 0; n < clocks.length; n++) {
+            members[n] = new FlockMember(clocks[n], locations[n]);
+        }
+        membership = new AtomicReference<>(new Membership(memberId, members));
+    }
+
+    /**
+     * Re-creates a member based on pre-existing configuration.
+     *
+     * @param memberId       the local member ID.
+     * @param initialMembers some previous values.
+     * @throws URISyntaxException if locations are not valid.
+     * @see FlockClocks#FlockClocks(int, KnownMember[])
+     */
+    @ReuseResults
+    public LockFreeFlockClocks(final int memberId, final KnownMember[] initialMembers) throws URISyntaxException {
+        rangeCheck(memberId, initialMembers);
+        final FlockMember[] members = new FlockMember[initialMembers.length];
+        for (int n = 0; n < initialMembers.length; n++) {
+            members[n] = new FlockMember(initialMembers[n]);
+        }
+        membership = new AtomicReference<>(new Membership(memberId, members));
+    }
+
+    @Override
+    public long localEvent() {
+        final Membership current = membership.get();
+        return current.members[current.memberId].incrementAndGet();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The impersonation check cannot be invalidated by concurrent operations,
+     * since the local clock only advances.
+     */
+    @Override
+    public EventClocks messageReceived(final long[] sentClocks) throws NopException {
+        final Membership current = membership.get();
+        final FlockMember[] members = current.members;
+        if (sentClocks.length != members.length) {
+            throw becauseRetryNop("Size disagreement");
+        }
+        checkImpersonation(sentClocks, current.memberId, members[current.memberId].get());
+        final long local = members[current.memberId].incrementAndGet();
+        advanceCounters(sentClocks, members);
+        return snapshot(current, local);
+    }
+
+    /**
+     * Merges similar vectors of remote values onto local counters,
+     * without losing concurrent increments or merges.
+     *
+     * @param sentClocks the remote values.
+     * @param counters   the local counters.
+     */
+    static void advanceCounters(final long[] sentClocks, final FlockMember[] counters) {
+        rangeCheck(sentClocks, counters);
+        for (int n = 0; n < counters.length; n++) {
+            if (sentClocks[n] > counters[n].get()) {
+                counters[n].advance(sentClocks[n]);
+            }
+        }
+    }
+
+    @Override
+    public EventClocks messageClocks() {
+        final Membership current = membership.get();
+        return snapshot(current, current.members[current.memberId].incrementAndGet());
+    }
+
+    @Override
+    public EventClocks clockData() {
+        final Membership current = membership.get();
+        return new ClockData(current.memberId, clockValues(current.members));
+    }
+
+    private static EventClocks snapshot(final Membership current, final long local) {
+        final long[] values = clockValues(current.members);
+        values[current.memberId] = local;
+        return new ClockData(current.memberId, values);
+    }
+
+    @Override
+    public long localClock() {
+        final Membership current = membership.get();
+        return current.members[current.memberId].get();
+    }
+
+    @Override
+    public long[] clocks() {
+        return clockValues(membership.get().members);
+    }
+
+    @Override
+    public URI[] locations() {
+        return memberLocations(membership.get().members);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Concurrent membership changes are retried against the latest membership.
+     */
+    @Override
+    public void addMember(final int newIndex, final URI newLocation, final long[] sentClocks) throws PermanentNopException {
+        Membership current;
+        FlockMember[] proposed;
+        do {
+            current = membership.get();
+            final FlockMember[] members = current.members;
+            checkImpersonation(sentClocks, INSERTION.applyAsInt(current.memberId, newIndex), members[current.memberId].get());
+            proposed = proposeInsertion(members, newIndex, newLocation);
+            if (proposed.length != sentClocks.length || compareSimilarVectors(sentClocks, proposed, FlockMember::get) == -1) {
+                throw BECAUSE_ADDITION_OBSOLETE.get();
+            }
+        } while (!membership.compareAndSet(current, new Membership(
+                current.memberId >= newIndex ? current.memberId + 1 : current.memberId, proposed)));
+        advanceCounters(sentClocks, proposed);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Concurrent membership changes are retried against the latest membership.
+     */
+    @Override
+    public void retireMember(final int oldIndex, final long[] sentClocks) throws PermanentNopException {
+        Membership current;
+        FlockMember[] proposed;
+        do {
+            current = membership.get();
+            if (current.memberId == oldIndex) {
+                throw becauseImpossible("This instance %s is already presumed dead", oldIndex);
+            }
+            proposed = proposeDeletion(current.members, oldIndex);
+            if (proposed.length != sentClocks.length || compareSimilarVectors(sentClocks, proposed, FlockMember::get) == -1) {
+                throw BECAUSE_RETIREMENT_OBSOLETE.get();
+            }
+        } while (!membership.compareAndSet(current, new Membership(
+                DELETION.applyAsInt(current.memberId, oldIndex), proposed)));
+        advanceCounters(sentClocks, proposed);
+    }
+
+    @Override
+    public long[] proposeInsertValues(final int newIndex) {
+        return FlockClocks.proposeInsertValues(newIndex, clocks());
+    }
+
+    @Override
+    public long[] proposeDeleteValues(final int oldIndex) {
+        return clockValues(proposeDeletion(membership.get().members, oldIndex));
+    }
+}
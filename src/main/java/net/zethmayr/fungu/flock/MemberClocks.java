@@ -0,0 +1,198 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.throwing.Result;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.stridedCheck;
+import static net.zethmayr.fungu.throwing.ResultFactory.failure;
+import static net.zethmayr.fungu.throwing.ResultFactory.success;
+
+/**
+ * Vector clock operations for the local flock member.
+ *
+ * @see FlockClocks
+ * @see LockFreeFlockClocks
+ */
+public interface MemberClocks {
+
+    /**
+     * For a local event,
+     * increments the local clock
+     * and returns the local sequence value.
+     *
+     * @return the new local sequence value.
+     */
+    long localEvent();
+
+    /**
+     * For a message received,
+     * increments the local clock
+     * and updates clocks per received values.
+     *
+     * @param sentClocks the remote clock values.
+     * @return updated local clocks from the message.
+     * @throws RetryableNopException if the clock vectors are different lengths.
+     * @throws PermanentNopException if the remote advances the local clock
+     */
+    EventClocks messageReceived(final long[] sentClocks) throws NopException;
+
+    /**
+     * For many messages received,
+     * performs {@link #messageReceived(long[])} for each in order,
+     * collecting each message's updated clocks or rejection
+     * rather than stopping at the first rejection.
+     * Only {@link NopException rejections} are collected;
+     * other exceptions propagate, as from {@link #messageReceived(long[])}.
+     *
+     * @param sentClocks the remote clock values of each message.
+     * @return the result for each message, in order.
+     */
+    default List<Result<EventClocks, NopException>> messagesReceived(final long[][] sentClocks) {
+        final List<Result<EventClocks, NopException>> results = new ArrayList<>(sentClocks.length);
+        for (final long[] sent : sentClocks) {
+            try {
+                results.add(success(messageReceived(sent)));
+            } catch (final NopException e) {
+                results.add(failure(e));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * For many messages received with their clock values laid end to end,
+     * performs {@link #messageReceived(long[])} for each in order.
+     *
+     * @param sentClocks the remote clock values of all messages.
+     * @param stride     the number of values per message.
+     * @return the result for each message, in order.
+     * @throws IllegalArgumentException if the stride does not divide the values.
+     * @see #messagesReceived(long[][])
+     */
+    default List<Result<EventClocks, NopException>> messagesReceived(final long[] sentClocks, final int stride) {
+        stridedCheck(sentClocks, stride);
+        final long[][] split = new long[sentClocks.length / stride][];
+        for (int n = 0; n < split.length; n++) {
+            split[n] = Arrays.copyOfRange(sentClocks, n * stride, (n + 1) * stride);
+        }
+        return messagesReceived(split);
+    }
+
+    /**
+     * For a message being sent,
+     * increments the local clock
+     * and returns the known clock values.
+     *
+     * @return the clock data for a message.
+     */
+    EventClocks messageClocks();
+
+    /**
+     * Returns a copy of the clock data as of the time of call.
+     *
+     * @return a clock data snapshot.
+     */
+    EventClocks clockData();
+
+    /**
+     * Runs a local event that
+     * will not make reference to the clock values
+     * from when it is started.
+     *
+     * @param event a local event.
+     */
+    default void locally(final Runnable event) {
+        localEvent();
+        event.run();
+    }
+
+    /**
+     * Runs a local event that
+     * receives the relevant clock data
+     * from when it is started.
+     *
+     * @param clockedEvent an event receiving a unique set of clock values.
+     */
+    default void locally(final Consumer<EventClocks> clockedEvent) {
+        clockedEvent.accept(messageClocks());
+    }
+
+    /**
+     * Returns the current local clock value,
+     * with no further consistency guarantees.
+     *
+     * @return the local clock value.
+     */
+    long localClock();
+
+    /**
+     * Returns the current known clock values.
+     *
+     * @return the known clock values.
+     */
+    long[] clocks();
+
+    /**
+     * Returns a fixed-size summary of the current known clock values,
+     * for cheap agreement checks between peers.
+     *
+     * @return the clock fingerprint.
+     */
+    default ClockFingerprint fingerprint() {
+        return ClockFingerprint.of(clocks());
+    }
+
+    /**
+     * Returns the current known member locations.
+     *
+     * @return the member locations.
+     */
+    URI[] locations();
+
+    /**
+     * Adds a node at the given index.
+     *
+     * @param newIndex    an index no greater than the local vector length.
+     * @param newLocation the new member's location.
+     * @param sentClocks  proposed new minimum clocks.
+     * @throws PermanentNopException    if the proposed insertion is inconsistent with the current clocks.
+     * @throws IllegalArgumentException if the index is not within the valid range.
+     */
+    void addMember(final int newIndex, final URI newLocation, final long[] sentClocks) throws PermanentNopException;
+
+    /**
+     * Removes the node at the given index.
+     *
+     * @param oldIndex   an index smaller than the local vector length.
+     * @param sentClocks proposed new minimum counts.
+     * @throws PermanentNopException    if the proposed removal is inconsistent with the current clocks.
+     * @throws IllegalStateException    if removing the node at this index - we are presumed to have crashed.
+     * @throws IllegalArgumentException if the index is not within the valid range.
+     */
+    void retireMember(final int oldIndex, final long[] sentClocks) throws PermanentNopException;
+
+    /**
+     * Returns new proposed values with
+     * an insertion at the given index,
+     * based on the local counts.
+     *
+     * @param newIndex an index no greater than the local vector length.
+     * @return new proposed values accommodating the new index.
+     */
+    long[] proposeInsertValues(final int newIndex);
+
+    /**
+     * Returns new proposed values with
+     * a deletion at the given index,
+     * based on the local counts.
+     *
+     * @param oldIndex an index smaller than the local vector length.
+     * @return new proposed values removing the given index.
+     */
+    long[] proposeDeleteValues(final int oldIndex);
+}
@@ -0,0 +1,172 @@
+package net.zethmayr.fungu.flock;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.stridedCheck;
+
+/**
+ * A replicated counter which can go down as well as up,
+ * as a pair of {@link GCounter grow-only counters} of increments and decrements.
+ * <p>
+ * Snapshots lay the increment slots then the decrement slots end to end,
+ * so a replica's whole state is one primitive array.
+ */
+public final class PNCounter {
+
+    private final GCounter increments;
+    private final GCounter decrements;
+
+    /**
+     * Creates a zero counter over the given member's current membership.
+     *
+     * @param membership the local member's clocks.
+     */
+    public PNCounter(final MemberClocks membership) {
+        this.increments = new GCounter(membership);
+        this.decrements = new GCounter(membership);
+    }
+
+    /**
+     * Creates a zero counter over the given membership.
+     *
+     * @param memberId  the local member ID.
+     * @param locations the member locations.
+     * @throws IllegalArgumentException if the ID is out of range.
+     */
+    public PNCounter(final int memberId, final URI[] locations) {
+        this.increments = new GCounter(memberId, new long[locations.length], locations);
+        this.decrements = new GCounter(memberId, new long[locations.length], locations);
+    }
+
+    /**
+     * Adds one.
+     */
+    public void increment() {
+        increments.increment();
+    }
+
+    /**
+     * Subtracts one.
+     */
+    public void decrement() {
+        decrements.increment();
+    }
+
+    /**
+     * Adds the given amount, which may be negative.
+     *
+     * @param amount an amount greater than {@link Long#MIN_VALUE}.
+     * @throws IllegalArgumentException if the amount is {@link Long#MIN_VALUE}.
+     */
+    public void add(final long amount) {
+        if (amount == Long.MIN_VALUE) {
+            throw becauseIllegal("Amount %s has no long magnitude", amount);
+        }
+        if (amount < 0) {
+            decrements.add(-amount);
+        } else {
+            increments.add(amount);
+        }
+    }
+
+    /**
+     * Returns the counter value.
+     *
+     * @return the increments less the decrements.
+     */
+    public long value() {
+        return increments.value() - decrements.value();
+    }
+
+    /**
+     * Returns the increment slots then the decrement slots, to send to other replicas.
+     *
+     * @return the slot values.
+     */
+    public long[] snapshot() {
+        final long[] up = increments.snapshot();
+        final long[] down = decrements.snapshot();
+        final long[] both = new long[up.length + down.length];
+        System.arraycopy(up, 0, both, 0, up.length);
+        System.arraycopy(down, 0, both, up.length, down.length);
+        return both;
+    }
+
+    /**
+     * Merges a snapshot received from another replica.
+     *
+     * @param received the remote increment then decrement slots.
+     * @throws RetryableNopException if the memberships are different sizes.
+     * @throws PermanentNopException if the remote advances the local slots.
+     * @throws IllegalArgumentException if the snapshot is not two equal halves.
+     */
+    public void merge(final long[] received) throws NopException {
+        stridedCheck(received, 2);
+        final int half = received.length / 2;
+        final long[] up = new long[half];
+        final long[] down = new long[half];
+        System.arraycopy(received, 0, up, 0, half);
+        System.arraycopy(received, half, down, 0, half);
+        increments.merge(up);
+        decrements.merge(down);
+    }
+
+    /**
+     * Returns the number of bytes {@link #write(long[], ByteBuffer)} writes for the given snapshot.
+     * Size buffers from the same snapshot that is written.
+     *
+     * @param snapshot the increment then decrement slots, from {@link #snapshot()}.
+     * @return the encoded size.
+     * @see GCounter#encodedSize(long[])
+     */
+    public static int encodedSize(final long[] snapshot) {
+        final int half = snapshot.length / 2;
+        return GCounter.encodedSize(Arrays.copyOfRange(snapshot, 0, half))
+                + GCounter.encodedSize(Arrays.copyOfRange(snapshot, half, snapshot.length));
+    }
+
+    /**
+     * Writes the increment then decrement slots.
+     *
+     * @param snapshot the increment then decrement slots, from {@link #snapshot()}.
+     * @param target   the buffer to write to.
+     * @see GCounter#write(long[], ByteBuffer)
+     */
+    public static void write(final long[] snapshot, final ByteBuffer target) {
+        final int half = snapshot.length / 2;
+        GCounter.write(Arrays.copyOfRange(snapshot, 0, half), target);
+        GCounter.write(Arrays.copyOfRange(snapshot, half, snapshot.length), target);
+    }
+
+    /**
+     * Writes one snapshot of the increment then decrement slots.
+     *
+     * @param target the buffer to write to.
+     * @return the snapshot written.
+     * @see #write(long[], ByteBuffer)
+     */
+    public long[] write(final ByteBuffer target) {
+        final long[] snapshot = snapshot();
+        write(snapshot, target);
+        return snapshot;
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(long[], ByteBuffer)}, for {@link #merge(long[])}.
+     *
+     * @param source the buffer to read from.
+     * @return the increment then decrement slots.
+     * @see GCounter#read(ByteBuffer)
+     */
+    public static long[] read(final ByteBuffer source) {
+        final long[] up = GCounter.read(source);
+        final long[] down = GCounter.read(source);
+        final long[] both = new long[up.length + down.length];
+        System.arraycopy(up, 0, both, 0, up.length);
+        System.arraycopy(down, 0, both, up.length, down.length);
+        return both;
+    }
+}
@@ -0,0 +1,346 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.core.declarations.ReuseResults;
+import net.zethmayr.fungu.flock.FlockClocks.ClockData;
+import net.zethmayr.fungu.flock.FlockClocks.IndexAdjustment;
+import net.zethmayr.fungu.flock.config.KnownMember;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseImpossible;
+import static net.zethmayr.fungu.flock.EventClocks.compareSimilarVectors;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.becauseOutOfRange;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.rangeCheck;
+import static net.zethmayr.fungu.flock.FlockClocks.BECAUSE_ADDITION_OBSOLETE;
+import static net.zethmayr.fungu.flock.FlockClocks.BECAUSE_RETIREMENT_OBSOLETE;
+import static net.zethmayr.fungu.flock.FlockClocks.IndexAdjustment.DELETION;
+import static net.zethmayr.fungu.flock.FlockClocks.IndexAdjustment.INSERTION;
+import static net.zethmayr.fungu.flock.FlockClocks.IndexAdjustment.NONE;
+import static net.zethmayr.fungu.flock.FlockClocks.checkImpersonation;
+import static net.zethmayr.fungu.flock.RetryableNopException.becauseRetryNop;
+
+/**
+ * Implements vector clocks for a process
+ * over a single primitive array.
+ * <p>
+ * Clock values are stored contiguously and accessed as
+ * {@link MethodHandles#arrayElementVarHandle(Class) array element handles},
+ * with locations kept in a parallel array.
+ * Increments, merges, and snapshots are per-element atomic operations
+ * and allocate nothing beyond the returned copy.
+ * <p>
+ * Membership changes are serialized among themselves.
+ * They seal each element of the current array while copying it,
+ * then publish the new layout;
+ * operations meeting a sealed element continue against the new layout.
+ * This means {@link #SEALED} is not a usable clock value.
+ *
+ * @see LockFreeFlockClocks
+ */
+public class PackedFlockClocks implements MemberClocks {
+
+    private static final VarHandle CLOCK = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Marks an element whose value has moved to a newer layout.
+     */
+    static final long SEALED = Long.MIN_VALUE;
+
+    private static final class Layout {
+        final int memberId;
+        final long[] clocks;
+        final URI[] locations;
+        private IndexAdjustment adjustment = NONE;
+        private int changePoint;
+        private volatile Layout next;
+
+        private Layout(final int memberId, final long[] clocks, final URI[] locations) {
+            this.memberId = memberId;
+            this.clocks = clocks;
+            this.locations = locations;
+        }
+
+        /**
+         * Returns the index in the next layout for an index in this layout,
+         * or {@code -1} if the index was retired.
+         */
+        private int forward(final int index) {
+            return adjustment == DELETION && index == changePoint
+                    ? -1
+                    : adjustment.applyAsInt(index, changePoint);
+        }
+
+        private Layout awaitNext() {
+            Layout successor;
+            while ((successor = next) == null) {
+                Thread.onSpinWait();
+            }
+            return successor;
+        }
+    }
+
+    private final AtomicReference<Layout> layout;
+
+    private final Object membershipLock = new Object();
+
+    /**
+     * Creates a new member based on the given ID, clocks, and locations.
+     *
+     * @param memberId  the member ID.
+     * @param clocks    the clock values.
+     * @param locations the member locations.
+     * @throws IllegalArgumentException if the ID is out of range of the given clocks,
+     *                                  or a clock value is {@link #SEALED}.
+     * @see FlockClocks#FlockClocks(int, long[], URI[])
+     */
+    @ReuseResults
+    public PackedFlockClocks(final int memberId, final long[] clocks, final URI[] locations) {
+        rangeCheck(memberId, clocks);
+        rangeCheck(clocks, locations);
+        for (final long clock : clocks) {
+            if (clock == SEALED) {
+                throw becauseIllegal("Clock value %s is reserved", clock);
+            }
+        }
+        layout = new AtomicReference<>(new Layout(memberId, clocks.clone(), locations.clone()));
+    }
+
+    /**
+     * Re-creates a member based on pre-existing configuration.
+     *
+     * @param memberId       the local member ID.
+     * @param initialMembers some previous values.
+     * @throws URISyntaxException if locations are not valid.
+     * @see FlockClocks#FlockClocks(int, KnownMember[])
+     */
+    @ReuseResults
+    public PackedFlockClocks(final int memberId, final KnownMember[] initialMembers) throws URISyntaxException {
+        this(memberId, initialValues(initialMembers), initialLocations(initialMembers));
+    }
+
+    private static long[] initialValues(final KnownMember[] initialMembers) {
+        final long[] values = new long[initialMembers.length];
+        for (int n = 0; n < values.length; n++) {
+            values[n] = initialMembers[n].getInitialValue();
+        }
+        return values;
+    }
+
+    private static URI[] initialLocations(final KnownMember[] initialMembers) throws URISyntaxException {
+        final URI[] locations = new URI[initialMembers.length];
+        for (int n = 0; n < locations.length; n++) {
+            locations[n] = initialMembers[n].getLocationUri();
+        }
+        return locations;
+    }
+
+    @Override
+    public long localEvent() {
+        return increment(layout.get());
+    }
+
+    private static long increment(Layout current) {
+        for (; ; ) {
+            final long value = (long) CLOCK.getVolatile(current.clocks, current.memberId);
+            if (value == SEALED) {
+                current = current.awaitNext();
+            } else if (CLOCK.compareAndSet(current.clocks, current.memberId, value, value + 1)) {
+                return value + 1;
+            }
+        }
+    }
+
+    private static void advance(Layout current, int index, final long sent) {
+        for (; ; ) {
+            final long value = (long) CLOCK.getVolatile(current.clocks, index);
+            if (value == SEALED) {
+                final Layout successor = current.awaitNext();
+                index = current.forward(index);
+                if (index < 0) {
+                    return;
+                }
+                current = successor;
+            } else if (sent <= value || CLOCK.compareAndSet(current.clocks, index, value, sent)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Values merged while the membership is changing
+     * are carried over to the new layout.
+     */
+    @Override
+    public EventClocks messageReceived(final long[] sentClocks) throws NopException {
+        final Layout current = layout.get();
+        if (sentClocks.length != current.clocks.length) {
+            throw becauseRetryNop("Size disagreement");
+        }
+        checkImpersonation(sentClocks, current.memberId, localClock());
+        final long incremented = increment(current);
+        for (int n = 0; n < sentClocks.length; n++) {
+            advance(current, n, sentClocks[n]);
+        }
+        return snapshot(incremented);
+    }
+
+    @Override
+    public EventClocks messageClocks() {
+        return snapshot(localEvent());
+    }
+
+    @Override
+    public EventClocks clockData() {
+        Layout current = layout.get();
+        long[] values;
+        while ((values = valuesOf(current)) == null) {
+            current = current.awaitNext();
+        }
+        return new ClockData(current.memberId, values);
+    }
+
+    private EventClocks snapshot(final long local) {
+        Layout current = layout.get();
+        long[] values;
+        while ((values = valuesOf(current)) == null) {
+            current = current.awaitNext();
+        }
+        values[current.memberId] = local;
+        return new ClockData(current.memberId, values);
+    }
+
+    /**
+     * Returns a copy of the values in the given layout,
+     * or {@code null} if any have been sealed.
+     */
+    private static long[] valuesOf(final Layout current) {
+        final long[] values = new long[current.clocks.length];
+        for (int n = 0; n < values.length; n++) {
+            if ((values[n] = (long) CLOCK.getVolatile(current.clocks, n)) == SEALED) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public long localClock() {
+        Layout current = layout.get();
+        long value;
+        while ((value = (long) CLOCK.getVolatile(current.clocks, current.memberId)) == SEALED) {
+            current = current.awaitNext();
+        }
+        return value;
+    }
+
+    @Override
+    public long[] clocks() {
+        return clockData().clocks();
+    }
+
+    @Override
+    public URI[] locations() {
+        return layout.get().locations.clone();
+    }
+
+    @Override
+    public void addMember(final int newIndex, final URI newLocation, final long[] sentClocks) throws PermanentNopException {
+        synchronized (membershipLock) {
+            final Layout current = layout.get();
+            if (newIndex < 0 || newIndex > current.locations.length) {
+                // checked before sealing, since a sealed layout must be succeeded
+                throw becauseOutOfRange(newIndex);
+            }
+            checkImpersonation(sentClocks, INSERTION.applyAsInt(current.memberId, newIndex), localClock());
+            final long[] values = seal(current);
+            final long[] moreClocks = FlockClocks.proposeInsertValues(newIndex, values);
+            if (moreClocks.length != sentClocks.length || compareSimilarVectors(sentClocks, moreClocks) == -1) {
+                publish(current, new Layout(current.memberId, values, current.locations), NONE, 0);
+                throw BECAUSE_ADDITION_OBSOLETE.get();
+            }
+            final URI[] moreLocations = new URI[moreClocks.length];
+            System.arraycopy(current.locations, 0, moreLocations, 0, newIndex);
+            moreLocations[newIndex] = newLocation;
+            System.arraycopy(current.locations, newIndex, moreLocations, newIndex + 1, current.locations.length - newIndex);
+            mergeOnto(sentClocks, moreClocks);
+            publish(current, new Layout(INSERTION.applyAsInt(current.memberId, newIndex), moreClocks, moreLocations),
+                    INSERTION, newIndex);
+        }
+    }
+
+    @Override
+    public void retireMember(final int oldIndex, final long[] sentClocks) throws PermanentNopException {
+        synchronized (membershipLock) {
+            final Layout current = layout.get();
+            if (current.memberId == oldIndex) {
+                throw becauseImpossible("This instance %s is already presumed dead", oldIndex);
+            }
+            rangeCheck(oldIndex, current.locations);
+            final long[] values = seal(current);
+            final long[] lessClocks = deleteValue(oldIndex, values);
+            if (lessClocks.length != sentClocks.length || compareSimilarVectors(sentClocks, lessClocks) == -1) {
+                publish(current, new Layout(current.memberId, values, current.locations), NONE, 0);
+                throw BECAUSE_RETIREMENT_OBSOLETE.get();
+            }
+            final URI[] lessLocations = new URI[lessClocks.length];
+            System.arraycopy(current.locations, 0, lessLocations, 0, oldIndex);
+            System.arraycopy(current.locations, oldIndex + 1, lessLocations, oldIndex, lessLocations.length - oldIndex);
+            mergeOnto(sentClocks, lessClocks);
+            publish(current, new Layout(DELETION.applyAsInt(current.memberId, oldIndex), lessClocks, lessLocations),
+                    DELETION, oldIndex);
+        }
+    }
+
+    /**
+     * Seals every element of the given layout,
+     * returning the final values.
+     */
+    private static long[] seal(final Layout current) {
+        final long[] values = new long[current.clocks.length];
+        for (int n = 0; n < values.length; n++) {
+            values[n] = (long) CLOCK.getAndSet(current.clocks, n, SEALED);
+        }
+        return values;
+    }
+
+    private void publish(final Layout sealed, final Layout successor, final IndexAdjustment adjustment, final int changePoint) {
+        sealed.adjustment = adjustment;
+        sealed.changePoint = changePoint;
+        sealed.next = successor;
+        layout.set(successor);
+    }
+
+    private static void mergeOnto(final long[] sentClocks, final long[] values) {
+        for (int n = 0; n < values.length; n++) {
+            if (sentClocks[n] > values[n]) {
+                values[n] = sentClocks[n];
+            }
+        }
+    }
+
+    private static long[] deleteValue(final int oldIndex, final long[] oldClocks) {
+        final long[] lessClocks = new long[oldClocks.length - 1];
+        System.arraycopy(oldClocks, 0, lessClocks, 0, oldIndex);
+        System.arraycopy(oldClocks, oldIndex + 1, lessClocks, oldIndex, lessClocks.length - oldIndex);
+        return lessClocks;
+    }
+
+    @Override
+    public long[] proposeInsertValues(final int newIndex) {
+        return FlockClocks.proposeInsertValues(newIndex, clocks());
+    }
+
+    @Override
+    public long[] proposeDeleteValues(final int oldIndex) {
+        final long[] values = clocks();
+        rangeCheck(oldIndex, values);
+        return deleteValue(oldIndex, values);
+    }
+}
@@ -0,0 +1,349 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.flock.config.HasKnownMembers;
+import net.zethmayr.fungu.throwing.Result;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseUnsupported;
+import static net.zethmayr.fungu.flock.PermanentNopException.becausePermanentNop;
+import static net.zethmayr.fungu.flock.RetryableNopException.becauseRetryNop;
+
+/**
+ * A causally consistent replicated map,
+ * whose writes travel between members through any {@link FlockProtocol}.
+ * <p>
+ * Each entry carries the {@link EventClocks} of the writes which produced it,
+ * stamped from clocks owned by the map,
+ * so that they advance only with writes the map has applied.
+ * A received write obsoletes the writes it follows and is ignored if it precedes or equals one;
+ * writes concurrent with each other are all kept,
+ * and the entry value is their live values folded by the merge function,
+ * in a consistent order on every replica.
+ * Removal writes a tombstone, which a concurrent live value overrides.
+ * <p>
+ * Reads are local and lock-free.
+ * Writes are serialized, and queued until {@link #flush()} sends them all as one message.
+ * Each message carries the number of messages its sender had sent and applied,
+ * and messages given to {@link #received(Batch)} are held back by a {@link CausalDelivery}
+ * until every message they follow has been applied,
+ * so a replica never shows a write without the writes its writer had seen.
+ * This needs every message to arrive eventually; a lost message holds back all that follow it.
+ * Tombstones are kept, and the membership is fixed for the life of the map.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ */
+public final class ReplicatedMap<K, V> {
+
+    private final Object lock = new Object();
+    private final FlockClocks clocks;
+    private final FlockProtocol<Batch<K, V>> protocol;
+    private final BinaryOperator<V> merge;
+    private final Map<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final CausalDelivery<Batch<K, V>> delivery;
+    private final Object flushLock = new Object();
+
+    private final long[] applied;
+
+    private List<Write<K, V>> pending = new ArrayList<>();
+    private long batchesSent;
+    private Batch<K, V> unsent;
+
+    /**
+     * A single write.
+     *
+     * @param key     the key.
+     * @param value   the value, or {@code null} for a removal.
+     * @param version the clocks of the write.
+     */
+    public record Write<K, V>(K key, V value, EventClocks version) {
+    }
+
+    /**
+     * The concurrent writes to a key not yet obsoleted, and their merged value.
+     */
+    private record Entry<K, V>(V value, List<Write<K, V>> siblings) {
+    }
+
+    /**
+     * The writes sent from one member in one message, in the order they were made.
+     *
+     * @param memberId the sending member.
+     * @param clocks   the number of messages the sender had sent, including this one,
+     *                 and the number it had applied from each other member.
+     * @param writes   the writes.
+     */
+    public record Batch<K, V>(int memberId, long[] clocks, List<Write<K, V>> writes) {
+    }
+
+    /**
+     * Applies batches as the causal delivery stage releases them.
+     */
+    private final class Applying implements FlockProtocol<Batch<K, V>> {
+
+        @Override
+        public void joinFlock(final HasKnownMembers knownMembers) {
+            throw becauseUnsupported("Applies batches only");
+        }
+
+        @Override
+        public void reJoinFlock(final int memberId, final HasKnownMembers knownMembers) {
+            throw becauseUnsupported("Applies batches only");
+        }
+
+        @Override
+        public void receiveMessage(final Batch<K, V> batch, final long[] sentClocks) throws NopException {
+            apply(batch);
+        }
+
+        @Override
+        public void sendMessage(final Batch<K, V> batch) {
+            throw becauseUnsupported("Applies batches only");
+        }
+    }
+
+    /**
+     * Creates an empty map with all clocks at zero.
+     *
+     * @param memberId  the local member ID.
+     * @param locations the member locations.
+     * @param protocol  sends batches to the other members.
+     * @param merge     combines concurrently written values.
+     * @throws IllegalArgumentException if the ID is out of range.
+     */
+    public ReplicatedMap(final int memberId, final URI[] locations,
+                         final FlockProtocol<Batch<K, V>> protocol, final BinaryOperator<V> merge) {
+        this.clocks = new FlockClocks(memberId, new long[locations.length], locations);
+        this.delivery = new CausalDelivery<>(new Applying(), new long[locations.length]);
+        this.applied = new long[locations.length];
+        this.protocol = protocol;
+        this.merge = merge;
+    }
+
+    /**
+     * Returns the value for the given key.
+     *
+     * @param key the key.
+     * @return the value, or {@code null} if absent or removed.
+     */
+    public V get(final K key) {
+        final Entry<K, V> entry = entries.get(key);
+        return entry == null ? null : entry.value();
+    }
+
+    /**
+     * Returns the clocks of the concurrent writes which produced the given key's entry,
+     * in a consistent order on every replica.
+     *
+     * @param key the key.
+     * @return the entry clocks, empty if never written.
+     */
+    public List<EventClocks> versions(final K key) {
+        final Entry<K, V> entry = entries.get(key);
+        return entry == null ? List.of() : entry.siblings().stream().map(Write::version).toList();
+    }
+
+    /**
+     * Returns a copy of the live entries.
+     * The copy need not reflect a single point in time.
+     *
+     * @return the live entries.
+     */
+    public Map<K, V> snapshot() {
+        final Map<K, V> live = new HashMap<>();
+        entries.forEach((key, entry) -> {
+            if (entry.value() != null) {
+                live.put(key, entry.value());
+            }
+        });
+        return live;
+    }
+
+    /**
+     * Sets the value for the given key, queueing the write to send.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return the clocks of the write.
+     * @throws IllegalArgumentException if the value is {@code null}.
+     */
+    public EventClocks put(final K key, final V value) {
+        if (value == null) {
+            throw becauseIllegal("Null values are removals");
+        }
+        return write(key, value);
+    }
+
+    /**
+     * Removes the value for the given key, queueing the write to send.
+     *
+     * @param key the key.
+     * @return the clocks of the write.
+     */
+    public EventClocks remove(final K key) {
+        return write(key, null);
+    }
+
+    private EventClocks write(final K key, final V value) {
+        synchronized (lock) {
+            // the map clocks follow every applied write, so a local write obsoletes all siblings
+            final Write<K, V> written = new Write<>(key, value, clocks.messageClocks());
+            entries.put(key, entry(List.of(written)));
+            pending.add(written);
+            return written.version();
+        }
+    }
+
+    /**
+     * Returns the number of writes waiting to be sent.
+     *
+     * @return the queued write count.
+     */
+    public int pending() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Sends all queued writes as one message.
+     * If sending fails, the same message is sent again by the next flush,
+     * before any writes made since,
+     * since receivers hold back every later message until it arrives.
+     *
+     * @return the number of writes sent.
+     * @throws IOException           if network transport fails.
+     * @throws RetryableNopException if the message was rejected.
+     */
+    public int flush() throws IOException, RetryableNopException {
+        synchronized (flushLock) {
+            if (unsent == null) {
+                final long[] batchClocks;
+                final List<Write<K, V>> sending;
+                synchronized (lock) {
+                    if (pending.isEmpty()) {
+                        return 0;
+                    }
+                    // taken with the writes, so the batch follows every batch they may have seen
+                    batchClocks = applied.clone();
+                    sending = pending;
+                    pending = new ArrayList<>();
+                }
+                final int localId = clocks.clockData().memberId();
+                batchClocks[localId] = ++batchesSent;
+                unsent = new Batch<>(localId, batchClocks, Collections.unmodifiableList(sending));
+            }
+            protocol.sendMessage(unsent);
+            final int sent = unsent.writes().size();
+            unsent = null;
+            return sent;
+        }
+    }
+
+    /**
+     * Returns the number of received batches held back until the batches they follow arrive.
+     *
+     * @return the held back count.
+     */
+    public int heldBack() {
+        return delivery.depth();
+    }
+
+    /**
+     * Accepts a batch delivered from another member,
+     * applying it and any held back batches it releases,
+     * or holding it back until the batches it follows have been applied.
+     *
+     * @param batch the batch.
+     * @throws RetryableNopException if the membership sizes differ.
+     * @throws PermanentNopException if the batch came from the local member, was already applied,
+     *                               or the clocks of it or a batch it released advance the local clock.
+     */
+    public void received(final Batch<K, V> batch) throws NopException {
+        final int localId = clocks.clockData().memberId();
+        if (batch.memberId() == localId) {
+            throw becausePermanentNop("Batch from self");
+        }
+        final int length = clocks.locations().length;
+        if (batch.clocks().length != length) {
+            throw becauseRetryNop("Size disagreement");
+        }
+        for (final Write<K, V> write : batch.writes()) {
+            if (write.version().clocks().length != length) {
+                throw becauseRetryNop("Size disagreement");
+            }
+        }
+        // local writes are applied as they are made, so batches never wait on the local member
+        final long[] dependencies = batch.clocks().clone();
+        dependencies[localId] = 0L;
+        for (final Result<Batch<K, V>, NopException> applied : delivery.offer(batch,
+                new FlockClocks.ClockData(batch.memberId(), dependencies))) {
+            if (applied.getException() != null) {
+                throw applied.getException();
+            }
+        }
+    }
+
+    private void apply(final Batch<K, V> batch) throws NopException {
+        synchronized (lock) {
+            if (!batch.writes().isEmpty()) {
+                // writes from one member are stamped in increasing order, so the last dominates the batch
+                clocks.messageReceived(batch.writes().get(batch.writes().size() - 1).version().clocks());
+                for (final Write<K, V> write : batch.writes()) {
+                    applyWithinLock(write);
+                }
+            }
+            applied[batch.memberId()] = batch.clocks()[batch.memberId()];
+        }
+    }
+
+    private void applyWithinLock(final Write<K, V> remote) {
+        final Entry<K, V> local = entries.get(remote.key());
+        if (local == null) {
+            entries.put(remote.key(), entry(List.of(remote)));
+            return;
+        }
+        final long[] theirs = remote.version().clocks();
+        final List<Write<K, V>> kept = new ArrayList<>(local.siblings().size() + 1);
+        for (final Write<K, V> sibling : local.siblings()) {
+            switch (EventClocks.causalOrder(sibling.version().clocks(), theirs)) {
+                case BEFORE -> {
+                    // obsoleted by the remote write
+                }
+                case CONCURRENT -> kept.add(sibling);
+                default -> {
+                    // already applied, or obsoleted by a local sibling
+                    return;
+                }
+            }
+        }
+        kept.add(remote);
+        entries.put(remote.key(), entry(kept));
+    }
+
+    private Entry<K, V> entry(final List<Write<K, V>> siblings) {
+        if (siblings.size() == 1) {
+            return new Entry<>(siblings.get(0).value(), siblings);
+        }
+        final List<Write<K, V>> ordered = new ArrayList<>(siblings);
+        ordered.sort((a, b) -> Arrays.compare(a.version().clocks(), b.version().clocks()));
+        V value = null;
+        for (final Write<K, V> sibling : ordered) {
+            if (sibling.value() != null) {
+                value = value == null ? sibling.value() : merge.apply(value, sibling.value());
+            }
+        }
+        return new Entry<>(value, Collections.unmodifiableList(ordered));
+    }
+}
@@ -0,0 +1,82 @@
+package net.zethmayr.fungu.flock;
+
+import org.jetbrains.annotations.NotNull;
+
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.SOME_GREATER;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.SOME_LESSER;
+
+/**
+ * Presents the clock values for an event over {@link SlotFlockClocks stable slots},
+ * with the epoch of each slot's occupant.
+ * <p>
+ * Vectors from members which have seen different numbers of slots may differ in length;
+ * missing slots are treated as unoccupied at epoch and value zero.
+ *
+ * @param memberId the slot where the event occurred.
+ * @param epochs   the occupant epoch of each slot.
+ * @param values   the clock value of each slot.
+ */
+public record SlotClocks(int memberId, int[] epochs, long[] values) implements EventClocks {
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Values are comparable between vectors only where the epochs agree.
+     *
+     * @return the slot values.
+     */
+    @Override
+    public long[] clocks() {
+        return values;
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the vector length.
+     */
+    public int length() {
+        return values.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation orders slot entries by epoch, then by value,
+     * padding the shorter vector with unoccupied slots.
+     * Clocks without epochs are treated as being at epoch zero throughout.
+     */
+    @Override
+    public int compareTo(@NotNull final EventClocks compared) {
+        return causalOrder(compared).comparison();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation orders slot entries by epoch, then by value,
+     * padding the shorter vector with unoccupied slots.
+     * Clocks without epochs are treated as being at epoch zero throughout.
+     */
+    @Override
+    public CausalOrder causalOrder(@NotNull final EventClocks compared) {
+        final long[] theirValues = compared.clocks();
+        final int[] theirEpochs = compared instanceof SlotClocks slots ? slots.epochs() : null;
+        final int length = Math.max(values.length, theirValues.length);
+        int flags = 0;
+        for (int n = 0; n < length && flags != (SOME_LESSER | SOME_GREATER); n++) {
+            final int ourEpoch = n < epochs.length ? epochs[n] : 0;
+            final int theirEpoch = theirEpochs != null && n < theirEpochs.length ? theirEpochs[n] : 0;
+            final int byEpoch = Integer.compare(ourEpoch, theirEpoch);
+            final int entry = byEpoch != 0 ? byEpoch : Long.compare(
+                    n < values.length ? values[n] : 0L,
+                    n < theirValues.length ? theirValues[n] : 0L);
+            if (entry < 0) {
+                flags |= SOME_LESSER;
+            } else if (entry > 0) {
+                flags |= SOME_GREATER;
+            }
+        }
+        return CausalOrder.ofFlags(flags);
+    }
+}
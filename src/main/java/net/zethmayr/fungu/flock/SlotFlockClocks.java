@@ -0,0 +1,332 @@
+package net.zethmayr.fungu.flock;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseImpossible;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.rangeCheck;
+import static net.zethmayr.fungu.flock.PermanentNopException.becausePermanentNop;
+
+/**
+ * Implements vector clocks for a process over stable, reusable slots,
+ * so that membership changes neither renumber members nor change existing vector lengths.
+ * <p>
+ * Each slot holds an occupant epoch and a clock value.
+ * Retiring a member only marks its slot free;
+ * claiming a free slot increments its epoch and resumes from its last value,
+ * since a value can never validly go back to zero.
+ * Slot entries are ordered by epoch, then by value,
+ * so values from a slot's previous occupants are ignored once a newer epoch is known.
+ * When no slot is free, a new slot is appended;
+ * vectors of different lengths merge over their common slots,
+ * so messages in flight across a membership change are still accepted.
+ * <p>
+ * Claims must be made by one coordinating member at a time,
+ * and announced to the others with {@link #slotClaimed(SlotClaim, URI)}.
+ * All operations are serialized.
+ */
+public class SlotFlockClocks {
+
+    private final Object lock = new Object();
+    private final int localSlot;
+    private final Deque<Integer> free = new ArrayDeque<>();
+
+    private int length;
+    private int[] epochs;
+    private long[] values;
+    private URI[] locations;
+    private boolean[] retired;
+
+    /**
+     * A claimed slot, to be announced to the flock and given to the new member.
+     *
+     * @param slot   the claimed slot.
+     * @param epoch  the new occupant's epoch.
+     * @param clocks the claiming member's clocks, including the claim.
+     */
+    public record SlotClaim(int slot, int epoch, SlotClocks clocks) {
+    }
+
+    /**
+     * Creates a member at the given slot with the given known slots.
+     * Slots with no location are free.
+     *
+     * @param localSlot the local member's slot.
+     * @param epochs    the occupant epoch of each slot.
+     * @param values    the clock value of each slot.
+     * @param locations the occupant location of each slot, or {@code null} for free slots.
+     * @throws IllegalArgumentException if the arrays differ in length,
+     *                                  or the local slot is out of range or free.
+     */
+    public SlotFlockClocks(final int localSlot, final int[] epochs, final long[] values, final URI[] locations) {
+        rangeCheck(localSlot, values);
+        rangeCheck(values, locations);
+        if (epochs.length != values.length) {
+            throw becauseIllegal("Epochs %s and values %s differ in length", epochs.length, values.length);
+        }
+        if (locations[localSlot] == null) {
+            throw becauseIllegal("Local slot %s is free", localSlot);
+        }
+        this.localSlot = localSlot;
+        this.length = values.length;
+        this.epochs = epochs.clone();
+        this.values = values.clone();
+        this.locations = locations.clone();
+        this.retired = new boolean[values.length];
+        for (int n = 0; n < length; n++) {
+            if (locations[n] == null) {
+                retired[n] = true;
+                free.add(n);
+            }
+        }
+    }
+
+    /**
+     * Creates the member for which the given slot was claimed.
+     *
+     * @param claim     the claim.
+     * @param locations the claiming member's known locations, including the new member.
+     * @return the new member's clocks.
+     * @see #claimSlot(URI)
+     */
+    public static SlotFlockClocks joining(final SlotClaim claim, final URI[] locations) {
+        final SlotClocks clocks = claim.clocks();
+        return new SlotFlockClocks(claim.slot(), clocks.epochs(), clocks.values(),
+                Arrays.copyOf(locations, clocks.length()));
+    }
+
+    /**
+     * Returns the local member's slot, which never changes.
+     *
+     * @return the local slot.
+     */
+    public int localSlot() {
+        return localSlot;
+    }
+
+    /**
+     * Returns the number of slots, occupied or free.
+     *
+     * @return the vector length.
+     */
+    public int length() {
+        synchronized (lock) {
+            return length;
+        }
+    }
+
+    /**
+     * Returns the known occupant epoch of a slot.
+     *
+     * @param slot a slot.
+     * @return the epoch.
+     * @throws IllegalArgumentException if the slot is out of range.
+     */
+    public int epoch(final int slot) {
+        synchronized (lock) {
+            checkSlotWithinLock(slot);
+            return epochs[slot];
+        }
+    }
+
+    /**
+     * Returns the known occupant locations, with {@code null} for free or unannounced slots.
+     *
+     * @return the slot locations.
+     */
+    public URI[] locations() {
+        synchronized (lock) {
+            return Arrays.copyOf(locations, length);
+        }
+    }
+
+    /**
+     * For a local event,
+     * increments the local clock
+     * and returns the local sequence value.
+     *
+     * @return the new local sequence value.
+     */
+    public long localEvent() {
+        synchronized (lock) {
+            return ++values[localSlot];
+        }
+    }
+
+    /**
+     * Returns the current local clock value.
+     *
+     * @return the local clock value.
+     */
+    public long localClock() {
+        synchronized (lock) {
+            return values[localSlot];
+        }
+    }
+
+    /**
+     * For a message being sent,
+     * increments the local clock
+     * and returns the known clock values.
+     *
+     * @return the clock data for a message.
+     */
+    public SlotClocks messageClocks() {
+        synchronized (lock) {
+            localEvent();
+            return clockData();
+        }
+    }
+
+    /**
+     * Returns a copy of the clock data as of the time of call.
+     *
+     * @return a clock data snapshot.
+     */
+    public SlotClocks clockData() {
+        synchronized (lock) {
+            return new SlotClocks(localSlot, Arrays.copyOf(epochs, length), Arrays.copyOf(values, length));
+        }
+    }
+
+    /**
+     * For a message received,
+     * increments the local clock
+     * and merges the received values slot by slot, whatever their length.
+     *
+     * @param sent the remote clock data.
+     * @return updated local clocks from the message.
+     * @throws PermanentNopException if the remote advances the local clock,
+     *                               or knows of a newer occupant of the local slot.
+     */
+    public SlotClocks messageReceived(final SlotClocks sent) throws PermanentNopException {
+        final int[] sentEpochs = sent.epochs();
+        final long[] sentValues = sent.values();
+        if (sentEpochs.length != sentValues.length) {
+            throw becausePermanentNop("Epochs and values differ in length");
+        }
+        synchronized (lock) {
+            if (localSlot < sentValues.length) {
+                if (sentEpochs[localSlot] > epochs[localSlot]) {
+                    throw becausePermanentNop("Local slot reclaimed");
+                }
+                if (sentEpochs[localSlot] == epochs[localSlot] && sentValues[localSlot] > values[localSlot]) {
+                    throw becausePermanentNop("Remote advance over local");
+                }
+            }
+            ensureLengthWithinLock(sentValues.length);
+            values[localSlot]++;
+            for (int n = 0; n < sentValues.length; n++) {
+                if (n != localSlot) {
+                    mergeWithinLock(n, sentEpochs[n], sentValues[n]);
+                }
+            }
+            return clockData();
+        }
+    }
+
+    private void mergeWithinLock(final int slot, final int sentEpoch, final long sentValue) {
+        if (sentEpoch > epochs[slot]) {
+            epochs[slot] = sentEpoch;
+            values[slot] = sentValue;
+            if (retired[slot]) {
+                retired[slot] = false;
+                locations[slot] = null;
+            }
+        } else if (sentEpoch == epochs[slot] && sentValue > values[slot]) {
+            values[slot] = sentValue;
+        }
+    }
+
+    /**
+     * Claims a slot for a new member at the given location,
+     * reusing a free slot if there is one and appending one otherwise.
+     * This counts as a local event.
+     *
+     * @param location the new member's location.
+     * @return the claim, to announce to the flock and give to the new member.
+     */
+    public SlotClaim claimSlot(final URI location) {
+        synchronized (lock) {
+            Integer slot = free.poll();
+            while (slot != null && !retired[slot]) {
+                slot = free.poll();
+            }
+            final int claimed = slot != null ? slot : length;
+            ensureLengthWithinLock(claimed + 1);
+            epochs[claimed]++;
+            locations[claimed] = location;
+            retired[claimed] = false;
+            return new SlotClaim(claimed, epochs[claimed], messageClocks());
+        }
+    }
+
+    /**
+     * Applies a claim announced by the coordinating member.
+     * Claims older than the known epoch of their slot are ignored.
+     *
+     * @param claim    the claim.
+     * @param location the new member's location.
+     */
+    public void slotClaimed(final SlotClaim claim, final URI location) {
+        synchronized (lock) {
+            final int slot = claim.slot();
+            ensureLengthWithinLock(slot + 1);
+            if (claim.epoch() >= epochs[slot] && slot != localSlot) {
+                if (claim.epoch() > epochs[slot]) {
+                    epochs[slot] = claim.epoch();
+                    values[slot] = Math.max(values[slot], claim.clocks().values()[slot]);
+                }
+                locations[slot] = location;
+                retired[slot] = false;
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of a retiring member, if it is still at the given epoch,
+     * so that a later claim can reuse it.
+     * The slot's value is kept, for the next occupant to resume from.
+     *
+     * @param slot  the retiring member's slot.
+     * @param epoch the retiring member's epoch.
+     * @throws IllegalStateException    if retiring the local slot - we are presumed to have crashed.
+     * @throws IllegalArgumentException if the slot is out of range.
+     */
+    public void retireSlot(final int slot, final int epoch) {
+        synchronized (lock) {
+            checkSlotWithinLock(slot);
+            if (slot == localSlot) {
+                throw becauseImpossible("This instance %s is already presumed dead", slot);
+            }
+            if (epochs[slot] == epoch && !retired[slot]) {
+                retired[slot] = true;
+                locations[slot] = null;
+                free.add(slot);
+            }
+        }
+    }
+
+    private void checkSlotWithinLock(final int slot) {
+        if (slot < 0 || slot >= length) {
+            throw becauseIllegal("Slot %s is not within %s", slot, length);
+        }
+    }
+
+    private void ensureLengthWithinLock(final int needed) {
+        if (needed <= length) {
+            return;
+        }
+        if (needed > values.length) {
+            final int capacity = Math.max(needed, values.length * 2);
+            epochs = Arrays.copyOf(epochs, capacity);
+            values = Arrays.copyOf(values, capacity);
+            locations = Arrays.copyOf(locations, capacity);
+            retired = Arrays.copyOf(retired, capacity);
+        }
+        length = needed;
+    }
+}
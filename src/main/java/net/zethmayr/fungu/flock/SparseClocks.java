@@ -0,0 +1,290 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.core.declarations.ReuseResults;
+
+import java.util.Arrays;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.BOTH;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.SOME_GREATER;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.SOME_LESSER;
+import static net.zethmayr.fungu.flock.FlockTreeUtilities.compareScattered;
+import static net.zethmayr.fungu.flock.FlockTreeUtilities.nthScatteredIndex;
+
+/**
+ * An immutable vector clock keyed by {@link FlockTreeUtilities#nthScatteredIndex(int) scattered index}.
+ * <p>
+ * Only non-zero entries are stored, as parallel primitive arrays
+ * in {@link FlockTreeUtilities#compareScattered(int, int) scattered order}.
+ * An absent key has the value zero,
+ * so members join without touching any stored entry,
+ * and merges and comparisons cost time proportional to the stored entries.
+ */
+@ReuseResults
+public final class SparseClocks {
+
+    private static final SparseClocks EMPTY = new SparseClocks(new int[0], new long[0]);
+
+    private final int[] keys;
+    private final long[] values;
+
+    private SparseClocks(final int[] keys, final long[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Returns clocks with no entries.
+     *
+     * @return empty clocks.
+     */
+    public static SparseClocks empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns clocks with the given entries.
+     *
+     * @param keys   scattered indices, in scattered order.
+     * @param values the values, parallel to the keys.
+     * @return the clocks.
+     * @throws IllegalArgumentException if the keys are not distinct and in scattered order,
+     *                                  or the arrays are different lengths.
+     */
+    public static SparseClocks of(final int[] keys, final long[] values) {
+        if (keys.length != values.length) {
+            throw FlockArrayUtilities.becauseLengthDisagreement();
+        }
+        for (int n = 1; n < keys.length; n++) {
+            if (compareScattered(keys[n - 1], keys[n]) >= 0) {
+                throw becauseIllegal("Key %s is out of order", keys[n]);
+            }
+        }
+        int size = 0;
+        final int[] keptKeys = new int[keys.length];
+        final long[] keptValues = new long[values.length];
+        for (int n = 0; n < keys.length; n++) {
+            if (values[n] != 0) {
+                keptKeys[size] = keys[n];
+                keptValues[size++] = values[n];
+            }
+        }
+        return sized(keptKeys, keptValues, size);
+    }
+
+    /**
+     * Returns clocks with the given dense values,
+     * keyed by the scattered index of each position.
+     *
+     * @param clocks dense clock values.
+     * @return the clocks.
+     */
+    public static SparseClocks fromDense(final long[] clocks) {
+        final int[] keys = new int[clocks.length];
+        for (int n = 0; n < keys.length; n++) {
+            keys[n] = nthScatteredIndex(n);
+        }
+        return of(keys, clocks);
+    }
+
+    private static SparseClocks sized(final int[] keys, final long[] values, final int size) {
+        if (size == 0) {
+            return EMPTY;
+        }
+        return size == keys.length
+                ? new SparseClocks(keys, values)
+                : new SparseClocks(Arrays.copyOf(keys, size), Arrays.copyOf(values, size));
+    }
+
+    /**
+     * Returns the number of stored, non-zero entries.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the value for the given key.
+     *
+     * @param key a scattered index.
+     * @return the value, or zero if absent.
+     */
+    public long get(final int key) {
+        final int found = find(key);
+        return found < 0 ? 0L : values[found];
+    }
+
+    /**
+     * Returns the stored keys, in scattered order.
+     *
+     * @return a copy of the keys.
+     */
+    public int[] keys() {
+        return keys.clone();
+    }
+
+    /**
+     * Returns the stored values, parallel to the keys.
+     *
+     * @return a copy of the values.
+     */
+    public long[] values() {
+        return values.clone();
+    }
+
+    private int find(final int key) {
+        int low = 0;
+        int high = keys.length - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int compared = compareScattered(keys[middle], key);
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns clocks with the value for the given key incremented.
+     *
+     * @param key a scattered index.
+     * @return the incremented clocks.
+     */
+    public SparseClocks increment(final int key) {
+        return with(key, get(key) + 1);
+    }
+
+    /**
+     * Returns clocks with the value for the given key replaced.
+     *
+     * @param key   a scattered index.
+     * @param value the new value.
+     * @return the changed clocks.
+     */
+    public SparseClocks with(final int key, final long value) {
+        final int found = find(key);
+        if (found >= 0) {
+            if (value == 0) {
+                final int[] lessKeys = new int[keys.length - 1];
+                final long[] lessValues = new long[keys.length - 1];
+                System.arraycopy(keys, 0, lessKeys, 0, found);
+                System.arraycopy(keys, found + 1, lessKeys, found, lessKeys.length - found);
+                System.arraycopy(values, 0, lessValues, 0, found);
+                System.arraycopy(values, found + 1, lessValues, found, lessValues.length - found);
+                return sized(lessKeys, lessValues, lessKeys.length);
+            }
+            final long[] changed = values.clone();
+            changed[found] = value;
+            return new SparseClocks(keys, changed);
+        }
+        if (value == 0) {
+            return this;
+        }
+        final int at = -(found + 1);
+        final int[] moreKeys = new int[keys.length + 1];
+        final long[] moreValues = new long[keys.length + 1];
+        System.arraycopy(keys, 0, moreKeys, 0, at);
+        System.arraycopy(keys, at, moreKeys, at + 1, keys.length - at);
+        System.arraycopy(values, 0, moreValues, 0, at);
+        System.arraycopy(values, at, moreValues, at + 1, values.length - at);
+        moreKeys[at] = key;
+        moreValues[at] = value;
+        return new SparseClocks(moreKeys, moreValues);
+    }
+
+    /**
+     * Returns the entry-wise maximum of these and the given clocks.
+     *
+     * @param other other clocks.
+     * @return the merged clocks.
+     */
+    public SparseClocks merge(final SparseClocks other) {
+        final int[] mergedKeys = new int[keys.length + other.keys.length];
+        final long[] mergedValues = new long[mergedKeys.length];
+        int ours = 0;
+        int theirs = 0;
+        int size = 0;
+        while (ours < keys.length || theirs < other.keys.length) {
+            final int compared = ours == keys.length ? 1
+                    : theirs == other.keys.length ? -1
+                    : compareScattered(keys[ours], other.keys[theirs]);
+            final int key;
+            final long value;
+            if (compared < 0) {
+                key = keys[ours];
+                value = Math.max(values[ours++], 0L);
+            } else if (compared > 0) {
+                key = other.keys[theirs];
+                value = Math.max(other.values[theirs++], 0L);
+            } else {
+                key = keys[ours];
+                value = Math.max(values[ours++], other.values[theirs++]);
+            }
+            if (value != 0) {
+                mergedKeys[size] = key;
+                mergedValues[size++] = value;
+            }
+        }
+        return sized(mergedKeys, mergedValues, size);
+    }
+
+    /**
+     * Returns the causal relation of these clocks to the given clocks,
+     * treating absent keys as zero.
+     *
+     * @param other other clocks.
+     * @return the causal relation.
+     */
+    public CausalOrder causalOrder(final SparseClocks other) {
+        int flags = 0;
+        int ours = 0;
+        int theirs = 0;
+        while (flags != BOTH && (ours < keys.length || theirs < other.keys.length)) {
+            final int compared = ours == keys.length ? 1
+                    : theirs == other.keys.length ? -1
+                    : compareScattered(keys[ours], other.keys[theirs]);
+            final long our;
+            final long their;
+            if (compared < 0) {
+                our = values[ours++];
+                their = 0L;
+            } else if (compared > 0) {
+                our = 0L;
+                their = other.values[theirs++];
+            } else {
+                our = values[ours++];
+                their = other.values[theirs++];
+            }
+            flags |= our < their ? SOME_LESSER : our > their ? SOME_GREATER : 0;
+        }
+        return CausalOrder.ofFlags(flags);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other || other instanceof SparseClocks sparse
+                && Arrays.equals(keys, sparse.keys)
+                && Arrays.equals(values, sparse.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(keys) + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder described = new StringBuilder("{");
+        for (int n = 0; n < keys.length; n++) {
+            described.append(n == 0 ? "" : ", ").append(keys[n]).append('=').append(values[n]);
+        }
+        return described.append('}').toString();
+    }
+}
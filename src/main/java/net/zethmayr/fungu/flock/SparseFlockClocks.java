@@ -0,0 +1,175 @@
+package net.zethmayr.fungu.flock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseImpossible;
+import static net.zethmayr.fungu.flock.PermanentNopException.becausePermanentNop;
+
+/**
+ * Implements vector clocks for a process
+ * over {@link SparseClocks sparse clocks}.
+ * <p>
+ * Members are identified by a fixed scattered index rather than a position,
+ * so membership changes need no coordination here:
+ * a new member's entry appears with its first event,
+ * and a retired member's entry is simply never advanced again.
+ * Since the clocks are immutable, snapshots are free.
+ * <p>
+ * Once every live member is known to have a retired member's final value,
+ * as {@link TombstoneCompaction} proves,
+ * the entry can be {@link #compact(int, long) compacted}:
+ * it is dropped from the local clocks,
+ * and stripped from received clocks until a value beyond the final value shows the key reused,
+ * or until the tombstone is {@link #release(int, long) released} once no message carrying it remains in flight.
+ * <p>
+ * Compaction gives up causal order with the retired member's events:
+ * its entry reads zero thereafter,
+ * so clocks of later events no longer dominate clocks which carry its entry,
+ * and compare as concurrent with rather than after them.
+ * Compare only clocks taken on the same side of a compaction.
+ */
+public class SparseFlockClocks {
+
+    private final int localKey;
+    private final AtomicReference<SparseClocks> clocks;
+    private final Map<Integer, Long> compacted = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new member with the given scattered index and initial clocks.
+     *
+     * @param localKey the local member's scattered index.
+     * @param initial  some known clock values.
+     */
+    public SparseFlockClocks(final int localKey, final SparseClocks initial) {
+        this.localKey = localKey;
+        this.clocks = new AtomicReference<>(initial);
+    }
+
+    /**
+     * Returns the local member's scattered index.
+     *
+     * @return the local key.
+     */
+    public int localKey() {
+        return localKey;
+    }
+
+    /**
+     * For a local event,
+     * increments the local clock
+     * and returns the local sequence value.
+     *
+     * @return the new local sequence value.
+     */
+    public long localEvent() {
+        return messageClocks().get(localKey);
+    }
+
+    /**
+     * For a message being sent,
+     * increments the local clock
+     * and returns the known clock values.
+     *
+     * @return the clock values for a message.
+     */
+    public SparseClocks messageClocks() {
+        return clocks.updateAndGet(c -> c.increment(localKey));
+    }
+
+    /**
+     * For a message received,
+     * increments the local clock
+     * and merges the received values.
+     *
+     * @param sentClocks the remote clock values.
+     * @return updated local clocks from the message.
+     * @throws PermanentNopException if the remote advances the local clock.
+     */
+    public SparseClocks messageReceived(final SparseClocks sentClocks) throws PermanentNopException {
+        if (sentClocks.get(localKey) > localClock()) {
+            throw becausePermanentNop("Remote advance over local");
+        }
+        if (compacted.isEmpty()) {
+            return clocks.updateAndGet(c -> c.merge(sentClocks).increment(localKey));
+        }
+        compacted.forEach((key, finalValue) -> {
+            if (sentClocks.get(key) > finalValue) {
+                compacted.remove(key, finalValue);
+            }
+        });
+        return clocks.updateAndGet(c -> withoutCompacted(c.merge(sentClocks)).increment(localKey));
+    }
+
+    private SparseClocks withoutCompacted(final SparseClocks merged) {
+        SparseClocks kept = merged;
+        for (final Map.Entry<Integer, Long> tombstone : compacted.entrySet()) {
+            final long value = kept.get(tombstone.getKey());
+            if (value != 0 && value <= tombstone.getValue()) {
+                kept = kept.with(tombstone.getKey(), 0L);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Drops a retired member's entry,
+     * once its final value is known to every live member.
+     * Received values up to the final value are dropped thereafter;
+     * a greater value means a new member has resumed at the key, and is merged as usual.
+     *
+     * @param key        the retired member's scattered index.
+     * @param finalValue the retired member's final clock value.
+     * @throws IllegalStateException if compacting the local key - we are presumed to have crashed.
+     * @see TombstoneCompaction
+     */
+    public void compact(final int key, final long finalValue) {
+        if (key == localKey) {
+            throw becauseImpossible("This instance %s is already presumed dead", key);
+        }
+        compacted.merge(key, finalValue, Math::max);
+        clocks.updateAndGet(this::withoutCompacted);
+    }
+
+    /**
+     * Forgets a compacted entry,
+     * once no message carrying a value up to its final value remains in flight.
+     * An entry since compacted with a greater final value is kept.
+     *
+     * @param key        the retired member's scattered index.
+     * @param finalValue the final value it was compacted with.
+     * @see TombstoneCompaction#released()
+     */
+    public void release(final int key, final long finalValue) {
+        compacted.remove(key, finalValue);
+    }
+
+    /**
+     * Returns the compacted keys and their final values.
+     *
+     * @return the compacted entries.
+     */
+    public Map<Integer, Long> compacted() {
+        return Map.copyOf(compacted);
+    }
+
+    /**
+     * Returns the clock values as of the time of call.
+     *
+     * @return a clock snapshot.
+     */
+    public SparseClocks clockData() {
+        return clocks.get();
+    }
+
+    /**
+     * Returns the current local clock value,
+     * with no further consistency guarantees.
+     *
+     * @return the local clock value.
+     */
+    public long localClock() {
+        return clocks.get().get(localKey);
+    }
+}
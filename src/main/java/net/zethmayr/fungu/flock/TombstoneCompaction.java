@@ -0,0 +1,202 @@
+package net.zethmayr.fungu.flock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+
+/**
+ * Proves when retired members' entries can be {@link SparseFlockClocks#compact(int, long) compacted},
+ * so that clocks stop carrying them.
+ * <p>
+ * Each retired key is a tombstone awaiting every member live at its retirement,
+ * and every member joining later.
+ * Clocks observed from a member which include the final value
+ * show that member has it;
+ * once no member is awaited, the tombstone is proven and can be compacted everywhere.
+ * <p>
+ * A proven tombstone then drains:
+ * messages sent before their senders compacted may still carry the final value,
+ * so receivers must keep stripping it.
+ * Clocks observed from a member which no longer carry the final value
+ * show that member has compacted;
+ * provided each member's clocks are observed in the order it sent them,
+ * none of its earlier messages remain in flight.
+ * Once no member is awaited, the tombstone is {@link #released() released}
+ * and receivers can {@link SparseFlockClocks#release(int, long) forget} it.
+ * A retiring member is presumed to have stopped sending, and is no longer awaited.
+ * All operations are serialized.
+ */
+public final class TombstoneCompaction {
+
+    private final Object lock = new Object();
+    private final Set<Integer> live = new HashSet<>();
+    private final Map<Integer, Tombstone> pending = new HashMap<>();
+    private final Map<Integer, Tombstone> draining = new HashMap<>();
+    private final List<Proof> released = new ArrayList<>();
+
+    private record Tombstone(long finalValue, Set<Integer> awaiting) {
+    }
+
+    /**
+     * A retired key whose final value every live member has.
+     *
+     * @param key        the retired member's scattered index.
+     * @param finalValue the retired member's final clock value.
+     */
+    public record Proof(int key, long finalValue) {
+    }
+
+    /**
+     * Creates a compaction process over the given live members.
+     *
+     * @param liveKeys the live members' scattered indices.
+     */
+    public TombstoneCompaction(final int... liveKeys) {
+        for (final int key : liveKeys) {
+            live.add(key);
+        }
+    }
+
+    /**
+     * Records a member's retirement, starting its tombstone.
+     * The member is no longer awaited for other tombstones.
+     *
+     * @param key        the retired member's scattered index.
+     * @param finalValue the retired member's final clock value.
+     * @return any tombstones proven by no longer awaiting the member.
+     * @throws IllegalArgumentException if the member is not live.
+     */
+    public List<Proof> retired(final int key, final long finalValue) {
+        synchronized (lock) {
+            if (!live.remove(key)) {
+                throw becauseIllegal("Member %s is not live", key);
+            }
+            final List<Proof> proven = new ArrayList<>();
+            for (final Tombstone tombstone : pending.values()) {
+                tombstone.awaiting.remove(key);
+            }
+            for (final Tombstone tombstone : draining.values()) {
+                tombstone.awaiting.remove(key);
+            }
+            pending.put(key, new Tombstone(finalValue, new HashSet<>(live)));
+            collectProvenWithinLock(proven);
+            collectDrainedWithinLock();
+            return proven;
+        }
+    }
+
+    /**
+     * Records a member joining, who must also be shown to have every pending final value,
+     * and to have dropped every draining one.
+     *
+     * @param key the new member's scattered index.
+     */
+    public void joined(final int key) {
+        synchronized (lock) {
+            live.add(key);
+            pending.remove(key);
+            draining.remove(key);
+            for (final Tombstone tombstone : pending.values()) {
+                tombstone.awaiting.add(key);
+            }
+            for (final Tombstone tombstone : draining.values()) {
+                tombstone.awaiting.add(key);
+            }
+        }
+    }
+
+    /**
+     * Records clocks observed from a live member,
+     * such as those of a message it sent or a gossip exchange,
+     * in the order the member sent them.
+     *
+     * @param key    the member's scattered index.
+     * @param clocks the member's clocks.
+     * @return the tombstones proven by this observation.
+     */
+    public List<Proof> observed(final int key, final SparseClocks clocks) {
+        synchronized (lock) {
+            final List<Proof> proven = new ArrayList<>();
+            for (final Map.Entry<Integer, Tombstone> entry : pending.entrySet()) {
+                if (clocks.get(entry.getKey()) >= entry.getValue().finalValue) {
+                    entry.getValue().awaiting.remove(key);
+                }
+            }
+            for (final Map.Entry<Integer, Tombstone> entry : draining.entrySet()) {
+                final long value = clocks.get(entry.getKey());
+                // zero once compacted, or beyond the final value once the key is reused
+                if (value == 0 || value > entry.getValue().finalValue) {
+                    entry.getValue().awaiting.remove(key);
+                }
+            }
+            collectProvenWithinLock(proven);
+            collectDrainedWithinLock();
+            return proven;
+        }
+    }
+
+    private void collectProvenWithinLock(final List<Proof> proven) {
+        final Iterator<Map.Entry<Integer, Tombstone>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            final Map.Entry<Integer, Tombstone> entry = entries.next();
+            if (entry.getValue().awaiting.isEmpty()) {
+                proven.add(new Proof(entry.getKey(), entry.getValue().finalValue));
+                entries.remove();
+                draining.put(entry.getKey(), new Tombstone(entry.getValue().finalValue, new HashSet<>(live)));
+            }
+        }
+    }
+
+    private void collectDrainedWithinLock() {
+        final Iterator<Map.Entry<Integer, Tombstone>> entries = draining.entrySet().iterator();
+        while (entries.hasNext()) {
+            final Map.Entry<Integer, Tombstone> entry = entries.next();
+            if (entry.getValue().awaiting.isEmpty()) {
+                released.add(new Proof(entry.getKey(), entry.getValue().finalValue));
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns and clears the proven tombstones which have since drained,
+     * so that no message carrying their final values remains in flight.
+     *
+     * @return the released tombstones.
+     */
+    public List<Proof> released() {
+        synchronized (lock) {
+            final List<Proof> drained = List.copyOf(released);
+            released.clear();
+            return drained;
+        }
+    }
+
+    /**
+     * Returns the number of tombstones not yet proven.
+     *
+     * @return the pending count.
+     */
+    public int pending() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Returns the number of proven tombstones not yet drained.
+     *
+     * @return the draining count.
+     */
+    public int draining() {
+        synchronized (lock) {
+            return draining.size();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package net.zethmayr.fungu.flock.simulation;
+
+import net.zethmayr.fungu.flock.ClockCodec;
+import net.zethmayr.fungu.flock.EventClocks;
+import net.zethmayr.fungu.flock.FlockClocks;
+import net.zethmayr.fungu.flock.IntervalTreeClock;
+import net.zethmayr.fungu.flock.NopException;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseImpossible;
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseStaticsOnly;
+
+/**
+ * Compares {@link FlockClocks} with {@link IntervalTreeClock} stamps
+ * over the same sequence of messages, joins and leaves.
+ * <p>
+ * Vector members join at the end and leave from anywhere,
+ * with every remaining member applying each change;
+ * stamp members join by forking a sponsor and leave by joining into an heir.
+ * Messages are delivered at once, so only the clocks' own costs are measured.
+ */
+public final class ChurnBenchmark {
+
+    private ChurnBenchmark() {
+        throw becauseStaticsOnly();
+    }
+
+    /**
+     * The outcome of one implementation's run.
+     *
+     * @param clocks           the clock implementation.
+     * @param operations       the number of operations.
+     * @param joins            the number of members joining.
+     * @param leaves           the number of members leaving.
+     * @param finalMembers     the number of members at the end.
+     * @param nanos            the total time taken.
+     * @param meanMessageBytes the mean encoded clock size per message.
+     * @param maxMessageBytes  the largest encoded clock size of a message.
+     */
+    public record ChurnReport(String clocks, int operations, int joins, int leaves, int finalMembers,
+                              long nanos, double meanMessageBytes, int maxMessageBytes) {
+
+        /**
+         * Returns the throughput, measured over the whole run.
+         *
+         * @return operations per second.
+         */
+        public double operationsPerSecond() {
+            return nanos == 0 ? 0.0 : operations * 1e9 / nanos;
+        }
+    }
+
+    private enum Kind {
+        MESSAGE,
+        JOIN,
+        LEAVE
+    }
+
+    private record Operation(Kind kind, int first, int second) {
+    }
+
+    private static final class Tally {
+        int joins;
+        int leaves;
+        long messages;
+        long messageBytes;
+        int maxMessageBytes;
+
+        void message(final int bytes) {
+            messages++;
+            messageBytes += bytes;
+            maxMessageBytes = Math.max(maxMessageBytes, bytes);
+        }
+
+        ChurnReport report(final String clocks, final int operations, final int members, final long nanos) {
+            return new ChurnReport(clocks, operations, joins, leaves, members, nanos,
+                    messages == 0 ? 0.0 : (double) messageBytes / messages, maxMessageBytes);
+        }
+    }
+
+    /**
+     * Runs the same churn against both implementations.
+     *
+     * @param initialMembers the starting flock size.
+     * @param operations     the number of operations.
+     * @param churn          the probability each operation is a join or leave rather than a message.
+     * @param seed           the seed for the operation sequence.
+     * @return the vector report, then the stamp report.
+     * @throws IllegalArgumentException if fewer than two initial members, or the churn is outside [0, 1].
+     */
+    public static List<ChurnReport> compare(final int initialMembers, final int operations,
+                                            final double churn, final long seed) {
+        final List<Operation> plan = plan(initialMembers, operations, churn, seed);
+        return List.of(vectors(initialMembers, plan), intervalTrees(initialMembers, plan));
+    }
+
+    private static List<Operation> plan(final int initialMembers, final int operations,
+                                        final double churn, final long seed) {
+        if (initialMembers < 2) {
+            throw becauseIllegal("Flock size %s is less than 2", initialMembers);
+        }
+        if (!(churn >= 0.0 && churn <= 1.0)) {
+            throw becauseIllegal("Churn %s must be within [0, 1]", churn);
+        }
+        final Random random = new Random(seed);
+        final List<Operation> plan = new ArrayList<>(operations);
+        int members = initialMembers;
+        for (int n = 0; n < operations; n++) {
+            final int first = random.nextInt(members);
+            final int second = (first + 1 + random.nextInt(members - 1)) % members;
+            if (random.nextDouble() >= churn) {
+                plan.add(new Operation(Kind.MESSAGE, first, second));
+            } else if (members == 2 || random.nextBoolean()) {
+                plan.add(new Operation(Kind.JOIN, first, second));
+                members++;
+            } else {
+                plan.add(new Operation(Kind.LEAVE, first, second < first ? second : second - 1));
+                members--;
+            }
+        }
+        return plan;
+    }
+
+    private static URI location(final int serial) {
+        return URI.create("sim:worker-" + serial);
+    }
+
+    private static ChurnReport vectors(final int initialMembers, final List<Operation> plan) {
+        final URI[] locations = new URI[initialMembers];
+        for (int n = 0; n < initialMembers; n++) {
+            locations[n] = location(n);
+        }
+        final List<FlockClocks> members = new ArrayList<>();
+        for (int n = 0; n < initialMembers; n++) {
+            members.add(new FlockClocks(n, new long[initialMembers], locations));
+        }
+        final Tally tally = new Tally();
+        int serial = initialMembers;
+        final long started = System.nanoTime();
+        try {
+            for (final Operation operation : plan) {
+                switch (operation.kind()) {
+                    case MESSAGE -> {
+                        final EventClocks sent = members.get(operation.first()).messageClocks();
+                        tally.message(ClockCodec.encodedSize(sent, null));
+                        members.get(operation.second()).messageReceived(sent.clocks());
+                    }
+                    case JOIN -> {
+                        final int index = members.size();
+                        final URI joining = location(serial++);
+                        for (final FlockClocks member : members) {
+                            member.addMember(index, joining, member.proposeInsertValues(index));
+                        }
+                        final FlockClocks sponsor = members.get(operation.first());
+                        members.add(new FlockClocks(index, sponsor.clocks(), sponsor.locations()));
+                        tally.joins++;
+                    }
+                    case LEAVE -> {
+                        final int index = operation.first();
+                        members.remove(index);
+                        for (final FlockClocks member : members) {
+                            member.retireMember(index, member.proposeDeleteValues(index));
+                        }
+                        tally.leaves++;
+                    }
+                }
+            }
+        } catch (final NopException e) {
+            throw becauseImpossible("Synchronous churn was rejected: %s", e.getMessage());
+        }
+        return tally.report("FlockClocks", plan.size(), members.size(), System.nanoTime() - started);
+    }
+
+    private static ChurnReport intervalTrees(final int initialMembers, final List<Operation> plan) {
+        final List<IntervalTreeClock> members = new ArrayList<>();
+        members.add(IntervalTreeClock.seed());
+        while (members.size() < initialMembers) {
+            final IntervalTreeClock[] forked = members.remove(0).fork();
+            members.add(forked[0]);
+            members.add(forked[1]);
+        }
+        final Tally tally = new Tally();
+        final long started = System.nanoTime();
+        for (final Operation operation : plan) {
+            switch (operation.kind()) {
+                case MESSAGE -> {
+                    final IntervalTreeClock sender = members.get(operation.first()).event();
+                    members.set(operation.first(), sender);
+                    final IntervalTreeClock sent = sender.peek();
+                    tally.message(sent.encode().length);
+                    members.set(operation.second(), members.get(operation.second()).messageReceived(sent));
+                }
+                case JOIN -> {
+                    final IntervalTreeClock[] forked = members.get(operation.first()).fork();
+                    members.set(operation.first(), forked[0]);
+                    members.add(forked[1]);
+                    tally.joins++;
+                }
+                case LEAVE -> {
+                    final IntervalTreeClock leaving = members.remove(operation.first());
+                    members.set(operation.second(), members.get(operation.second()).join(leaving));
+                    tally.leaves++;
+                }
+            }
+        }
+        return tally.report("IntervalTreeClock", plan.size(), members.size(), System.nanoTime() - started);
+    }
+}
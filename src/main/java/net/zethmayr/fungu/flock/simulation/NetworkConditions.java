@@ -0,0 +1,39 @@
+package net.zethmayr.fungu.flock.simulation;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+
+/**
+ * Simulated network behavior, in simulated ticks.
+ * <p>
+ * Each copy of a message is lost with probability {@code loss};
+ * otherwise it arrives after {@code minLatency} plus up to {@code jitter} ticks,
+ * and with probability {@code reorder} a further {@code reorderDelay} ticks,
+ * so that it is likely overtaken by later messages.
+ *
+ * @param minLatency   the least delivery time.
+ * @param jitter       the greatest additional delivery time.
+ * @param loss         the probability of losing a message.
+ * @param reorder      the probability of delaying a message.
+ * @param reorderDelay the delay applied to reordered messages.
+ */
+public record NetworkConditions(long minLatency, long jitter, double loss, double reorder, long reorderDelay) {
+
+    /**
+     * A network delivering every message after exactly one tick.
+     */
+    public static final NetworkConditions PERFECT = new NetworkConditions(1, 0, 0.0, 0.0, 0);
+
+    /**
+     * Validates the conditions.
+     *
+     * @throws IllegalArgumentException if a time is negative or a probability is outside [0, 1].
+     */
+    public NetworkConditions {
+        if (minLatency < 0 || jitter < 0 || reorderDelay < 0) {
+            throw becauseIllegal("Times %s, %s, %s must not be negative", minLatency, jitter, reorderDelay);
+        }
+        if (!(loss >= 0.0 && loss <= 1.0) || !(reorder >= 0.0 && reorder <= 1.0)) {
+            throw becauseIllegal("Probabilities %s, %s must be within [0, 1]", loss, reorder);
+        }
+    }
+}
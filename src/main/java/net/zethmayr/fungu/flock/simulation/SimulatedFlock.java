@@ -0,0 +1,242 @@
+package net.zethmayr.fungu.flock.simulation;
+
+import net.zethmayr.fungu.flock.FlockClocks;
+import net.zethmayr.fungu.flock.NopException;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+
+/**
+ * Runs a flock of {@link FlockClocks} members in one thread,
+ * on a deterministic scheduler of simulated ticks.
+ * <p>
+ * Given the same size, conditions, seed and sequence of calls,
+ * a simulation makes the same deliveries in the same order.
+ * Only the measured merge times vary.
+ *
+ * @param <T> the common message type.
+ */
+public final class SimulatedFlock<T> {
+
+    /**
+     * Heartbeat rounds attempted before a run is reported as not converging.
+     */
+    static final int MAX_HEARTBEAT_ROUNDS = 1000;
+
+    private final NetworkConditions network;
+    private final Random random;
+    private final List<SimulatedMember<T>> members;
+    private final PriorityQueue<Scheduled> pending = new PriorityQueue<>(
+            Comparator.comparingLong(Scheduled::time).thenComparingLong(Scheduled::sequence));
+
+    private long now;
+    private long sequence;
+    private long sent;
+    private long delivered;
+    private long lost;
+    private long rejected;
+    private long transitTicks;
+    private long mergeNanos;
+
+    private record Scheduled(long time, long sequence, Runnable action) {
+    }
+
+    /**
+     * Creates a flock of the given size with all clocks at zero.
+     *
+     * @param size       the number of members.
+     * @param network    the simulated network behavior.
+     * @param seed       the seed for all random choices.
+     * @param onDelivery receives each non-heartbeat message at its recipient.
+     * @throws IllegalArgumentException if the size is not positive.
+     */
+    public SimulatedFlock(final int size, final NetworkConditions network, final long seed,
+                          final BiConsumer<SimulatedMember<T>, T> onDelivery) {
+        if (size <= 0) {
+            throw becauseIllegal("Flock size %s is not positive", size);
+        }
+        this.network = network;
+        this.random = new Random(seed);
+        final URI[] locations = new URI[size];
+        for (int n = 0; n < size; n++) {
+            locations[n] = URI.create("sim:member-" + n);
+        }
+        final List<SimulatedMember<T>> created = new ArrayList<>(size);
+        for (int n = 0; n < size; n++) {
+            created.add(new SimulatedMember<>(this, n, new FlockClocks(n, new long[size], locations), onDelivery));
+        }
+        this.members = Collections.unmodifiableList(created);
+    }
+
+    /**
+     * Returns the members, by index.
+     *
+     * @return the members.
+     */
+    public List<SimulatedMember<T>> members() {
+        return members;
+    }
+
+    /**
+     * Returns the current simulated time.
+     *
+     * @return the time in ticks.
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * Schedules an action after the given delay.
+     *
+     * @param delay  a delay in ticks.
+     * @param action the action.
+     */
+    public void schedule(final long delay, final Runnable action) {
+        pending.add(new Scheduled(now + delay, sequence++, action));
+    }
+
+    void broadcast(final int from, final T message, final long[] clocks) {
+        final long sentAt = now;
+        for (final SimulatedMember<T> to : members) {
+            if (to.index() == from) {
+                continue;
+            }
+            sent++;
+            if (random.nextDouble() < network.loss()) {
+                lost++;
+                continue;
+            }
+            long latency = network.minLatency() + (network.jitter() == 0 ? 0 : random.nextLong(network.jitter() + 1));
+            if (random.nextDouble() < network.reorder()) {
+                latency += network.reorderDelay();
+            }
+            schedule(latency, () -> deliver(to, message, clocks, sentAt));
+        }
+    }
+
+    private void deliver(final SimulatedMember<T> to, final T message, final long[] clocks, final long sentAt) {
+        final long started = System.nanoTime();
+        try {
+            to.receiveMessage(message, clocks);
+            delivered++;
+            transitTicks += now - sentAt;
+        } catch (final NopException e) {
+            rejected++;
+        } finally {
+            mergeNanos += System.nanoTime() - started;
+        }
+    }
+
+    /**
+     * Performs the next scheduled action, advancing the simulated time to it.
+     *
+     * @return whether there was an action.
+     */
+    public boolean step() {
+        final Scheduled next = pending.poll();
+        if (next == null) {
+            return false;
+        }
+        now = next.time();
+        next.action().run();
+        return true;
+    }
+
+    /**
+     * Performs scheduled actions until none remain.
+     */
+    public void runUntilIdle() {
+        while (step()) {
+            // each step may schedule more
+        }
+    }
+
+    /**
+     * Runs a load of messages from every member, then heartbeats until the flock converges.
+     * Each member sends its messages at random times within successive send intervals.
+     *
+     * @param messagesPerMember the number of messages each member sends.
+     * @param sendInterval      the average ticks between a member's sends.
+     * @param messages          creates each message at its sender.
+     * @return the report for this run.
+     */
+    public SimulationReport run(final int messagesPerMember, final long sendInterval,
+                                final Function<SimulatedMember<T>, T> messages) {
+        for (final SimulatedMember<T> member : members) {
+            for (int n = 0; n < messagesPerMember; n++) {
+                final long at = n * sendInterval + random.nextLong(Math.max(sendInterval, 1));
+                schedule(at, () -> member.sendMessage(messages.apply(member)));
+            }
+        }
+        runUntilIdle();
+        final long loadEnded = now;
+        final long[] frontier = new long[members.size()];
+        for (final SimulatedMember<T> member : members) {
+            frontier[member.index()] = member.clocks().localClock();
+        }
+        long convergence = -1;
+        for (int round = 0; round < MAX_HEARTBEAT_ROUNDS && convergence < 0; round++) {
+            if (converged(frontier)) {
+                convergence = now - loadEnded;
+                break;
+            }
+            members.forEach(SimulatedMember::heartbeat);
+            while (step()) {
+                if (converged(frontier)) {
+                    convergence = now - loadEnded;
+                    break;
+                }
+            }
+        }
+        pending.clear();
+        return report(convergence);
+    }
+
+    private boolean converged(final long[] frontier) {
+        for (final SimulatedMember<T> member : members) {
+            final long[] known = member.clocks().clocks();
+            for (int n = 0; n < frontier.length; n++) {
+                if (known[n] < frontier[n]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private SimulationReport report(final long convergence) {
+        return new SimulationReport(members.size(), sent, delivered, lost, rejected,
+                delivered == 0 ? 0.0 : (double) transitTicks / delivered, convergence, mergeNanos);
+    }
+
+    /**
+     * Runs the same load over flocks of increasing size.
+     *
+     * @param sizes             flock sizes.
+     * @param network           the simulated network behavior.
+     * @param seed              the seed for each simulation.
+     * @param messagesPerMember the number of messages each member sends.
+     * @param sendInterval      the average ticks between a member's sends.
+     * @return a report for each size, in order.
+     * @see #run(int, long, Function)
+     */
+    public static List<SimulationReport> benchmark(final int[] sizes, final NetworkConditions network, final long seed,
+                                                   final int messagesPerMember, final long sendInterval) {
+        final List<SimulationReport> reports = new ArrayList<>(sizes.length);
+        for (final int size : sizes) {
+            reports.add(new SimulatedFlock<Long>(size, network, seed, (m, t) -> {
+            }).run(messagesPerMember, sendInterval, SimulatedMember::received));
+        }
+        return reports;
+    }
+}
@@ -0,0 +1,107 @@
+package net.zethmayr.fungu.flock.simulation;
+
+import net.zethmayr.fungu.flock.FlockClocks;
+import net.zethmayr.fungu.flock.FlockProtocol;
+import net.zethmayr.fungu.flock.NopException;
+import net.zethmayr.fungu.flock.config.HasKnownMembers;
+
+import java.util.function.BiConsumer;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseUnsupported;
+
+/**
+ * A flock member whose messages travel through a {@link SimulatedFlock}.
+ * Sending broadcasts to every other member.
+ *
+ * @param <T> the common message type.
+ */
+public final class SimulatedMember<T> implements FlockProtocol<T> {
+
+    private final SimulatedFlock<T> flock;
+    private final int index;
+    private final FlockClocks clocks;
+    private final BiConsumer<SimulatedMember<T>, T> onDelivery;
+    private long received;
+
+    SimulatedMember(final SimulatedFlock<T> flock, final int index, final FlockClocks clocks,
+                    final BiConsumer<SimulatedMember<T>, T> onDelivery) {
+        this.flock = flock;
+        this.index = index;
+        this.clocks = clocks;
+        this.onDelivery = onDelivery;
+    }
+
+    /**
+     * Returns the member's index in the flock.
+     *
+     * @return the index.
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Returns the member's clocks.
+     *
+     * @return the clocks.
+     */
+    public FlockClocks clocks() {
+        return clocks;
+    }
+
+    /**
+     * Returns the number of messages delivered, excluding heartbeats.
+     *
+     * @return the received count.
+     */
+    public long received() {
+        return received;
+    }
+
+    /**
+     * Unsupported, since simulated membership is fixed.
+     *
+     * @param knownMembers ignored.
+     */
+    @Override
+    public void joinFlock(final HasKnownMembers knownMembers) {
+        throw becauseUnsupported("Simulated membership is fixed");
+    }
+
+    /**
+     * Unsupported, since simulated membership is fixed.
+     *
+     * @param memberId     ignored.
+     * @param knownMembers ignored.
+     */
+    @Override
+    public void reJoinFlock(final int memberId, final HasKnownMembers knownMembers) {
+        throw becauseUnsupported("Simulated membership is fixed");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A {@code null} message is a heartbeat, which only merges clocks.
+     */
+    @Override
+    public void receiveMessage(final T message, final long[] sentClocks) throws NopException {
+        clocks.messageReceived(sentClocks);
+        if (message != null) {
+            received++;
+            onDelivery.accept(this, message);
+        }
+    }
+
+    @Override
+    public void sendMessage(final T message) {
+        flock.broadcast(index, message, clocks.messageClocks().clocks());
+    }
+
+    /**
+     * Broadcasts the member's clocks without a message.
+     */
+    public void heartbeat() {
+        sendMessage(null);
+    }
+}
@@ -0,0 +1,37 @@
+package net.zethmayr.fungu.flock.simulation;
+
+/**
+ * The outcome of a {@link SimulatedFlock#run(int, long, java.util.function.Function) simulated run}.
+ * Times in ticks are simulated; times in nanoseconds are measured.
+ *
+ * @param members          the flock size.
+ * @param sent             the number of message copies sent, including heartbeats.
+ * @param delivered        the number of message copies merged.
+ * @param lost             the number of message copies lost.
+ * @param rejected         the number of message copies whose clocks were rejected.
+ * @param meanTransitTicks the mean time from send to merge.
+ * @param convergenceTicks the time from the end of the load until every member knew every other
+ *                         member's clock as of that time, or {@code -1} if that did not happen.
+ * @param mergeNanos       the total time spent merging received clocks.
+ */
+public record SimulationReport(int members, long sent, long delivered, long lost, long rejected,
+                               double meanTransitTicks, long convergenceTicks, long mergeNanos) {
+
+    /**
+     * Returns the mean time spent merging one message's clocks.
+     *
+     * @return the mean merge latency.
+     */
+    public double meanMergeNanos() {
+        return delivered == 0 ? 0.0 : (double) mergeNanos / delivered;
+    }
+
+    /**
+     * Returns the merge throughput, measured over the time spent merging.
+     *
+     * @return merges per second.
+     */
+    public double mergesPerSecond() {
+        return mergeNanos == 0 ? 0.0 : delivered * 1e9 / mergeNanos;
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * In-process simulation of a flock,
+ * for load-testing vector clocks without a network.
+ */
+@HigherLevel
+package net.zethmayr.fungu.flock.simulation;
+
+import net.zethmayr.fungu.core.declarations.HigherLevel;
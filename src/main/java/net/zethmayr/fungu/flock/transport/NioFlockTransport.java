@@ -0,0 +1,831 @@
+package net.zethmayr.fungu.flock.transport;
+
+import net.zethmayr.fungu.flock.AsyncFlockProtocol;
+import net.zethmayr.fungu.flock.ClockCodec;
+import net.zethmayr.fungu.flock.EventClocks;
+import net.zethmayr.fungu.flock.FlockClocks;
+import net.zethmayr.fungu.flock.FlockProtocol;
+import net.zethmayr.fungu.flock.NopException;
+import net.zethmayr.fungu.flock.RetryableNopException;
+import net.zethmayr.fungu.flock.config.HasKnownMembers;
+import net.zethmayr.fungu.flock.config.KnownMember;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import static java.nio.channels.SelectionKey.OP_ACCEPT;
+import static java.nio.channels.SelectionKey.OP_CONNECT;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.nio.channels.SelectionKey.OP_WRITE;
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseImpossible;
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseUnsupported;
+import static net.zethmayr.fungu.flock.PermanentNopException.becausePermanentNop;
+import static net.zethmayr.fungu.flock.RetryableNopException.becauseRetryNop;
+
+/**
+ * Implements the flock protocol over non-blocking sockets,
+ * with one selector thread per member.
+ * <p>
+ * Members are addressed by the host and port of their {@link KnownMember#getLocationUri() location}.
+ * Each message is broadcast to every other member over an outbound connection per peer.
+ * A frame is the clocks length and payload length as ints,
+ * the {@link ClockCodec clocks} as deltas against the previous frame on the connection,
+ * then the payload.
+ * <p>
+ * Sending only queues the message for each peer.
+ * The selector thread encodes the queued frames' headers into a reused direct buffer per peer
+ * and writes up to {@link #MAX_COALESCED} frames at once with a gathering write,
+ * so payloads are never copied and writes do not wait for replies.
+ * <p>
+ * Receivers acknowledge the sender's local clock value from each message's clocks,
+ * which is unique and increasing per sender,
+ * so one acknowledgement covers every earlier message from that sender.
+ * Unacknowledged messages are resent when a connection is re-established,
+ * and receivers discard the duplicates.
+ * <p>
+ * Each peer has its own bounded {@link OutboundQueue},
+ * and at most as many unacknowledged messages as the queue holds,
+ * so a slow or absent peer fills only its own queue.
+ * A full queue then applies its {@link OverflowPolicy} for that peer alone,
+ * by default dropping that peer's oldest queued message;
+ * a send that is dropped or refused for any peer completes its future
+ * with a {@link RetryableNopException}.
+ *
+ * @param <T> the common message type.
+ */
+public final class NioFlockTransport<T> implements FlockProtocol<T>, AsyncFlockProtocol<T>, Closeable {
+
+    /**
+     * The most frames written by one gathering write.
+     */
+    static final int MAX_COALESCED = 64;
+
+    /**
+     * The outbound queue capacity per peer, unless configured.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1 << 12;
+
+    private static final int MESSAGE = 0;
+    private static final int ACK = -1;
+    private static final int NACK = -2;
+    private static final int FRAME_HEADER = 2 * Integer.BYTES;
+    private static final int ACK_FRAME = FRAME_HEADER + Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long SELECT_MILLIS = 50;
+    private static final long RECONNECT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final PayloadCodec<T> codec;
+    private final BiConsumer<T, EventClocks> onMessage;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Object sendLock = new Object();
+    private final ConcurrentNavigableMap<Long, PendingSend> pending = new ConcurrentSkipListMap<>();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    private volatile FlockClocks clocks;
+    private volatile boolean running;
+    private int localId;
+    private Selector selector;
+    private ServerSocketChannel server;
+    private List<Peer> peers;
+    private Peer[] peersByIndex;
+    private long[] deliveredSeq;
+    private long[] acceptedSeq;
+    private Thread selecting;
+
+    /**
+     * A message, or an acknowledgement of the given sequence value.
+     */
+    private record Frame(int kind, EventClocks clocks, ByteBuffer payload, long sequence) {
+
+        static Frame message(final EventClocks clocks, final ByteBuffer payload) {
+            return new Frame(MESSAGE, clocks, payload, clocks.localClock());
+        }
+
+        static Frame acknowledgement(final int kind, final long sequence) {
+            return new Frame(kind, null, null, sequence);
+        }
+    }
+
+    private static final class PendingSend {
+        final EventClocks clocks;
+        final CompletableFuture<EventClocks> future = new CompletableFuture<>();
+        final AtomicInteger remaining;
+        final AtomicIntegerArray settled;
+
+        PendingSend(final EventClocks clocks, final int peers, final int members) {
+            this.clocks = clocks;
+            this.remaining = new AtomicInteger(peers);
+            this.settled = new AtomicIntegerArray(members);
+        }
+    }
+
+    private static final class Peer {
+        final int index;
+        final InetSocketAddress address;
+        final OutboundQueue<Frame> queued;
+        final int window;
+        final Deque<Frame> acknowledgements = new ArrayDeque<>();
+        final Deque<Frame> unacknowledged = new ArrayDeque<>();
+        Deque<Frame> resend = new ArrayDeque<>();
+        Frame carried;
+        ByteBuffer staging = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer[] batch;
+        int batchOffset;
+        long[] lastSent;
+        boolean reconnected;
+        long reconnectAt;
+
+        Peer(final int index, final InetSocketAddress address, final int capacity, final OverflowPolicy policy) {
+            this.index = index;
+            this.address = address;
+            this.queued = new OutboundQueue<>(capacity, policy);
+            this.window = capacity;
+        }
+
+        boolean hasOutput() {
+            return batch != null || !acknowledgements.isEmpty() || !resend.isEmpty()
+                    || unacknowledged.size() < window && (carried != null || !queued.isEmpty());
+        }
+    }
+
+    private static final class Inbound {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long[] lastReceived;
+    }
+
+    /**
+     * Creates a transport that has not yet joined a flock,
+     * with queues of the default capacity which drop their oldest message when full,
+     * so that an absent member never holds up sending.
+     *
+     * @param codec     converts messages to and from payloads.
+     * @param onMessage receives each accepted message with the updated local clocks,
+     *                  on the selector thread.
+     */
+    public NioFlockTransport(final PayloadCodec<T> codec, final BiConsumer<T, EventClocks> onMessage) {
+        this(codec, onMessage, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Creates a transport that has not yet joined a flock.
+     *
+     * @param codec          converts messages to and from payloads.
+     * @param onMessage      receives each accepted message with the updated local clocks,
+     *                       on the selector thread.
+     * @param queueCapacity  the most messages queued, and separately unacknowledged, per peer.
+     * @param overflowPolicy what to do when a peer's queue is full.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public NioFlockTransport(final PayloadCodec<T> codec, final BiConsumer<T, EventClocks> onMessage,
+                             final int queueCapacity, final OverflowPolicy overflowPolicy) {
+        if (queueCapacity <= 0) {
+            throw becauseIllegal("Capacity %s is not positive", queueCapacity);
+        }
+        this.codec = codec;
+        this.onMessage = onMessage;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Unsupported, since adding a member requires a membership exchange
+     * that this transport does not provide.
+     *
+     * @param knownMembers ignored.
+     */
+    @Override
+    public void joinFlock(final HasKnownMembers knownMembers) {
+        throw becauseUnsupported("Joining as a new member is not supported; re-join with an assigned ID");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Completes exceptionally, as {@link #joinFlock(HasKnownMembers)} is unsupported.
+     */
+    @Override
+    public CompletableFuture<Void> joinFlockAsync(final HasKnownMembers knownMembers) {
+        try {
+            joinFlock(knownMembers);
+            return CompletableFuture.completedFuture(null);
+        } catch (final RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Listens at the given member's location
+     * and connects to the other members as messages are sent.
+     *
+     * @throws IOException           if the location is invalid or cannot be bound.
+     * @throws IllegalStateException if already joined.
+     */
+    @Override
+    public synchronized void reJoinFlock(final int memberId, final HasKnownMembers knownMembers) throws IOException {
+        if (running) {
+            throw becauseImpossible("Already joined as %s", localId);
+        }
+        final KnownMember[] members = knownMembers.getKnownMembers().toArray(KnownMember[]::new);
+        final FlockClocks joined;
+        try {
+            joined = new FlockClocks(memberId, members);
+        } catch (final URISyntaxException e) {
+            throw new IOException("Invalid member location", e);
+        }
+        final URI[] locations = joined.locations();
+        final List<Peer> connecting = new ArrayList<>(locations.length - 1);
+        final Peer[] byIndex = new Peer[locations.length];
+        for (int n = 0; n < locations.length; n++) {
+            if (n != memberId) {
+                byIndex[n] = new Peer(n, addressOf(locations[n]), queueCapacity, overflowPolicy);
+                connecting.add(byIndex[n]);
+            }
+        }
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(addressOf(locations[memberId]));
+        server.configureBlocking(false);
+        server.register(selector, OP_ACCEPT);
+        localId = memberId;
+        peers = connecting;
+        peersByIndex = byIndex;
+        deliveredSeq = new long[locations.length];
+        acceptedSeq = new long[locations.length];
+        clocks = joined;
+        running = true;
+        selecting = new Thread(this::select, "flock-nio-" + memberId);
+        selecting.setDaemon(true);
+        selecting.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Binding completes before this returns.
+     */
+    @Override
+    public CompletableFuture<Void> reJoinFlockAsync(final int memberId, final HasKnownMembers knownMembers) {
+        try {
+            reJoinFlock(memberId, knownMembers);
+            return CompletableFuture.completedFuture(null);
+        } catch (final IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static InetSocketAddress addressOf(final URI location) {
+        if (location.getHost() == null || location.getPort() < 0) {
+            throw becauseIllegal("Location %s has no host and port", location);
+        }
+        return new InetSocketAddress(location.getHost(), location.getPort());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Called on the selector thread for each received frame.
+     */
+    @Override
+    public void receiveMessage(final T message, final long[] sentClocks) throws NopException {
+        final EventClocks updated = clocks.messageReceived(sentClocks);
+        received.incrementAndGet();
+        onMessage.accept(message, updated);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Queues the message for every other member without waiting,
+     * unless a full queue's policy is to {@link OverflowPolicy#BLOCK block},
+     * in which case it waits without holding up other senders,
+     * and fails if the transport is closed while waiting.
+     *
+     * @throws RetryableNopException if not joined,
+     *                               or a full queue's policy is to {@link OverflowPolicy#FAIL fail};
+     *                               the message is still queued for the other members.
+     * @see #sendMessageAsync(Object)
+     */
+    @Override
+    public void sendMessage(final T message) throws RetryableNopException {
+        if (!running) {
+            throw becauseRetryNop("Not joined");
+        }
+        final CompletableFuture<EventClocks> sent = send(message);
+        if (sent.isCompletedExceptionally()) {
+            try {
+                sent.join();
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof RetryableNopException refused) {
+                    throw refused;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A member rejecting the message's clocks completes the future
+     * with a {@link net.zethmayr.fungu.flock.PermanentNopException},
+     * and closing the transport completes it with an {@link IOException}.
+     */
+    @Override
+    public CompletableFuture<EventClocks> sendMessageAsync(final T message) {
+        if (!running) {
+            return CompletableFuture.failedFuture(becauseRetryNop("Not joined"));
+        }
+        return send(message);
+    }
+
+    private CompletableFuture<EventClocks> send(final T message) {
+        final ByteBuffer payload = codec.encode(message).asReadOnlyBuffer();
+        final PendingSend sending;
+        while (true) {
+            final Peer full;
+            synchronized (sendLock) {
+                if (!running) {
+                    return CompletableFuture.failedFuture(becauseRetryNop("Not joined"));
+                }
+                full = overflowPolicy == OverflowPolicy.BLOCK ? firstFull() : null;
+                if (full == null) {
+                    sending = queueWithinLock(payload);
+                    break;
+                }
+            }
+            // waits without the send lock, so other senders and close are not held up
+            try {
+                full.queued.awaitRoom();
+            } catch (final RetryableNopException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        selector.wakeup();
+        return sending.future;
+    }
+
+    private Peer firstFull() {
+        for (final Peer peer : peers) {
+            if (!peer.queued.hasRoom()) {
+                return peer;
+            }
+        }
+        return null;
+    }
+
+    private PendingSend queueWithinLock(final ByteBuffer payload) {
+        // queued in local clock order, so receivers can discard repeated values
+        final Frame frame = Frame.message(clocks.messageClocks(), payload);
+        final PendingSend sending = new PendingSend(frame.clocks(), peers.size(), peersByIndex.length);
+        if (peers.isEmpty()) {
+            sending.future.complete(frame.clocks());
+            return sending;
+        }
+        pending.put(frame.sequence(), sending);
+        for (final Peer peer : peers) {
+            try {
+                // only senders add, under the send lock, so a blocking queue with room never waits here
+                final Frame dropped = peer.queued.offer(frame);
+                if (dropped != null) {
+                    final PendingSend unsent = pending.get(dropped.sequence());
+                    if (unsent != null) {
+                        unsent.future.completeExceptionally(becauseRetryNop("Dropped for member " + peer.index));
+                        settle(dropped.sequence(), unsent, peer.index);
+                    }
+                }
+            } catch (final RetryableNopException e) {
+                sending.future.completeExceptionally(e);
+                settle(frame.sequence(), sending, peer.index);
+            }
+        }
+        return sending;
+    }
+
+    /**
+     * Records that the given member will not need the given send again,
+     * completing the send once every member has settled it.
+     * A send dropped for a member may later be covered by that member's acknowledgement,
+     * so each member settles each send at most once.
+     */
+    private void settle(final long sequence, final PendingSend sent, final int member) {
+        if (!sent.settled.compareAndSet(member, 0, 1)) {
+            return;
+        }
+        if (sent.remaining.decrementAndGet() == 0) {
+            pending.remove(sequence);
+            sent.future.complete(sent.clocks);
+        }
+    }
+
+    /**
+     * Returns the local clocks, once joined.
+     *
+     * @return the clocks.
+     */
+    public FlockClocks clocks() {
+        return clocks;
+    }
+
+    /**
+     * Returns the number of messages accepted.
+     *
+     * @return the received count.
+     */
+    public long received() {
+        return received.get();
+    }
+
+    /**
+     * Returns the number of messages whose clocks were rejected.
+     *
+     * @return the rejected count.
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the number of gathering writes performed,
+     * which is less than the number of frames written when frames are coalesced.
+     *
+     * @return the write count.
+     */
+    public long writes() {
+        return writes.get();
+    }
+
+    /**
+     * Returns the outbound queue counters for each peer, by member index.
+     *
+     * @return the queue metrics.
+     */
+    public Map<Integer, OutboundQueue.Metrics> queueMetrics() {
+        final Map<Integer, OutboundQueue.Metrics> metrics = new TreeMap<>();
+        for (final Peer peer : peers) {
+            metrics.put(peer.index, peer.queued.metrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the number of sent messages not yet acknowledged by every member.
+     *
+     * @return the in-flight count.
+     */
+    public int inFlight() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the selector thread and closes all connections.
+     * Unacknowledged sends complete exceptionally.
+     *
+     * @throws IOException if interrupted while stopping.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        synchronized (sendLock) {
+            running = false;
+        }
+        // wakes senders waiting for room, which then fail
+        peers.forEach(peer -> peer.queued.close());
+        selector.wakeup();
+        try {
+            selecting.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing", e);
+        } finally {
+            final IOException closed = new IOException("Closed before acknowledgement");
+            pending.values().forEach(p -> p.future.completeExceptionally(closed));
+            pending.clear();
+        }
+    }
+
+    private void select() {
+        try {
+            while (running) {
+                final long now = System.nanoTime();
+                for (final Peer peer : peers) {
+                    service(peer, now);
+                }
+                selector.select(SELECT_MILLIS);
+                for (final SelectionKey key : selector.selectedKeys()) {
+                    handle(key);
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (final IOException e) {
+            running = false;
+        } finally {
+            peers.forEach(peer -> peer.queued.close());
+            for (final SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    private void service(final Peer peer, final long now) {
+        if (!peer.hasOutput() && !peer.reconnected) {
+            return;
+        }
+        if (peer.channel == null) {
+            if (now - peer.reconnectAt >= 0) {
+                connect(peer);
+            }
+        } else if (peer.channel.isConnected()) {
+            peer.key.interestOps(OP_WRITE);
+        }
+    }
+
+    private void connect(final Peer peer) {
+        try {
+            final SocketChannel channel = SocketChannel.open();
+            peer.channel = channel;
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            final boolean connected = channel.connect(peer.address);
+            peer.key = channel.register(selector, connected ? OP_WRITE : OP_CONNECT, peer);
+        } catch (final IOException e) {
+            disconnect(peer);
+        }
+    }
+
+    private void disconnect(final Peer peer) {
+        if (peer.key != null) {
+            peer.key.cancel();
+        }
+        closeQuietly(peer.channel);
+        peer.channel = null;
+        peer.key = null;
+        peer.batch = null;
+        peer.lastSent = null;
+        peer.reconnected = true;
+        peer.unacknowledged.addAll(peer.resend);
+        peer.resend = new ArrayDeque<>(peer.unacknowledged);
+        peer.unacknowledged.clear();
+        peer.reconnectAt = System.nanoTime() + RECONNECT_NANOS;
+    }
+
+    private void handle(final SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            final SocketChannel accepted = server.accept();
+            if (accepted != null) {
+                accepted.configureBlocking(false);
+                accepted.register(selector, OP_READ, new Inbound());
+            }
+        } else if (key.attachment() instanceof Peer peer) {
+            try {
+                if (key.isConnectable()) {
+                    peer.channel.finishConnect();
+                    key.interestOps(OP_WRITE);
+                } else if (key.isWritable()) {
+                    flush(peer);
+                }
+            } catch (final IOException e) {
+                disconnect(peer);
+            }
+        } else if (key.attachment() instanceof Inbound inbound) {
+            try {
+                read((SocketChannel) key.channel(), inbound);
+            } catch (final IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                closeQuietly(key);
+            }
+        }
+    }
+
+    private void flush(final Peer peer) throws IOException {
+        while (true) {
+            if (peer.batch == null && !fillBatch(peer)) {
+                peer.key.interestOps(0);
+                return;
+            }
+            peer.channel.write(peer.batch, peer.batchOffset, peer.batch.length - peer.batchOffset);
+            writes.incrementAndGet();
+            while (peer.batchOffset < peer.batch.length && !peer.batch[peer.batchOffset].hasRemaining()) {
+                peer.batchOffset++;
+            }
+            if (peer.batchOffset < peer.batch.length) {
+                return; // the socket is full; wait until writable
+            }
+            peer.batch = null;
+        }
+    }
+
+    private boolean fillBatch(final Peer peer) {
+        final List<ByteBuffer> parts = new ArrayList<>();
+        ByteBuffer staging = peer.staging.clear();
+        if (peer.reconnected) {
+            // acknowledgements may have been lost with the previous connection
+            peer.reconnected = false;
+            if (acceptedSeq[peer.index] > 0) {
+                parts.add(stageAcknowledgement(staging, ACK, acceptedSeq[peer.index]));
+            }
+        }
+        for (int frames = 0; frames < MAX_COALESCED; frames++) {
+            final Frame frame;
+            if (!peer.acknowledgements.isEmpty()) {
+                frame = peer.acknowledgements.peek();
+            } else if (!peer.resend.isEmpty()) {
+                frame = peer.resend.peek();
+            } else if (peer.unacknowledged.size() < peer.window) {
+                // taken in one step, since senders may drop the oldest queued frame at any time,
+                // and carried until it fits
+                if (peer.carried == null) {
+                    peer.carried = peer.queued.poll();
+                }
+                frame = peer.carried;
+            } else {
+                frame = null;
+            }
+            if (frame == null) {
+                break;
+            }
+            final int clocksSize = frame.kind() == MESSAGE ? ClockCodec.encodedSize(frame.clocks(), peer.lastSent) : 0;
+            final int headerSize = frame.kind() == MESSAGE ? FRAME_HEADER + clocksSize : ACK_FRAME;
+            if (headerSize > staging.remaining()) {
+                if (!parts.isEmpty()) {
+                    break;
+                }
+                staging = peer.staging = ByteBuffer.allocateDirect(headerSize);
+            }
+            if (!peer.acknowledgements.isEmpty()) {
+                peer.acknowledgements.poll();
+            } else if (!peer.resend.isEmpty()) {
+                peer.resend.poll();
+            } else {
+                peer.carried = null;
+            }
+            if (frame.kind() != MESSAGE) {
+                parts.add(stageAcknowledgement(staging, frame.kind(), frame.sequence()));
+                continue;
+            }
+            final int start = staging.position();
+            staging.putInt(clocksSize).putInt(frame.payload().remaining());
+            ClockCodec.write(frame.clocks(), peer.lastSent, staging);
+            peer.lastSent = frame.clocks().clocks();
+            peer.unacknowledged.add(frame);
+            parts.add(staging.duplicate().limit(staging.position()).position(start));
+            parts.add(frame.payload().duplicate());
+        }
+        if (parts.isEmpty()) {
+            return false;
+        }
+        peer.batch = parts.toArray(ByteBuffer[]::new);
+        peer.batchOffset = 0;
+        return true;
+    }
+
+    private ByteBuffer stageAcknowledgement(final ByteBuffer staging, final int kind, final long sequence) {
+        final int start = staging.position();
+        staging.putInt(kind).putInt(localId).putLong(sequence);
+        return staging.duplicate().limit(staging.position()).position(start);
+    }
+
+    private void read(final SocketChannel channel, final Inbound inbound) throws IOException {
+        if (channel.read(inbound.buffer) < 0) {
+            throw new IOException("Closed by peer");
+        }
+        final ByteBuffer buffer = inbound.buffer.flip();
+        final BitSet acknowledging = new BitSet(deliveredSeq.length);
+        while (buffer.remaining() >= FRAME_HEADER) {
+            final int start = buffer.position();
+            final int clocksSize = buffer.getInt(start);
+            if (clocksSize == ACK || clocksSize == NACK) {
+                if (buffer.remaining() < ACK_FRAME) {
+                    break;
+                }
+                acknowledged(buffer.getInt(start + Integer.BYTES), clocksSize, buffer.getLong(start + FRAME_HEADER));
+                buffer.position(start + ACK_FRAME);
+                continue;
+            }
+            final int payloadSize = buffer.getInt(start + Integer.BYTES);
+            final int frameSize = FRAME_HEADER + clocksSize + payloadSize;
+            if (clocksSize < 0 || payloadSize < 0 || frameSize < 0) {
+                throw becauseIllegal("Frame sizes %s, %s are invalid", clocksSize, payloadSize);
+            }
+            if (buffer.remaining() < frameSize) {
+                if (frameSize > buffer.capacity()) {
+                    inbound.buffer = ByteBuffer.allocateDirect(Math.max(frameSize, 2 * buffer.capacity())).put(buffer);
+                    acknowledge(acknowledging);
+                    return;
+                }
+                break;
+            }
+            final EventClocks sent = ClockCodec.read(buffer.slice(start + FRAME_HEADER, clocksSize), inbound.lastReceived);
+            inbound.lastReceived = sent.clocks();
+            final int sender = sent.memberId();
+            if (sender >= deliveredSeq.length || sender == localId) {
+                throw becauseIllegal("Sender %s is not a peer", sender);
+            }
+            final long sequence = sent.localClock();
+            if (sequence > deliveredSeq[sender]) {
+                final T message = codec.decode(buffer.slice(start + FRAME_HEADER + clocksSize, payloadSize));
+                try {
+                    receiveMessage(message, sent.clocks());
+                } catch (final NopException e) {
+                    rejected.incrementAndGet();
+                    if (acknowledging.get(sender)) {
+                        peersByIndex[sender].acknowledgements.add(Frame.acknowledgement(ACK, deliveredSeq[sender]));
+                    }
+                    peersByIndex[sender].acknowledgements.add(Frame.acknowledgement(NACK, sequence));
+                    acknowledging.clear(sender);
+                    deliveredSeq[sender] = sequence;
+                    buffer.position(start + frameSize);
+                    continue;
+                }
+                deliveredSeq[sender] = sequence;
+                acceptedSeq[sender] = sequence;
+            }
+            acknowledging.set(sender);
+            buffer.position(start + frameSize);
+        }
+        acknowledge(acknowledging);
+        buffer.compact();
+    }
+
+    private void acknowledge(final BitSet senders) {
+        for (int sender = senders.nextSetBit(0); sender >= 0; sender = senders.nextSetBit(sender + 1)) {
+            peersByIndex[sender].acknowledgements.add(Frame.acknowledgement(ACK, deliveredSeq[sender]));
+        }
+    }
+
+    private void acknowledged(final int member, final int kind, final long sequence) {
+        if (member < 0 || member >= peersByIndex.length || member == localId) {
+            throw becauseIllegal("Acknowledging member %s is not a peer", member);
+        }
+        final Peer peer = peersByIndex[member];
+        // only frames written to the member are settled, never those dropped before being written
+        while (!peer.unacknowledged.isEmpty() && peer.unacknowledged.peek().sequence() <= sequence) {
+            acknowledged(peer.unacknowledged.poll(), member, kind, sequence);
+        }
+        while (!peer.resend.isEmpty() && peer.resend.peek().sequence() <= sequence) {
+            acknowledged(peer.resend.poll(), member, kind, sequence);
+        }
+    }
+
+    private void acknowledged(final Frame frame, final int member, final int kind, final long sequence) {
+        final PendingSend sent = pending.get(frame.sequence());
+        if (sent == null) {
+            return;
+        }
+        if (kind == NACK && frame.sequence() == sequence) {
+            sent.future.completeExceptionally(becausePermanentNop("Rejected by member " + member));
+        }
+        settle(frame.sequence(), sent, member);
+    }
+
+    private static void closeQuietly(final SelectionKey key) {
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (final IOException e) {
+                // already closing
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package net.zethmayr.fungu.flock.transport;
+
+import net.zethmayr.fungu.flock.RetryableNopException;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static net.zethmayr.fungu.core.ExceptionFactory.becauseIllegal;
+import static net.zethmayr.fungu.flock.RetryableNopException.becauseRetryNop;
+
+/**
+ * A bounded ring buffer of outbound elements for one peer,
+ * applying an {@link OverflowPolicy} when full.
+ *
+ * @param <E> the element type.
+ */
+public final class OutboundQueue<E> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Object[] ring;
+    private final OverflowPolicy policy;
+
+    private int head;
+    private int size;
+    private int maxDepth;
+    private long dropped;
+    private long rejected;
+    private long blocked;
+    private boolean closed;
+
+    /**
+     * Counters describing a queue.
+     *
+     * @param depth    the number of queued elements.
+     * @param capacity the most elements the queue holds.
+     * @param maxDepth the most elements queued at once.
+     * @param dropped  the number of elements discarded to make room.
+     * @param rejected the number of elements refused.
+     * @param blocked  the number of offers that waited for room.
+     */
+    public record Metrics(int depth, int capacity, int maxDepth, long dropped, long rejected, long blocked) {
+    }
+
+    /**
+     * Creates an empty queue.
+     *
+     * @param capacity the most elements the queue holds.
+     * @param policy   what to do when full.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public OutboundQueue(final int capacity, final OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw becauseIllegal("Capacity %s is not positive", capacity);
+        }
+        this.ring = new Object[capacity];
+        this.policy = policy;
+    }
+
+    /**
+     * Adds an element, applying the overflow policy if full.
+     *
+     * @param element the element.
+     * @return the element discarded to make room, or {@code null}.
+     * @throws RetryableNopException if full and the policy is {@link OverflowPolicy#FAIL},
+     *                               or closed, or interrupted while waiting for room.
+     */
+    public E offer(final E element) throws RetryableNopException {
+        lock.lock();
+        try {
+            checkOpenWithinLock();
+            E discarded = null;
+            if (size == ring.length) {
+                switch (policy) {
+                    case BLOCK -> {
+                        blocked++;
+                        awaitRoomWithinLock();
+                    }
+                    case DROP_OLDEST -> {
+                        dropped++;
+                        discarded = removeWithinLock();
+                    }
+                    case FAIL -> {
+                        rejected++;
+                        throw becauseRetryNop("Outbound queue is full");
+                    }
+                }
+            }
+            ring[(head + size++) % ring.length] = element;
+            maxDepth = Math.max(maxDepth, size);
+            return discarded;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw becauseRetryNop("Interrupted while waiting for room");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the oldest element without removing it.
+     *
+     * @return the oldest element, or {@code null} if empty.
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        lock.lock();
+        try {
+            return size == 0 ? null : (E) ring[head];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes and returns the oldest element.
+     *
+     * @return the oldest element, or {@code null} if empty.
+     */
+    public E poll() {
+        lock.lock();
+        try {
+            return size == 0 ? null : removeWithinLock();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the queue has room, without adding anything,
+     * so a caller can wait before taking locks of its own.
+     * Room can still be taken by another offer before the caller's.
+     *
+     * @throws RetryableNopException if closed, or interrupted while waiting.
+     */
+    public void awaitRoom() throws RetryableNopException {
+        lock.lock();
+        try {
+            checkOpenWithinLock();
+            if (size == ring.length) {
+                blocked++;
+                awaitRoomWithinLock();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw becauseRetryNop("Interrupted while waiting for room");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitRoomWithinLock() throws InterruptedException, RetryableNopException {
+        while (size == ring.length) {
+            notFull.await();
+            checkOpenWithinLock();
+        }
+    }
+
+    private void checkOpenWithinLock() throws RetryableNopException {
+        if (closed) {
+            throw becauseRetryNop("Outbound queue is closed");
+        }
+    }
+
+    /**
+     * Returns whether another element can be added without applying the overflow policy.
+     *
+     * @return whether there is room.
+     */
+    public boolean hasRoom() {
+        lock.lock();
+        try {
+            return size < ring.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Refuses further offers, and wakes any offers waiting for room, which then fail.
+     * Queued elements can still be polled.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private E removeWithinLock() {
+        final E removed = (E) ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        notFull.signal();
+        return removed;
+    }
+
+    /**
+     * Returns whether no elements are queued.
+     *
+     * @return whether empty.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of queued elements.
+     *
+     * @return the depth.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the counters as of the time of call.
+     *
+     * @return a metrics snapshot.
+     */
+    public Metrics metrics() {
+        lock.lock();
+        try {
+            return new Metrics(size, ring.length, maxDepth, dropped, rejected, blocked);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package net.zethmayr.fungu.flock.transport;
+
+/**
+ * What an {@link OutboundQueue} does with an element offered while it is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Waits for room.
+     */
+    BLOCK,
+    /**
+     * Discards the oldest queued element to make room.
+     */
+    DROP_OLDEST,
+    /**
+     * Refuses the offered element with a {@link net.zethmayr.fungu.flock.RetryableNopException}.
+     */
+    FAIL
+}
@@ -0,0 +1,51 @@
+package net.zethmayr.fungu.flock.transport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts messages to and from the payload bytes of a frame.
+ *
+ * @param <T> the common message type.
+ */
+public interface PayloadCodec<T> {
+
+    /**
+     * Returns the payload bytes for a message,
+     * between the buffer's position and limit.
+     * The buffer is written as-is to every peer, and must not be modified afterwards.
+     *
+     * @param message the message.
+     * @return the payload.
+     */
+    ByteBuffer encode(final T message);
+
+    /**
+     * Returns the message for the payload bytes
+     * between the buffer's position and limit.
+     * The buffer is reused once this returns, so its contents must be copied out.
+     *
+     * @param payload the payload.
+     * @return the message.
+     */
+    T decode(final ByteBuffer payload);
+
+    /**
+     * Returns a codec for strings as UTF-8.
+     *
+     * @return a string codec.
+     */
+    static PayloadCodec<String> utf8() {
+        return new PayloadCodec<>() {
+            @Override
+            public ByteBuffer encode(final String message) {
+                return ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public String decode(final ByteBuffer payload) {
+                return StandardCharsets.UTF_8.decode(payload).toString();
+            }
+        };
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * Network transports implementing the flock protocol.
+ */
+@HigherLevel
+package net.zethmayr.fungu.flock.transport;
+
+import net.zethmayr.fungu.core.declarations.HigherLevel;
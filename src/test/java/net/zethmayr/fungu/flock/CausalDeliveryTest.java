@@ -0,0 +1,148 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.flock.FlockClocks.ClockData;
+import net.zethmayr.fungu.flock.config.HasKnownMembers;
+import net.zethmayr.fungu.throwing.Result;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static net.zethmayr.fungu.test.TestConstants.TEST_RANDOM;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CausalDeliveryTest {
+
+    private final List<String> received = new ArrayList<>();
+
+    private final FlockProtocol<String> recording = new FlockProtocol<>() {
+        @Override
+        public void joinFlock(final HasKnownMembers knownMembers) {
+        }
+
+        @Override
+        public void reJoinFlock(final int memberId, final HasKnownMembers knownMembers) {
+        }
+
+        @Override
+        public void receiveMessage(final String message, final long[] sentClocks) throws NopException {
+            if (message.startsWith("reject")) {
+                throw PermanentNopException.becausePermanentNop("Rejected");
+            }
+            received.add(message);
+        }
+
+        @Override
+        public void sendMessage(final String message) {
+        }
+    };
+
+    private CausalDelivery<String> underTest = new CausalDelivery<>(recording, new long[3]);
+
+    private static EventClocks sent(final int memberId, final long... clocks) {
+        return new ClockData(memberId, clocks);
+    }
+
+    @Test
+    void offer_givenDeliverableMessage_deliversImmediately() throws NopException {
+
+        final List<Result<String, NopException>> results = underTest.offer("a", sent(0, 1, 0, 0));
+
+        assertEquals(1, results.size());
+        assertEquals("a", results.get(0).get());
+        assertEquals(List.of("a"), received);
+        assertArrayEquals(new long[]{1, 0, 0}, underTest.delivered());
+    }
+
+    @Test
+    void offer_givenDependentFirst_holdsBackUntilDependencyArrives() throws NopException {
+
+        assertTrue(underTest.offer("reply", sent(1, 1, 1, 0)).isEmpty());
+        assertTrue(underTest.offer("second", sent(0, 2, 0, 0)).isEmpty());
+        assertEquals(2, underTest.depth());
+        final List<Result<String, NopException>> results = underTest.offer("first", sent(0, 1, 0, 0));
+
+        assertEquals(3, results.size());
+        assertEquals(List.of("first", "reply", "second"), received);
+        assertEquals(0, underTest.depth());
+        final CausalDelivery.Metrics metrics = underTest.metrics();
+        assertEquals(3, metrics.delivered());
+        assertEquals(2, metrics.heldBack());
+        assertEquals(2, metrics.maxDepth());
+        assertTrue(metrics.maxWaitNanos() >= metrics.meanWaitNanos());
+    }
+
+    @Test
+    void offer_givenShuffledBroadcasts_deliversEachInCausalOrder() throws NopException {
+        final List<String> messages = new ArrayList<>();
+        final List<EventClocks> clocks = new ArrayList<>();
+        final long[] counts = new long[3];
+        for (int n = 0; n < 60; n++) {
+            final int sender = TEST_RANDOM.nextInt(3);
+            counts[sender]++;
+            messages.add(sender + ":" + counts[sender]);
+            clocks.add(sent(sender, counts.clone()));
+        }
+        final List<Integer> order = new ArrayList<>();
+        for (int n = 0; n < messages.size(); n++) {
+            order.add(n);
+        }
+        Collections.shuffle(order, TEST_RANDOM);
+
+        for (final int n : order) {
+            underTest.offer(messages.get(n), clocks.get(n));
+        }
+
+        assertEquals(messages, received);
+        assertArrayEquals(counts, underTest.delivered());
+        assertEquals(0, underTest.metrics().depth());
+    }
+
+    @Test
+    void offer_givenRejectingDownstream_holdsFollowersUntilAccepted() throws NopException {
+        underTest.offer("after", sent(0, 2, 0, 0));
+
+        final List<Result<String, NopException>> results = underTest.offer("reject", sent(0, 1, 0, 0));
+
+        assertEquals(1, results.size());
+        assertInstanceOf(PermanentNopException.class, results.get(0).getException());
+        assertArrayEquals(new long[]{0, 0, 0}, underTest.delivered());
+        assertEquals(1, underTest.depth());
+        assertEquals(0, underTest.metrics().delivered());
+
+        final List<Result<String, NopException>> retried = underTest.offer("first", sent(0, 1, 0, 0));
+
+        assertEquals(2, retried.size());
+        assertEquals(List.of("first", "after"), received);
+        assertEquals(0, underTest.depth());
+    }
+
+    @Test
+    void offer_givenDeliveredMessage_throws() throws NopException {
+        underTest.offer("a", sent(0, 1, 0, 0));
+
+        assertThrows(PermanentNopException.class, () ->
+                underTest.offer("a", sent(0, 1, 0, 0)));
+    }
+
+    @Test
+    void offer_givenHeldDuplicate_returnsFailureOnRelease() throws NopException {
+        underTest.offer("b", sent(0, 2, 0, 0));
+        underTest.offer("b", sent(0, 2, 0, 0));
+
+        final List<Result<String, NopException>> results = underTest.offer("a", sent(0, 1, 0, 0));
+
+        assertEquals(3, results.size());
+        assertEquals(List.of("a", "b"), received);
+        assertInstanceOf(PermanentNopException.class, results.get(2).getException());
+        assertEquals(0, underTest.depth());
+    }
+
+    @Test
+    void offer_givenWrongLength_throws() {
+
+        assertThrows(RetryableNopException.class, () ->
+                underTest.offer("a", sent(0, 1, 0)));
+    }
+}
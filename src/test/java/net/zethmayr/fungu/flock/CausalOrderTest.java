@@ -0,0 +1,36 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Stream;
+
+import static net.zethmayr.fungu.flock.CausalOrder.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CausalOrderTest {
+
+    @Test
+    void reversed_givenEachOrder_returnsOrderOfSecondToFirst() {
+
+        assertEquals(AFTER, BEFORE.reversed());
+        assertEquals(BEFORE, AFTER.reversed());
+        assertEquals(EQUAL, EQUAL.reversed());
+        assertEquals(CONCURRENT, CONCURRENT.reversed());
+    }
+
+    @Test
+    void comparison_givenEachOrder_returnsPartialOrderingResult() {
+
+        assertEquals(-1, BEFORE.comparison());
+        assertEquals(1, AFTER.comparison());
+        assertEquals(0, EQUAL.comparison());
+        assertEquals(0, CONCURRENT.comparison());
+    }
+
+    @Test
+    void ofFlags_givenFlagsOfEachOrder_returnsOrder() {
+
+        Stream.of(values()).forEach(o ->
+                assertEquals(o, ofFlags(o.ordinal())));
+    }
+}
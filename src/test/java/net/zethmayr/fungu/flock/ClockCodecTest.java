@@ -0,0 +1,157 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.flock.FlockClocks.ClockData;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.stream.LongStream;
+
+import static net.zethmayr.fungu.flock.ClockCodec.*;
+import static net.zethmayr.fungu.test.TestConstants.TEST_RANDOM;
+import static net.zethmayr.fungu.test.TestHelper.invokeDefaultConstructor;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClockCodecTest {
+
+    private static EventClocks example(final int memberId, final long... clocks) {
+        return new ClockData(memberId, clocks);
+    }
+
+    @Test
+    void clockCodec_whenInstantiated_throwsInstead() {
+
+        assertThrows(UnsupportedOperationException.class, () ->
+
+                invokeDefaultConstructor(ClockCodec.class));
+    }
+
+    @Test
+    void read_givenWrittenClocks_returnsSameClocks() {
+        final EventClocks written = example(2, 0, 127, 128, -1, Long.MAX_VALUE, Long.MIN_VALUE);
+        final ByteBuffer buffer = ByteBuffer.allocate(encodedSize(written, null));
+
+        write(written, buffer);
+        assertFalse(buffer.hasRemaining());
+        final EventClocks read = read(buffer.flip());
+
+        assertEquals(2, read.memberId());
+        assertArrayEquals(written.clocks(), read.clocks());
+    }
+
+    @Test
+    void read_givenDeltaFromDirectBuffer_returnsSameClocks() {
+        final long[] reference = LongStream.generate(TEST_RANDOM::nextLong).limit(100).toArray();
+        final long[] values = reference.clone();
+        values[7] += 3;
+        final EventClocks written = example(7, values);
+        final int size = encodedSize(written, reference);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+
+        write(written, reference, buffer);
+        final EventClocks read = read(buffer.flip(), reference);
+
+        assertEquals(1 + 1 + 1 + 100, size);
+        assertArrayEquals(values, read.clocks());
+    }
+
+    @Test
+    void write_givenMismatchedReference_writesAbsoluteValues() {
+        final EventClocks written = example(0, 5, 6);
+        final ByteBuffer buffer = ByteBuffer.allocate(encodedSize(written, new long[3]));
+
+        write(written, new long[3], buffer);
+
+        assertArrayEquals(written.clocks(), read(buffer.flip()).clocks());
+    }
+
+    @Test
+    void read_givenDeltaWithoutReference_throws() {
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        write(example(0, 5, 6), new long[2], buffer);
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                read(buffer.flip()));
+    }
+
+    @Test
+    void readVarLong_givenOverlongValue_throws() {
+        final ByteBuffer buffer = ByteBuffer.allocate(11);
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0x80);
+        }
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                readVarLong(buffer.flip()));
+    }
+
+    @Test
+    void varLongSize_givenBoundaries_returnsEncodedSize() {
+
+        assertEquals(1, varLongSize(0));
+        assertEquals(1, varLongSize(127));
+        assertEquals(2, varLongSize(128));
+        assertEquals(10, varLongSize(-1));
+    }
+
+    @Test
+    void unzigzag_givenZigzag_returnsOriginal() {
+
+        LongStream.of(0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE)
+                .forEach(v -> assertEquals(v, unzigzag(zigzag(v))));
+        assertEquals(1, zigzag(-1));
+        assertEquals(2, zigzag(1));
+    }
+
+    @Test
+    void readDelta_givenWrittenDelta_returnsSameDelta() {
+        final ClockDelta written = new ClockDelta(3, 300, new int[]{0, 3, 299}, new long[]{-5, 12, 1L << 40});
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+
+        writeDelta(written, buffer);
+        final ClockDelta read = readDelta(buffer.flip());
+
+        assertEquals(3, read.memberId());
+        assertEquals(300, read.length());
+        assertArrayEquals(written.indices(), read.indices());
+        assertArrayEquals(written.values(), read.values());
+    }
+
+    @Test
+    void readDelta_givenIndexPastLength_throws() {
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        // member 0 of 2, two entries: index 0, then a gap of one to index 2
+        for (final long part : new long[]{0, 2, 2, 0, 2, 1, 2}) {
+            ClockCodec.writeVarLong(part, buffer);
+        }
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                readDelta(buffer.flip()));
+    }
+
+    @Test
+    void read_givenLengthBeyondRemainingBytes_throwsWithoutAllocating() {
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.put((byte) 0);
+        ClockCodec.writeVarLong(0, buffer);
+        ClockCodec.writeVarLong(Integer.MAX_VALUE, buffer);
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                read(buffer.flip()));
+    }
+
+    @Test
+    void readDelta_givenSizeBeyondRemainingBytes_throwsWithoutAllocating() {
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        for (final long part : new long[]{0, Integer.MAX_VALUE, Integer.MAX_VALUE}) {
+            ClockCodec.writeVarLong(part, buffer);
+        }
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                readDelta(buffer.flip()));
+    }
+}
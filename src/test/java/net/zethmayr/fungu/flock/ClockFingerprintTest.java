@@ -0,0 +1,41 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClockFingerprintTest {
+
+    @Test
+    void of_givenEqualValues_returnsEqualFingerprints() {
+
+        assertEquals(ClockFingerprint.of(new long[]{1, 2, 3}), ClockFingerprint.of(new long[]{1, 2, 3}));
+    }
+
+    @Test
+    void of_givenPermutedValues_returnsDifferentHashes() {
+        final ClockFingerprint first = ClockFingerprint.of(new long[]{1, 2, 3});
+
+        final ClockFingerprint result = ClockFingerprint.of(new long[]{3, 2, 1});
+
+        assertEquals(first.sum(), result.sum());
+        assertNotEquals(first.hash(), result.hash());
+    }
+
+    @Test
+    void of_givenDifferentLengths_returnsDifferentFingerprints() {
+
+        assertNotEquals(ClockFingerprint.of(new long[]{1, 2}), ClockFingerprint.of(new long[]{1, 2, 0}));
+    }
+
+    @Test
+    void change_givenOneValueChanged_updatesHashInPlace() {
+        final long[] values = {4, 5, 6};
+        final ClockFingerprint before = ClockFingerprint.of(values);
+        values[1] = 9;
+
+        final long result = before.hash() + ClockFingerprint.change(1, 5, 9);
+
+        assertEquals(ClockFingerprint.of(values).hash(), result);
+    }
+}
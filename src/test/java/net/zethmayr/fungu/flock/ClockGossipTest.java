@@ -0,0 +1,212 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClockGossipTest {
+
+    private static final GossipSettings FAST = new GossipSettings(Duration.ofMillis(5), 0.5, 1, Integer.MAX_VALUE);
+
+    private final Map<URI, ClockGossip> byLocation = new HashMap<>();
+    private final List<FlockClocks> clocks = new ArrayList<>();
+    private final List<ClockGossip> gossips = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() {
+        gossips.forEach(ClockGossip::close);
+    }
+
+    private void flock(final int size, final GossipSettings settings) {
+        flock(size, settings, false);
+    }
+
+    private void flock(final int size, final GossipSettings settings, final boolean fingerprints) {
+        final URI[] locations = new URI[size];
+        for (int n = 0; n < size; n++) {
+            locations[n] = URI.create("local:" + n);
+        }
+        for (int n = 0; n < size; n++) {
+            final FlockClocks member = new FlockClocks(n, new long[size], locations);
+            final URI self = locations[n];
+            final ClockGossip.Exchange exchange = new ClockGossip.Exchange() {
+                @Override
+                public ClockDelta exchange(final URI peer, final ClockDelta digest) throws IOException, NopException {
+                    final ClockGossip remote = reach(peer);
+                    synchronized (remote) {
+                        return remote.exchanged(self, digest);
+                    }
+                }
+
+                @Override
+                public boolean agrees(final URI peer, final ClockFingerprint fingerprint) throws IOException {
+                    return fingerprints && reach(peer).agrees(fingerprint);
+                }
+            };
+            final ClockGossip gossip = new ClockGossip(member, exchange, settings, new Random(n));
+            clocks.add(member);
+            gossips.add(gossip);
+            byLocation.put(self, gossip);
+        }
+    }
+
+    private ClockGossip reach(final URI peer) throws IOException {
+        final ClockGossip remote = byLocation.get(peer);
+        if (remote == null) {
+            throw new IOException("Unreachable " + peer);
+        }
+        return remote;
+    }
+
+    private boolean converged() {
+        final long[] first = clocks.get(0).clocks();
+        return clocks.stream().allMatch(c -> Arrays.equals(first, c.clocks()));
+    }
+
+    @Test
+    void round_givenIdleMembers_convergesWithoutLocalEvents() {
+        flock(8, FAST);
+        for (int n = 0; n < 8; n++) {
+            for (int k = 0; k <= n; k++) {
+                clocks.get(n).localEvent();
+            }
+        }
+
+        for (int r = 0; r < 100 && !converged(); r++) {
+            gossips.forEach(ClockGossip::round);
+        }
+
+        assertTrue(converged());
+        for (int n = 0; n < 8; n++) {
+            assertEquals(n + 1, clocks.get(0).clocks()[n]);
+        }
+    }
+
+    @Test
+    void round_givenFanout_contactsThatManyPeers() {
+        flock(5, new GossipSettings(Duration.ofSeconds(1), 0.0, 3, Integer.MAX_VALUE));
+
+        final ClockGossip.Round result = gossips.get(0).round();
+
+        assertEquals(3, result.contacted());
+        assertEquals(15, result.entries());
+        assertEquals(0, result.failed());
+    }
+
+    @Test
+    void round_givenEntryBudget_stopsOnceSpent() {
+        flock(5, new GossipSettings(Duration.ofSeconds(1), 0.0, 4, 6));
+
+        final ClockGossip.Round result = gossips.get(0).round();
+
+        assertEquals(2, result.contacted());
+        assertEquals(10, result.entries());
+    }
+
+    @Test
+    void round_whenAcknowledged_sendsOnlyChanges() {
+        flock(2, FAST);
+        gossips.get(0).round();
+        clocks.get(0).localEvent();
+
+        final ClockGossip.Round result = gossips.get(0).round();
+
+        assertEquals(1, result.entries());
+    }
+
+    @Test
+    void round_givenAgreeingFingerprints_sendsNoEntries() {
+        flock(3, new GossipSettings(Duration.ofSeconds(1), 0.0, 2, Integer.MAX_VALUE), true);
+
+        final ClockGossip.Round result = gossips.get(0).round();
+
+        assertEquals(new ClockGossip.Round(2, 2, 0, 0), result);
+    }
+
+    @Test
+    void round_givenDisagreeingFingerprints_sendsDigest() {
+        flock(2, FAST, true);
+        clocks.get(1).localEvent();
+
+        final ClockGossip.Round result = gossips.get(0).round();
+
+        assertEquals(new ClockGossip.Round(1, 0, 2, 0), result);
+        assertTrue(converged());
+    }
+
+    @Test
+    void round_givenUnreachablePeer_countsFailure() {
+        flock(2, FAST);
+        byLocation.remove(URI.create("local:1"));
+
+        final ClockGossip.Round result = gossips.get(0).round();
+
+        assertEquals(1, result.failed());
+        assertEquals(new ClockGossip.Metrics(1, 1, 0, 1, 2), gossips.get(0).metrics());
+    }
+
+    @Test
+    void start_whenRunning_convergesInBackground() throws InterruptedException {
+        flock(4, FAST);
+        clocks.get(3).localEvent();
+        gossips.forEach(ClockGossip::start);
+
+        final long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!converged()) {
+            assertThat("timed out", System.nanoTime(), lessThan(deadline));
+            Thread.sleep(5);
+        }
+        assertThat(gossips.get(0).metrics().rounds(), greaterThan(0L));
+    }
+
+    @Test
+    void start_whenStarted_throws() {
+        flock(2, FAST);
+        gossips.get(0).start();
+
+        assertThrows(IllegalStateException.class, () ->
+
+                gossips.get(0).start());
+    }
+
+    @Test
+    void start_whenClosed_throws() {
+        flock(2, FAST);
+        gossips.get(0).close();
+
+        assertThrows(IllegalStateException.class, () ->
+
+                gossips.get(0).start());
+    }
+
+    @Test
+    void gossipSettings_givenInvalidValues_throws() {
+        assertThrows(IllegalArgumentException.class, () -> new GossipSettings(Duration.ZERO, 0.0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new GossipSettings(Duration.ofSeconds(1), 1.0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new GossipSettings(Duration.ofSeconds(1), 0.0, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new GossipSettings(Duration.ofSeconds(1), 0.0, 1, 0));
+    }
+
+    @Test
+    void nextDelayNanos_givenJitter_staysWithinBounds() {
+        final GossipSettings underTest = new GossipSettings(Duration.ofMillis(100), 0.25, 1, 1);
+
+        assertEquals(75_000_000L, underTest.nextDelayNanos(0.0));
+        assertEquals(100_000_000L, underTest.nextDelayNanos(0.5));
+        assertThat(underTest.nextDelayNanos(0.999), lessThan(125_000_000L));
+    }
+}
@@ -0,0 +1,180 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.flock.config.KnownMember;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClockJournalTest {
+
+    private static final URI[] LOCATIONS = {
+            URI.create("local:first"), URI.create("local:second"), URI.create("local:third")
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recover_afterLocalEvents_returnsAdvancedLocalClock() throws Exception {
+        final Path path = directory.resolve("clocks");
+        final FlockClocks clocks = new FlockClocks(1, new long[]{4, 5, 6}, LOCATIONS);
+        try (final ClockJournal journal = ClockJournal.open(path, 8)) {
+            clocks.journalTo(journal);
+            for (int n = 0; n < 10; n++) {
+                clocks.localEvent();
+            }
+        }
+
+        final ClockJournal.Recovery recovered = ClockJournal.recover(path);
+
+        assertEquals(1, recovered.memberId());
+        final KnownMember[] members = recovered.knownMemberArray();
+        assertEquals(3, members.length);
+        assertEquals(4L, members[0].getInitialValue());
+        assertEquals(15L + 8, members[1].getInitialValue());
+        assertEquals("local:third", members[2].getLocation());
+        assertEquals(2, members[2].getIndex());
+        final FlockClocks restarted = new FlockClocks(recovered.memberId(), members);
+        assertArrayEquals(LOCATIONS, restarted.locations());
+    }
+
+    @Test
+    void recover_afterStripedFoldBeyondInterval_coversLastValueHandedOut() throws Exception {
+        final Path path = directory.resolve("clocks");
+        final FlockClocks clocks = new FlockClocks(1, new long[]{4, 5, 6}, LOCATIONS);
+        clocks.stripeLocalEvents();
+        final long handedOut;
+        try (final ClockJournal journal = ClockJournal.open(path, 8)) {
+            clocks.journalTo(journal);
+            for (int n = 0; n < 5; n++) {
+                clocks.locally(() -> {
+                });
+            }
+            clocks.localEvent();
+            assertEquals(6L, journal.unflushed());
+            for (int n = 0; n < 100; n++) {
+                clocks.locally(() -> {
+                });
+            }
+
+            handedOut = clocks.localEvent();
+
+            assertEquals(1L, journal.unflushed());
+        }
+
+        assertEquals(5L + 6 + 101, handedOut);
+        assertThat(ClockJournal.recover(path).knownMemberArray()[1].getInitialValue(),
+                greaterThanOrEqualTo(handedOut));
+    }
+
+    @Test
+    void recover_afterMembershipChange_returnsNewMembers() throws Exception {
+        final Path path = directory.resolve("clocks");
+        final FlockClocks clocks = new FlockClocks(1, new long[]{4, 5, 6}, LOCATIONS);
+        try (final ClockJournal journal = ClockJournal.open(path, 1)) {
+            clocks.journalTo(journal);
+            clocks.retireMember(0, clocks.proposeDeleteValues(0));
+            clocks.addMember(2, URI.create("local:fourth"), clocks.proposeInsertValues(2));
+        }
+
+        final ClockJournal.Recovery recovered = ClockJournal.recover(path);
+
+        assertEquals(0, recovered.memberId());
+        assertEquals(3, recovered.getKnownMembers().size());
+        assertEquals("local:fourth", recovered.getKnownMembers().get(2).getLocation());
+        assertEquals(6L, recovered.getKnownMembers().get(1).getInitialValue());
+    }
+
+    @Test
+    void addMember_whenRewriteFails_leavesMembershipAndJournalUnchanged() throws Exception {
+        final Path path = directory.resolve("clocks");
+        final FlockClocks clocks = new FlockClocks(1, new long[]{4, 5, 6}, LOCATIONS);
+        try (final ClockJournal journal = ClockJournal.open(path, 1)) {
+            clocks.journalTo(journal);
+            // a directory in the way of the temporary file fails the rewrite
+            Files.createFile(Files.createDirectory(directory.resolve("clocks.tmp")).resolve("blocking"));
+
+            assertThrows(UncheckedIOException.class, () ->
+
+                    clocks.addMember(0, URI.create("local:fourth"), clocks.proposeInsertValues(0)));
+
+            assertArrayEquals(LOCATIONS, clocks.locations());
+            assertEquals(1, clocks.clockData().memberId());
+        }
+
+        final ClockJournal.Recovery recovered = ClockJournal.recover(path);
+        assertEquals(1, recovered.memberId());
+        assertEquals(3, recovered.getKnownMembers().size());
+    }
+
+    @Test
+    void rewrite_afterMembershipChange_leavesNoTemporaryFile() throws Exception {
+        final Path path = directory.resolve("clocks");
+        final FlockClocks clocks = new FlockClocks(1, new long[]{4, 5, 6}, LOCATIONS);
+        try (final ClockJournal journal = ClockJournal.open(path, 1)) {
+            clocks.journalTo(journal);
+            clocks.retireMember(2, clocks.proposeDeleteValues(2));
+            clocks.localEvent();
+        }
+
+        assertFalse(Files.exists(directory.resolve("clocks.tmp")));
+        assertEquals(2, ClockJournal.recover(path).getKnownMembers().size());
+    }
+
+    @Test
+    void recover_givenTruncatedJournal_throws() throws Exception {
+        final Path path = directory.resolve("clocks");
+        final FlockClocks clocks = new FlockClocks(1, new long[]{4, 5, 6}, LOCATIONS);
+        try (final ClockJournal journal = ClockJournal.open(path, 1)) {
+            clocks.journalTo(journal);
+        }
+        try (final FileChannel channel = FileChannel.open(path, WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                ClockJournal.recover(path));
+    }
+
+    @Test
+    void flushJournal_afterMerge_recoversMergedValues() throws Exception {
+        final Path path = directory.resolve("clocks");
+        final FlockClocks clocks = new FlockClocks(1, new long[]{4, 5, 6}, LOCATIONS);
+        try (final ClockJournal journal = ClockJournal.open(path, 1000)) {
+            clocks.journalTo(journal);
+            clocks.messageReceived(new long[]{9, 5, 6});
+            clocks.flushJournal();
+        }
+
+        assertEquals(9L, ClockJournal.recover(path).getKnownMembers().get(0).getInitialValue());
+    }
+
+    @Test
+    void recover_givenOtherFile_throws() throws IOException {
+        final Path path = Files.write(directory.resolve("other"), new byte[64]);
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                ClockJournal.recover(path));
+    }
+
+    @Test
+    void open_givenNonPositiveInterval_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                ClockJournal.open(directory.resolve("clocks"), 0));
+    }
+}
@@ -0,0 +1,36 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClockSnapshotTest {
+
+    private final ClockSnapshot underTest = new ClockSnapshot(5L, 1, new long[]{3, 4, 5});
+
+    @Test
+    void clocks_whenModified_doesNotChangeSnapshot() {
+        final long[] clocks = underTest.clocks();
+
+        clocks[1] = 100;
+
+        assertEquals(4, underTest.clock(1));
+        assertEquals(4, underTest.localClock());
+    }
+
+    @Test
+    void clock_givenIndexOutOfRange_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                underTest.clock(3));
+    }
+
+    @Test
+    void causalOrder_givenCopy_isEqual() {
+
+        assertEquals(CausalOrder.EQUAL, underTest.causalOrder(new ClockSnapshot(6L, 0, underTest.clocks())));
+        assertEquals(3, underTest.size());
+        assertEquals(5L, underTest.version());
+    }
+}
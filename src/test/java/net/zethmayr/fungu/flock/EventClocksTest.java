@@ -2,8 +2,10 @@ package net.zethmayr.fungu.flock;
 
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import static net.zethmayr.fungu.flock.EventClocks.causalOrder;
+import static net.zethmayr.fungu.flock.EventClocks.compareSimilarVectors;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.PARALLEL_THRESHOLD;
+import static org.junit.jupiter.api.Assertions.*;
 
 class EventClocksTest {
 
@@ -60,4 +62,67 @@ class EventClocksTest {
 
         assertEquals(-1, underTest.compareTo(comparison));
     }
-}
\ No newline at end of file
+
+    @Test
+    void compareTo_givenConcurrentClocks_returnsZero() {
+        underTest = example(0, new long[]{2, 3, 5});
+        final EventClocks comparison = example(1, new long[]{3, 2, 5});
+
+        assertEquals(0, underTest.compareTo(comparison));
+    }
+
+    @Test
+    void compareSimilarVectors_givenDifferentLengths_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                compareSimilarVectors(new long[2], new long[3]));
+    }
+
+    @Test
+    void compareSimilarVectors_givenVectorsPastParallelThreshold_comparesAll() {
+        final long[] ours = new long[PARALLEL_THRESHOLD + 1];
+        final long[] theirs = new long[PARALLEL_THRESHOLD + 1];
+        theirs[PARALLEL_THRESHOLD] = 1;
+
+        assertEquals(-1, compareSimilarVectors(ours, theirs));
+        assertEquals(1, compareSimilarVectors(theirs, ours));
+        ours[0] = 1;
+        assertEquals(0, compareSimilarVectors(ours, theirs));
+    }
+
+    @Test
+    void compareSimilarVectors_givenBoxedAndPrimitive_comparesInOrder() {
+        final Long[] boxed = {1L, 2L, 3L};
+        final long[] primitive = {1, 2, 4};
+
+        assertEquals(-1, compareSimilarVectors(boxed, Long::longValue, primitive));
+        assertEquals(1, compareSimilarVectors(primitive, boxed, Long::longValue));
+        assertEquals(0, compareSimilarVectors(boxed, Long::longValue, boxed, Long::longValue));
+    }
+
+    @Test
+    void causalOrder_givenEqualAndConcurrentClocks_distinguishesThem() {
+        underTest = example(0, new long[]{2, 3, 5});
+
+        assertEquals(CausalOrder.EQUAL, underTest.causalOrder(example(1, new long[]{2, 3, 5})));
+        assertEquals(CausalOrder.CONCURRENT, underTest.causalOrder(example(1, new long[]{3, 2, 5})));
+    }
+
+    @Test
+    void causalOrder_givenOrderedClocks_returnsBeforeOrAfter() {
+        underTest = example(0, new long[]{2, 3, 5});
+
+        assertEquals(CausalOrder.BEFORE, underTest.causalOrder(example(1, new long[]{2, 4, 5})));
+        assertEquals(CausalOrder.AFTER, underTest.causalOrder(example(1, new long[]{2, 3, 4})));
+    }
+
+    @Test
+    void causalOrder_givenMembers_comparesCounters() {
+        final FlockMember[] members = {new FlockMember(1, null), new FlockMember(2, null)};
+
+        assertEquals(CausalOrder.BEFORE, causalOrder(new long[]{1, 1}, members, FlockMember::get));
+        assertEquals(CausalOrder.AFTER, causalOrder(members, FlockMember::get, new long[]{1, 1}));
+        assertEquals(CausalOrder.EQUAL, causalOrder(members, FlockMember::get, members, FlockMember::get));
+    }
+}
@@ -2,10 +2,11 @@ package net.zethmayr.fungu.flock;
 
 import org.junit.jupiter.api.Test;
 
-import static net.zethmayr.fungu.flock.FlockArrayUtilities.rangeCheck;
+import static net.zethmayr.fungu.flock.FlockArrayUtilities.*;
 import static net.zethmayr.fungu.test.TestHelper.invokeDefaultConstructor;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class FlockArrayUtilitiesTest {
@@ -63,4 +64,25 @@ class FlockArrayUtilitiesTest {
 
         assertThat(thrown.getMessage(), stringContainsInOrder("0", "range"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void orderFlags_givenEqualVectors_returnsNoFlags() {
+
+        assertEquals(0, orderFlags(new long[]{1, 2}, new long[]{1, 2}));
+    }
+
+    @Test
+    void orderFlags_givenConcurrentVectors_returnsBothFlags() {
+
+        assertEquals(BOTH, orderFlags(new long[]{1, 2, 0}, new long[]{2, 1, 0}));
+    }
+
+    @Test
+    void reversed_givenOneFlag_returnsTheOther() {
+
+        assertEquals(SOME_GREATER, reversed(SOME_LESSER));
+        assertEquals(SOME_LESSER, reversed(SOME_GREATER));
+        assertEquals(BOTH, reversed(BOTH));
+        assertEquals(0, reversed(0));
+    }
+}
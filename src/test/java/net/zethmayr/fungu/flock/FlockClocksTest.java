@@ -2,9 +2,11 @@ package net.zethmayr.fungu.flock;
 
 import net.zethmayr.fungu.flock.config.KnownMember;
 import net.zethmayr.fungu.flock.config.KnownMemberConfigProps;
+import net.zethmayr.fungu.throwing.Result;
 import org.junit.jupiter.api.Test;
 
 import java.net.URI;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.IntStream;
@@ -28,6 +30,8 @@ class FlockClocksTest {
 
     private static final URI UNUSABLE_TEST_URI = null;
 
+    private static final URI PEER = URI.create("local:peer");
+
     private static FlockClocks secondOfThree() {
         return evaluateThrowing(() -> new FlockClocks(
                 1,
@@ -222,4 +226,337 @@ class FlockClocksTest {
         assertThrows(PermanentNopException.class, () ->
                 underTest.messageReceived(remoteClocks));
     }
+
+    @Test
+    void messagesReceived_givenMixedMessages_returnsEachResult() {
+        underTest = secondOfThree();
+        final long[] advanced = underTest.clocks();
+        advanced[0] += 5;
+        final long[] impersonating = underTest.clocks();
+        impersonating[1] += 100;
+
+        final List<Result<EventClocks, NopException>> results = underTest.messagesReceived(
+                new long[][]{advanced, new long[2], impersonating});
+
+        assertEquals(3, results.size());
+        assertNull(results.get(0).getException());
+        assertEquals(advanced[0], results.get(0).get().clocks()[0]);
+        assertInstanceOf(RetryableNopException.class, results.get(1).getException());
+        assertInstanceOf(PermanentNopException.class, results.get(2).getException());
+        assertEquals(advanced[1] + 1, underTest.localClock());
+    }
+
+    @Test
+    void messagesReceived_givenStridedMessages_mergesEach() {
+        underTest = secondOfThree();
+        final long[] initial = underTest.clocks();
+        final long[] flat = new long[6];
+        System.arraycopy(initial, 0, flat, 0, 3);
+        System.arraycopy(initial, 0, flat, 3, 3);
+        flat[0] += 1;
+        flat[5] += 2;
+
+        final List<Result<EventClocks, NopException>> results = underTest.messagesReceived(flat, 3);
+
+        assertEquals(2, results.size());
+        assertArrayEquals(new long[]{initial[0] + 1, initial[1] + 2, initial[2] + 2},
+                results.get(1).get().clocks());
+    }
+
+    @Test
+    void messagesReceived_givenNullMessage_throwsRatherThanCollecting() {
+        underTest = secondOfThree();
+
+        assertThrows(NullPointerException.class, () ->
+                underTest.messagesReceived(new long[][]{underTest.clocks(), null}));
+    }
+
+    @Test
+    void messagesReceived_givenUnevenStride_throws() {
+        underTest = secondOfThree();
+
+        assertThrows(IllegalArgumentException.class, () ->
+                underTest.messagesReceived(new long[5], 3));
+    }
+
+    @Test
+    void snapshot_whenUnchanged_returnsSameSnapshot() {
+        underTest = secondOfThree();
+
+        final ClockSnapshot first = underTest.snapshot();
+
+        assertSame(first, underTest.snapshot());
+        assertArrayEquals(underTest.clocks(), first.clocks());
+        assertEquals(underTest.version(), first.version());
+    }
+
+    @Test
+    void snapshot_afterChanges_returnsNewSnapshot() {
+        underTest = secondOfThree();
+        final ClockSnapshot first = underTest.snapshot();
+        final long[] advanced = underTest.clocks();
+        advanced[0] += 3;
+
+        underTest.localEvent();
+        final ClockSnapshot afterEvent = underTest.snapshot();
+        assertDoesNotThrow(() -> underTest.messageReceived(advanced));
+        final ClockSnapshot afterMessage = underTest.snapshot();
+        assertDoesNotThrow(() -> underTest.addMember(3, UNUSABLE_TEST_URI, underTest.proposeInsertValues(3)));
+        final ClockSnapshot afterAddition = underTest.snapshot();
+
+        assertNotSame(first, afterEvent);
+        assertEquals(first.localClock() + 1, afterEvent.localClock());
+        assertEquals(advanced[0], afterMessage.clock(0));
+        assertEquals(4, afterAddition.size());
+        assertThat(afterAddition.version(), greaterThan(afterMessage.version()));
+    }
+
+    @Test
+    void messageDelta_whenNotAcknowledged_returnsAllValues() {
+        underTest = secondOfThree();
+
+        final ClockDelta result = underTest.messageDelta(PEER);
+
+        assertEquals(3, result.size());
+        assertArrayEquals(underTest.clocks(), result.values());
+    }
+
+    @Test
+    void messageDelta_whenAcknowledged_returnsChangedValues() {
+        underTest = secondOfThree();
+        underTest.acknowledge(PEER, underTest.clocks());
+
+        final ClockDelta result = underTest.messageDelta(PEER);
+
+        assertArrayEquals(new int[]{1}, result.indices());
+        assertArrayEquals(new long[]{underTest.localClock()}, result.values());
+    }
+
+    @Test
+    void messageDelta_whenForgotten_returnsAllValues() {
+        underTest = secondOfThree();
+        underTest.acknowledge(PEER, underTest.clocks());
+        underTest.forget(PEER);
+
+        assertEquals(3, underTest.messageDelta(PEER).size());
+    }
+
+    @Test
+    void acknowledge_givenEarlierLayoutLength_isIgnored() {
+        underTest = secondOfThree();
+        underTest.acknowledge(PEER, new long[4]);
+
+        assertEquals(3, underTest.messageDelta(PEER).size());
+
+        underTest.acknowledge(PEER, underTest.clocks());
+        underTest.acknowledge(PEER, new long[2]);
+
+        assertEquals(1, underTest.messageDelta(PEER).size());
+    }
+
+    @Test
+    void messageDelta_afterRetirementAndAddition_usesRemappedAcknowledgement() {
+        final URI[] locations = {URI.create("local:0"), URI.create("local:1"), URI.create("local:2"), URI.create("local:3")};
+        underTest = new FlockClocks(0, new long[]{1, 6, 4, 7}, locations);
+        underTest.acknowledge(PEER, underTest.clocks());
+        assertDoesNotThrow(() -> underTest.messageReceived(new long[]{0, 6, 6, 7}));
+        assertDoesNotThrow(() -> underTest.retireMember(1, underTest.proposeDeleteValues(1)));
+        assertDoesNotThrow(() -> underTest.addMember(3, URI.create("local:4"), underTest.proposeInsertValues(3)));
+
+        final ClockDelta result = underTest.messageDelta(PEER);
+
+        assertArrayEquals(new int[]{0, 1, 3}, result.indices());
+        assertArrayEquals(new long[]{3, 6, 0}, result.values());
+    }
+
+    @Test
+    void clockDelta_givenUnorderedIndices_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new ClockDelta(0, 3, new int[]{2, 1}, new long[2]));
+    }
+
+    @Test
+    void clockDelta_givenIndexOutOfRange_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new ClockDelta(0, 3, new int[]{0, 3}, new long[2]));
+    }
+
+    @Test
+    void clockDelta_givenUnparallelValues_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new ClockDelta(0, 3, new int[]{0, 1}, new long[1]));
+    }
+
+    @Test
+    void deltaReceived_givenAdvancedClock_mergesChangedValues() {
+        underTest = secondOfThree();
+        final long[] initial = underTest.clocks();
+        final FlockClocks remote = new FlockClocks(0, initial, underTest.locations());
+        remote.acknowledge(PEER, initial);
+
+        final EventClocks result = assertDoesNotThrow(() -> underTest.deltaReceived(remote.messageDelta(PEER)));
+
+        assertThat(result.clocks()[0], greaterThan(initial[0]));
+        assertThat(result.clocks()[1], greaterThan(initial[1]));
+        assertThat(result.clocks()[2], equalTo(initial[2]));
+    }
+
+    @Test
+    void deltaReceived_givenRemotelyAdvancedOwnClock_throws() {
+        underTest = secondOfThree();
+        final ClockDelta sent = new ClockDelta(0, 3, new int[]{1}, new long[]{underTest.localClock() + 1});
+
+        assertThrows(PermanentNopException.class, () ->
+                underTest.deltaReceived(sent));
+    }
+
+    @Test
+    void deltaReceived_givenTooManyClocks_throws() {
+        underTest = secondOfThree();
+        final ClockDelta sent = new ClockDelta(0, 4, new int[]{0}, new long[]{0});
+
+        assertThrows(RetryableNopException.class, () ->
+                underTest.deltaReceived(sent));
+    }
+
+    @Test
+    void digest_whenCalled_doesNotAdvanceLocalClock() {
+        underTest = secondOfThree();
+        final long before = underTest.localClock();
+
+        final ClockDelta result = underTest.digest(PEER);
+
+        assertEquals(3, result.size());
+        assertEquals(before, underTest.localClock());
+    }
+
+    @Test
+    void digestReceived_givenAdvancedClock_mergesWithoutLocalEvent() {
+        underTest = secondOfThree();
+        final long[] initial = underTest.clocks();
+        final FlockClocks remote = new FlockClocks(0, initial, underTest.locations());
+        remote.localEvent();
+        remote.acknowledge(PEER, initial);
+        final long version = underTest.version();
+
+        final EventClocks result = assertDoesNotThrow(() -> underTest.digestReceived(remote.digest(PEER)));
+
+        assertEquals(initial[0] + 1, result.clocks()[0]);
+        assertEquals(initial[1], result.clocks()[1]);
+        assertThat(underTest.version(), greaterThan(version));
+    }
+
+    @Test
+    void digestReceived_givenRemotelyAdvancedOwnClock_throws() {
+        underTest = secondOfThree();
+        final ClockDelta sent = new ClockDelta(0, 3, new int[]{1}, new long[]{underTest.localClock() + 1});
+
+        assertThrows(PermanentNopException.class, () ->
+                underTest.digestReceived(sent));
+    }
+
+    @Test
+    void fingerprint_givenEventsAndMerges_matchesValues() {
+        underTest = secondOfThree();
+        final long[] advanced = underTest.clocks();
+        advanced[0] += 5;
+        underTest.localEvent();
+        assertDoesNotThrow(() -> underTest.messageReceived(advanced));
+        assertDoesNotThrow(() -> underTest.digestReceived(new ClockDelta(0, 3, new int[]{2}, new long[]{advanced[2] + 3})));
+
+        final ClockFingerprint result = underTest.fingerprint();
+
+        assertEquals(ClockFingerprint.of(underTest.clocks()), result);
+    }
+
+    @Test
+    void fingerprint_givenMembershipChanges_matchesValues() {
+        underTest = secondOfThree();
+        final long[] inserted = underTest.proposeInsertValues(3);
+        assertDoesNotThrow(() -> underTest.addMember(3, URI.create("local:3"), inserted));
+        assertEquals(ClockFingerprint.of(underTest.clocks()), underTest.fingerprint());
+        final long[] deleted = underTest.proposeDeleteValues(0);
+
+        assertDoesNotThrow(() -> underTest.retireMember(0, deleted));
+
+        assertEquals(ClockFingerprint.of(underTest.clocks()), underTest.fingerprint());
+        assertEquals(3, underTest.fingerprint().length());
+    }
+
+    @Test
+    void agrees_givenPeerWithSameValues_returnsTrueUntilChanged() {
+        underTest = secondOfThree();
+        final FlockClocks peer = new FlockClocks(0, underTest.clocks(), underTest.locations());
+
+        assertTrue(underTest.agrees(peer.fingerprint()));
+        peer.localEvent();
+        assertFalse(underTest.agrees(peer.fingerprint()));
+    }
+
+    @Test
+    void locally_givenStripedThreads_foldsEveryEventOnSend() throws InterruptedException {
+        underTest = secondOfThree();
+        underTest.stripeLocalEvents();
+        final long priorLocalValue = underTest.localClock();
+        final Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int n = 0; n < 5_000; n++) {
+                    underTest.locally(() -> {
+                    });
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(underTest.stripesLocalEvents());
+        assertEquals(priorLocalValue, underTest.clocks()[1]);
+        final EventClocks sent = underTest.messageClocks();
+        assertEquals(priorLocalValue + 40_000 + 1, sent.localClock());
+        assertEquals(sent.localClock(), underTest.clocks()[1]);
+    }
+
+    @Test
+    void locally_givenStriped_foldsOnSnapshot() {
+        underTest = secondOfThree();
+        underTest.stripeLocalEvents();
+        final ClockSnapshot first = underTest.snapshot();
+
+        underTest.locally(() -> {
+        });
+        underTest.locally(() -> {
+        });
+        final ClockSnapshot second = underTest.snapshot();
+
+        assertNotSame(first, second);
+        assertEquals(first.localClock() + 2, second.localClock());
+        assertSame(second, underTest.snapshot());
+        assertEquals(ClockFingerprint.of(underTest.clocks()), underTest.fingerprint());
+    }
+
+    @Test
+    void messageReceived_givenStripedUnfoldedEvents_stillRejectsImpersonation() {
+        underTest = secondOfThree();
+        underTest.stripeLocalEvents();
+        final long priorLocalValue = underTest.localClock();
+        underTest.locally(() -> {
+        });
+        final long[] folded = underTest.clocks();
+        folded[1] = priorLocalValue + 1;
+        final long[] impersonating = underTest.clocks();
+        impersonating[1] = priorLocalValue + 2;
+
+        assertThrows(PermanentNopException.class, () -> underTest.messageReceived(impersonating));
+        assertDoesNotThrow(() -> underTest.messageReceived(folded));
+        assertEquals(priorLocalValue + 2, underTest.localClock());
+    }
 }
@@ -0,0 +1,153 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GCounterTest {
+
+    private static final URI[] LOCATIONS = {
+            URI.create("test:a"), URI.create("test:b"), URI.create("test:c")
+    };
+
+    private static GCounter counter(final int memberId) {
+        return new GCounter(memberId, new long[LOCATIONS.length], LOCATIONS);
+    }
+
+    @Test
+    void construct_givenMemberClocks_usesMembership() {
+        final FlockClocks clocks = new FlockClocks(1, new long[]{4, 5, 6}, LOCATIONS);
+
+        final GCounter underTest = new GCounter(clocks);
+
+        assertEquals(3, underTest.size());
+        assertEquals(0, underTest.value());
+    }
+
+    @Test
+    void construct_givenMismatchedArrays_throws() {
+        assertThrows(IllegalArgumentException.class, () -> new GCounter(0, new long[2], LOCATIONS));
+    }
+
+    @Test
+    void add_givenNegative_throws() {
+        assertThrows(IllegalArgumentException.class, () -> counter(0).add(-1));
+    }
+
+    @Test
+    void increment_givenManyThreads_countsEvery() throws InterruptedException {
+        final GCounter underTest = counter(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int n = 0; n < 10_000; n++) {
+                    underTest.increment();
+                    if (n % 1_000 == 0) {
+                        underTest.snapshot();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80_000, underTest.value());
+        assertArrayEquals(new long[]{0, 80_000, 0}, underTest.snapshot());
+    }
+
+    @Test
+    void merge_givenReplicas_converges() {
+        final GCounter a = counter(0);
+        final GCounter b = counter(1);
+        final GCounter c = counter(2);
+        a.add(3);
+        b.add(5);
+        c.increment();
+
+        assertDoesNotThrow(() -> {
+            a.merge(b.snapshot());
+            c.merge(a.snapshot());
+            b.merge(c.snapshot());
+            a.merge(b.snapshot());
+        });
+
+        assertEquals(9, a.value());
+        assertEquals(9, b.value());
+        assertEquals(9, c.value());
+    }
+
+    @Test
+    void merge_givenStaleSnapshot_keepsLocalIncrements() {
+        final GCounter a = counter(0);
+        final GCounter b = counter(1);
+        a.increment();
+        final long[] stale = a.snapshot();
+        assertDoesNotThrow(() -> b.merge(stale));
+        a.add(10);
+
+        assertDoesNotThrow(() -> a.merge(b.snapshot()));
+
+        assertEquals(11, a.value());
+    }
+
+    @Test
+    void merge_givenRemoteAdvanceOverLocal_throwsPermanentNop() {
+        final GCounter underTest = counter(0);
+
+        assertThrows(PermanentNopException.class, () -> underTest.merge(new long[]{1, 0, 0}));
+    }
+
+    @Test
+    void merge_givenOtherSize_throwsRetryableNop() {
+        final GCounter underTest = counter(0);
+
+        assertThrows(RetryableNopException.class, () -> underTest.merge(new long[]{0, 0}));
+    }
+
+    @Test
+    void write_givenValues_roundTrips() {
+        final GCounter underTest = counter(2);
+        underTest.add(300);
+        assertDoesNotThrow(() -> underTest.merge(new long[]{1L << 40, 7, 0}));
+        final long[] snapshot = underTest.snapshot();
+        final ByteBuffer buffer = ByteBuffer.allocate(GCounter.encodedSize(snapshot));
+
+        GCounter.write(snapshot, buffer);
+        buffer.flip();
+
+        assertEquals(buffer.limit(), buffer.capacity());
+        assertArrayEquals(new long[]{1L << 40, 7, 300}, GCounter.read(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void write_givenBuffer_returnsSnapshotWritten() {
+        final GCounter underTest = counter(0);
+        underTest.add(1L << 20);
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        final long[] written = underTest.write(buffer);
+        underTest.add(1L << 40);
+        buffer.flip();
+
+        assertEquals(GCounter.encodedSize(written), buffer.remaining());
+        assertArrayEquals(written, GCounter.read(buffer));
+    }
+
+    @Test
+    void read_givenLengthOverRemaining_throwsWithoutAllocating() {
+        final ByteBuffer buffer = ByteBuffer.allocate(8);
+        ClockCodec.writeVarLong(Integer.MAX_VALUE, buffer);
+        buffer.put((byte) 0);
+        buffer.flip();
+
+        assertThrows(IllegalArgumentException.class, () -> GCounter.read(buffer));
+    }
+}
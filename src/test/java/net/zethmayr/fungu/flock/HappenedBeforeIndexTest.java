@@ -0,0 +1,129 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HappenedBeforeIndexTest {
+
+    private static final int MEMBERS = 4;
+
+    private static List<EventClocks> history(final Random random, final int events) {
+        final URI[] locations = new URI[MEMBERS];
+        for (int n = 0; n < MEMBERS; n++) {
+            locations[n] = URI.create("local:" + n);
+        }
+        final List<FlockClocks> members = new ArrayList<>();
+        for (int n = 0; n < MEMBERS; n++) {
+            members.add(new FlockClocks(n, new long[MEMBERS], locations));
+        }
+        final List<EventClocks> recorded = new ArrayList<>();
+        final List<List<EventClocks>> sent = new ArrayList<>();
+        for (int n = 0; n < MEMBERS; n++) {
+            sent.add(new ArrayList<>());
+        }
+        while (recorded.size() < events) {
+            final int member = random.nextInt(MEMBERS);
+            final List<EventClocks> inbox = sent.get(member);
+            if (!inbox.isEmpty() && random.nextBoolean()) {
+                final EventClocks message = inbox.remove(random.nextInt(inbox.size()));
+                recorded.add(assertDoesNotThrow(() -> members.get(member).messageReceived(message.clocks())));
+            } else {
+                final EventClocks message = members.get(member).messageClocks();
+                recorded.add(message);
+                sent.get(random.nextInt(MEMBERS)).add(message);
+            }
+        }
+        return recorded;
+    }
+
+    private static List<EventClocks> scan(final List<EventClocks> events, final EventClocks query, final CausalOrder order) {
+        return events.stream()
+                .filter(e -> e.causalOrder(query) == order)
+                .toList();
+    }
+
+    private static List<Long> keys(final List<EventClocks> events) {
+        final List<Long> keys = new ArrayList<>();
+        for (final EventClocks event : events) {
+            keys.add(((long) event.memberId() << 32) | event.localClock());
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    @Test
+    void queries_givenRandomHistory_matchLinearScan() {
+        final Random random = new Random(18);
+        final List<EventClocks> events = history(random, 400);
+        final List<EventClocks> shuffled = new ArrayList<>(events);
+        Collections.shuffle(shuffled, random);
+        final HappenedBeforeIndex underTest = new HappenedBeforeIndex(MEMBERS);
+        underTest.addAll(shuffled);
+
+        for (final EventClocks query : events) {
+
+            assertEquals(keys(scan(events, query, CausalOrder.BEFORE)), keys(underTest.predecessors(query)));
+            assertEquals(keys(scan(events, query, CausalOrder.AFTER)), keys(underTest.successors(query)));
+            assertEquals(keys(scan(events, query, CausalOrder.CONCURRENT)), keys(underTest.concurrent(query)));
+            final HappenedBeforeIndex.Counts counts = underTest.counts(query);
+            assertEquals(1, counts.equal());
+            assertEquals(events.size(), counts.before() + counts.concurrent() + counts.after() + counts.equal());
+        }
+    }
+
+    @Test
+    void queries_givenUnindexedEvent_answerFromHistory() {
+        final List<EventClocks> events = history(new Random(7), 100);
+        final HappenedBeforeIndex underTest = new HappenedBeforeIndex(MEMBERS);
+        underTest.addAll(events.subList(0, 50));
+        final EventClocks query = events.get(75);
+
+        assertEquals(keys(scan(events.subList(0, 50), query, CausalOrder.BEFORE)), keys(underTest.predecessors(query)));
+        assertEquals(0, underTest.counts(query).equal());
+    }
+
+    @Test
+    void add_givenDuplicateLocalClock_throws() {
+        final HappenedBeforeIndex underTest = new HappenedBeforeIndex(2);
+        underTest.add(new FlockClocks.ClockData(0, new long[]{1, 0}));
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                underTest.add(new FlockClocks.ClockData(0, new long[]{1, 0})));
+    }
+
+    @Test
+    void add_givenUnorderedMemberEvents_throws() {
+        final HappenedBeforeIndex underTest = new HappenedBeforeIndex(2);
+        underTest.add(new FlockClocks.ClockData(0, new long[]{1, 5}));
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                underTest.add(new FlockClocks.ClockData(0, new long[]{2, 3})));
+        assertEquals(1, underTest.size());
+    }
+
+    @Test
+    void add_givenWrongLength_throws() {
+        final HappenedBeforeIndex underTest = new HappenedBeforeIndex(2);
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                underTest.add(new FlockClocks.ClockData(0, new long[]{1, 0, 0})));
+    }
+
+    @Test
+    void new_givenNonPositiveLength_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new HappenedBeforeIndex(0));
+    }
+}
@@ -0,0 +1,97 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static net.zethmayr.fungu.flock.HybridLogicalClock.logical;
+import static net.zethmayr.fungu.flock.HybridLogicalClock.physical;
+import static net.zethmayr.fungu.flock.HybridLogicalClock.timestamp;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HybridLogicalClockTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    @Test
+    void timestamp_givenParts_roundTrips() {
+        final long result = timestamp(1_700_000_000_000L, 42);
+
+        assertEquals(1_700_000_000_000L, physical(result));
+        assertEquals(42, logical(result));
+    }
+
+    @Test
+    void localEvent_givenStoppedTime_countsLogically() {
+        final HybridLogicalClock underTest = new HybridLogicalClock(now::get, 0);
+
+        final long first = underTest.localEvent();
+        final long second = underTest.localEvent();
+
+        assertEquals(timestamp(1_000, 0), first);
+        assertEquals(timestamp(1_000, 1), second);
+    }
+
+    @Test
+    void localEvent_givenAdvancedTime_resetsLogical() {
+        final HybridLogicalClock underTest = new HybridLogicalClock(now::get, 0);
+        underTest.localEvent();
+        underTest.localEvent();
+        now.set(1_001);
+
+        assertEquals(timestamp(1_001, 0), underTest.localEvent());
+    }
+
+    @Test
+    void localEvent_givenTimeGoingBackwards_staysMonotonic() {
+        final HybridLogicalClock underTest = new HybridLogicalClock(now::get, 0);
+        final long before = underTest.localEvent();
+        now.set(900);
+
+        assertTrue(underTest.localEvent() > before);
+    }
+
+    @Test
+    void messageReceived_givenRemoteAhead_followsRemote() {
+        final HybridLogicalClock underTest = new HybridLogicalClock(now::get, 100);
+        final long sent = timestamp(1_050, 3);
+
+        final long result = assertDoesNotThrow(() -> underTest.messageReceived(sent));
+
+        assertEquals(timestamp(1_050, 4), result);
+        assertTrue(underTest.localEvent() > result);
+    }
+
+    @Test
+    void messageReceived_givenRemoteBehind_followsLocalTime() {
+        final HybridLogicalClock underTest = new HybridLogicalClock(now::get, 100);
+
+        final long result = assertDoesNotThrow(() -> underTest.messageReceived(timestamp(500, 7)));
+
+        assertEquals(timestamp(1_000, 0), result);
+    }
+
+    @Test
+    void messageReceived_givenExcessiveDrift_throws() {
+        final HybridLogicalClock underTest = new HybridLogicalClock(now::get, 100);
+
+        assertThrows(PermanentNopException.class, () ->
+
+                underTest.messageReceived(timestamp(1_101, 0)));
+        assertEquals(0, underTest.current());
+    }
+
+    @Test
+    void localEvent_givenConcurrentCallers_issuesDistinctTimestamps() {
+        final HybridLogicalClock underTest = new HybridLogicalClock(now::get, 0);
+
+        final long distinct = LongStream.range(0, 10_000)
+                .parallel()
+                .map(n -> underTest.localEvent())
+                .distinct()
+                .count();
+
+        assertEquals(10_000, distinct);
+    }
+}
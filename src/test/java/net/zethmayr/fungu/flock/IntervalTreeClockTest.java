@@ -0,0 +1,187 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalTreeClockTest {
+
+    @Test
+    void event_givenSeed_followsSeed() {
+        final IntervalTreeClock seed = IntervalTreeClock.seed();
+
+        final IntervalTreeClock result = seed.event();
+
+        assertEquals(CausalOrder.AFTER, result.causalOrder(seed));
+        assertEquals(1, result.compareTo(seed));
+    }
+
+    @Test
+    void event_givenForkedStamps_areConcurrent() {
+        final IntervalTreeClock[] forked = IntervalTreeClock.seed().fork();
+
+        final IntervalTreeClock left = forked[0].event();
+        final IntervalTreeClock right = forked[1].event();
+
+        assertEquals(CausalOrder.EQUAL, forked[0].causalOrder(forked[1]));
+        assertEquals(CausalOrder.CONCURRENT, left.causalOrder(right));
+        assertEquals(0, left.compareTo(right));
+    }
+
+    @Test
+    void messageReceived_givenSentStamp_followsSender() {
+        final IntervalTreeClock[] forked = IntervalTreeClock.seed().fork();
+        final IntervalTreeClock sender = forked[0].event();
+
+        final IntervalTreeClock result = forked[1].messageReceived(sender.peek());
+
+        assertEquals(CausalOrder.BEFORE, sender.causalOrder(result));
+        assertFalse(result.isAnonymous());
+    }
+
+    @Test
+    void join_givenAllForks_restoresSeedShare() {
+        final IntervalTreeClock[] halves = IntervalTreeClock.seed().event().fork();
+        final IntervalTreeClock[] quarters = halves[1].fork();
+        final IntervalTreeClock left = halves[0].event();
+        final IntervalTreeClock middle = quarters[0].event().event();
+
+        final IntervalTreeClock result = left.join(middle).join(quarters[1]);
+
+        assertEquals(CausalOrder.AFTER, result.causalOrder(left));
+        assertEquals(CausalOrder.AFTER, result.causalOrder(middle));
+        assertEquals(1, result.event().encode().length);
+    }
+
+    @Test
+    void join_givenOverlappingShares_throws() {
+        final IntervalTreeClock[] forked = IntervalTreeClock.seed().fork();
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                forked[0].join(forked[0]));
+    }
+
+    @Test
+    void event_givenAnonymousStamp_throws() {
+        final IntervalTreeClock anonymous = IntervalTreeClock.seed().peek();
+
+        assertThrows(IllegalStateException.class, anonymous::event);
+    }
+
+    @Test
+    void decode_givenEncoding_roundTrips() {
+        final Random random = new Random(22);
+        final List<IntervalTreeClock> stamps = churn(random, 200);
+
+        for (final IntervalTreeClock stamp : stamps) {
+
+            assertEquals(stamp, IntervalTreeClock.decode(stamp.encode()));
+        }
+    }
+
+    @Test
+    void decode_givenTruncatedEncoding_throws() {
+        final byte[] encoded = churn(new Random(3), 50).get(0).encode();
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                IntervalTreeClock.decode(new byte[]{encoded[0]}));
+    }
+
+    @Test
+    void causalOrder_givenRandomChurn_agreesWithKnownEvents() {
+        final Random random = new Random(5);
+        final List<IntervalTreeClock> stamps = new ArrayList<>(List.of(IntervalTreeClock.seed()));
+        final List<BitSet> known = new ArrayList<>(List.of(new BitSet()));
+        int events = 0;
+        for (int n = 0; n < 300; n++) {
+            final int chosen = random.nextInt(stamps.size());
+            final int roll = random.nextInt(10);
+            if (roll == 0 || stamps.size() == 1) {
+                final IntervalTreeClock[] forked = stamps.get(chosen).fork();
+                stamps.set(chosen, forked[0]);
+                stamps.add(forked[1]);
+                known.add((BitSet) known.get(chosen).clone());
+            } else if (roll == 1) {
+                final IntervalTreeClock leaving = stamps.remove(chosen);
+                final BitSet leavingKnown = known.remove(chosen);
+                final int heir = random.nextInt(stamps.size());
+                stamps.set(heir, stamps.get(heir).join(leaving));
+                known.get(heir).or(leavingKnown);
+            } else {
+                final int receiver = random.nextInt(stamps.size());
+                stamps.set(chosen, stamps.get(chosen).event());
+                known.get(chosen).set(events++);
+                if (receiver != chosen) {
+                    stamps.set(receiver, stamps.get(receiver).messageReceived(stamps.get(chosen).peek()));
+                    known.get(receiver).or(known.get(chosen));
+                    known.get(receiver).set(events++);
+                }
+            }
+            final int first = random.nextInt(stamps.size());
+            final int second = random.nextInt(stamps.size());
+
+            assertEquals(order(known.get(first), known.get(second)), stamps.get(first).causalOrder(stamps.get(second)));
+        }
+    }
+
+    private static CausalOrder order(final BitSet first, final BitSet second) {
+        final BitSet firstOnly = (BitSet) first.clone();
+        firstOnly.andNot(second);
+        final BitSet secondOnly = (BitSet) second.clone();
+        secondOnly.andNot(first);
+        return firstOnly.isEmpty()
+                ? (secondOnly.isEmpty() ? CausalOrder.EQUAL : CausalOrder.BEFORE)
+                : (secondOnly.isEmpty() ? CausalOrder.AFTER : CausalOrder.CONCURRENT);
+    }
+
+    @Test
+    void encode_givenSmallFlock_isCompact() {
+        final IntervalTreeClock[] forked = IntervalTreeClock.seed().fork();
+        IntervalTreeClock stamp = forked[0];
+        for (int n = 0; n < 100; n++) {
+            stamp = stamp.event();
+        }
+
+        assertThat(stamp.peek().encode().length, lessThan(6));
+    }
+
+    private static List<IntervalTreeClock> churn(final Random random, final int steps) {
+        List<IntervalTreeClock> members = new ArrayList<>(List.of(IntervalTreeClock.seed()));
+        for (int n = 0; n < steps; n++) {
+            members = step(random, members);
+        }
+        return members;
+    }
+
+    private static List<IntervalTreeClock> step(final Random random, final List<IntervalTreeClock> members) {
+        final List<IntervalTreeClock> next = new ArrayList<>(members);
+        final int chosen = random.nextInt(next.size());
+        final int roll = random.nextInt(10);
+        if (roll == 0 || next.size() == 1) {
+            final IntervalTreeClock[] forked = next.get(chosen).fork();
+            next.set(chosen, forked[0]);
+            next.add(forked[1]);
+        } else if (roll == 1) {
+            final IntervalTreeClock leaving = next.remove(chosen);
+            final int heir = random.nextInt(next.size());
+            next.set(heir, next.get(heir).join(leaving));
+        } else {
+            final IntervalTreeClock sender = next.get(chosen).event();
+            next.set(chosen, sender);
+            final int receiver = random.nextInt(next.size());
+            if (receiver != chosen) {
+                next.set(receiver, next.get(receiver).messageReceived(sender.peek()));
+            }
+        }
+        return next;
+    }
+}
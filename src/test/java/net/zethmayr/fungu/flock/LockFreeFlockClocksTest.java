@@ -0,0 +1,195 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.flock.config.KnownMember;
+import net.zethmayr.fungu.flock.config.KnownMemberConfigProps;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static net.zethmayr.fungu.throwing.ResultFactory.evaluateThrowing;
+import static net.zethmayr.fungu.UponHelper.upon;
+import static net.zethmayr.fungu.flock.FlockClocks.proposeInsertValues;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockFreeFlockClocksTest {
+
+    private static final int THREADS = 8;
+    private static final int EVENTS_PER_THREAD = 20_000;
+
+    private static final URI UNUSABLE_TEST_URI = null;
+
+    private LockFreeFlockClocks underTest;
+
+    private static LockFreeFlockClocks secondOfThree() {
+        return evaluateThrowing(() -> new LockFreeFlockClocks(
+                1,
+                IntStream.range(0, 3)
+                        .mapToObj(x -> upon(new KnownMemberConfigProps(),
+                                k -> k.setIndex(x),
+                                k -> k.setLocation("local:" + x),
+                                k -> k.setInitialValue((long) x * 10)
+                        ))
+                        .toArray(KnownMember[]::new)
+        )).get();
+    }
+
+    @Test
+    void lockFreeFlockClocks_givenMismatchedArrays_throwsOutOfRange() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new LockFreeFlockClocks(0, new long[]{0}, new URI[]{}));
+    }
+
+    @Test
+    void localEvent_givenAnything_incrementsLocalCounter() {
+        underTest = secondOfThree();
+        final long prior = underTest.localClock();
+
+        final long result = underTest.localEvent();
+
+        assertThat(result, greaterThan(prior));
+        assertEquals(result, underTest.localClock());
+    }
+
+    @Test
+    void messagesReceived_givenNullMessage_throwsRatherThanCollecting() {
+        underTest = secondOfThree();
+
+        assertThrows(NullPointerException.class, () ->
+                underTest.messagesReceived(new long[][]{new long[2], null}));
+    }
+
+    @Test
+    void messageReceived_givenAdvancedClock_mergesClocks() {
+        underTest = secondOfThree();
+        final long[] initial = underTest.clocks();
+        final LockFreeFlockClocks remote = new LockFreeFlockClocks(0, initial, underTest.locations());
+        remote.localEvent();
+
+        final EventClocks result = assertDoesNotThrow(() -> underTest.messageReceived(remote.clocks()));
+
+        assertThat(result.clocks()[0], greaterThan(initial[0]));
+        assertThat(result.clocks()[1], greaterThan(initial[1]));
+        assertThat(result.clocks()[2], equalTo(initial[2]));
+    }
+
+    @Test
+    void messageReceived_givenRemotelyAdvancedOwnClock_throws() {
+        underTest = secondOfThree();
+        final long[] remoteClocks = underTest.clocks();
+        remoteClocks[1]++;
+
+        assertThrows(PermanentNopException.class, () ->
+                underTest.messageReceived(remoteClocks));
+    }
+
+    @Test
+    void messageReceived_givenTooManyClocks_throws() {
+        underTest = secondOfThree();
+
+        assertThrows(RetryableNopException.class, () ->
+                underTest.messageReceived(proposeInsertValues(2, underTest.clocks())));
+    }
+
+    @Test
+    void addMember_givenSequenceLessThanId_addsNewMemberMovingId() {
+        underTest = secondOfThree();
+        final long priorLocalCount = underTest.localClock();
+
+        assertDoesNotThrow(() ->
+                underTest.addMember(0, UNUSABLE_TEST_URI, underTest.proposeInsertValues(0)));
+
+        assertEquals(0L, underTest.clocks()[0]);
+        assertEquals(priorLocalCount, underTest.localClock());
+        assertEquals(2, underTest.clockData().memberId());
+    }
+
+    @Test
+    void addMember_whenOccursTwice_addsNewMemberThenIgnores() {
+        underTest = secondOfThree();
+        final long[] insertValues = underTest.proposeInsertValues(3);
+
+        assertDoesNotThrow(() ->
+                underTest.addMember(3, UNUSABLE_TEST_URI, insertValues));
+
+        assertThrows(PermanentNopException.class, () ->
+                underTest.addMember(3, UNUSABLE_TEST_URI, insertValues));
+        assertEquals(4, underTest.clocks().length);
+    }
+
+    @Test
+    void retireMember_givenSequenceLessThanId_removesMemberMovingId() {
+        underTest = secondOfThree();
+        final long priorLocalValue = underTest.localClock();
+
+        assertDoesNotThrow(() ->
+                underTest.retireMember(0, underTest.proposeDeleteValues(0)));
+
+        assertEquals(priorLocalValue, underTest.clocks()[0]);
+        assertEquals(0, underTest.clockData().memberId());
+    }
+
+    @Test
+    void retireMember_givenSequenceEqualToId_throws() {
+        underTest = secondOfThree();
+
+        assertThrows(IllegalStateException.class, () ->
+                underTest.retireMember(1, underTest.proposeDeleteValues(1)));
+    }
+
+    @Test
+    void concurrently_givenEventsSendsAndReceives_losesNoIncrementsAndRepeatsNoValues() throws Exception {
+        underTest = secondOfThree();
+        final long initial = underTest.localClock();
+        final Set<Long> seen = ConcurrentHashMap.newKeySet();
+        final AtomicLong remoteMaximum = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            final Future<?>[] work = IntStream.range(0, THREADS)
+                    .mapToObj(t -> threads.submit(() -> {
+                        start.await();
+                        for (int n = 0; n < EVENTS_PER_THREAD; n++) {
+                            final long local;
+                            switch (n % 3) {
+                                case 0 -> local = underTest.localEvent();
+                                case 1 -> local = underTest.messageClocks().localClock();
+                                default -> {
+                                    final long remote = t * (long) EVENTS_PER_THREAD + n;
+                                    remoteMaximum.accumulateAndGet(remote, Math::max);
+                                    local = underTest.messageReceived(new long[]{remote, 0L, remote}).localClock();
+                                }
+                            }
+                            assertTrue(seen.add(local));
+                        }
+                        return null;
+                    }))
+                    .toArray(Future[]::new);
+            start.countDown();
+            for (final Future<?> each : work) {
+                each.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        final long[] result = underTest.clocks();
+        assertEquals(initial + THREADS * EVENTS_PER_THREAD, result[1]);
+        assertEquals(THREADS * EVENTS_PER_THREAD, seen.size());
+        assertEquals(remoteMaximum.get(), result[0]);
+        assertEquals(remoteMaximum.get(), result[2]);
+    }
+}
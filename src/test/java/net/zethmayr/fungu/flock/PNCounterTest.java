@@ -0,0 +1,83 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PNCounterTest {
+
+    private static final URI[] LOCATIONS = {URI.create("test:a"), URI.create("test:b")};
+
+    @Test
+    void add_givenSignedAmounts_tracksValue() {
+        final PNCounter underTest = new PNCounter(0, LOCATIONS);
+
+        underTest.add(10);
+        underTest.add(-4);
+        underTest.increment();
+        underTest.decrement();
+        underTest.decrement();
+
+        assertEquals(5, underTest.value());
+        assertArrayEquals(new long[]{11, 0, 6, 0}, underTest.snapshot());
+    }
+
+    @Test
+    void merge_givenReplicas_converges() {
+        final PNCounter a = new PNCounter(0, LOCATIONS);
+        final PNCounter b = new PNCounter(1, LOCATIONS);
+        a.add(7);
+        b.add(-9);
+
+        assertDoesNotThrow(() -> {
+            a.merge(b.snapshot());
+            b.merge(a.snapshot());
+        });
+
+        assertEquals(-2, a.value());
+        assertEquals(-2, b.value());
+    }
+
+    @Test
+    void add_givenMinValue_throwsWithoutChanging() {
+        final PNCounter underTest = new PNCounter(0, LOCATIONS);
+
+        final IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> underTest.add(Long.MIN_VALUE));
+
+        assertTrue(thrown.getMessage().contains("magnitude"));
+        assertEquals(0, underTest.value());
+    }
+
+    @Test
+    void merge_givenOddLength_throws() {
+        final PNCounter underTest = new PNCounter(0, LOCATIONS);
+
+        assertThrows(IllegalArgumentException.class, () -> underTest.merge(new long[3]));
+    }
+
+    @Test
+    void merge_givenRemoteDecrementsOverLocal_throwsPermanentNop() {
+        final PNCounter underTest = new PNCounter(0, LOCATIONS);
+
+        assertThrows(PermanentNopException.class, () -> underTest.merge(new long[]{0, 0, 1, 0}));
+    }
+
+    @Test
+    void write_givenValues_roundTrips() {
+        final PNCounter underTest = new PNCounter(1, LOCATIONS);
+        underTest.add(-200);
+        underTest.add(3);
+        final long[] snapshot = underTest.snapshot();
+        final ByteBuffer buffer = ByteBuffer.allocate(PNCounter.encodedSize(snapshot));
+
+        PNCounter.write(snapshot, buffer);
+        buffer.flip();
+
+        assertArrayEquals(new long[]{0, 3, 0, 200}, PNCounter.read(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+}
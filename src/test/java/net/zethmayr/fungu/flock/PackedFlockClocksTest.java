@@ -0,0 +1,223 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.flock.config.KnownMember;
+import net.zethmayr.fungu.flock.config.KnownMemberConfigProps;
+import net.zethmayr.fungu.throwing.ThrowingRunnable;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static net.zethmayr.fungu.UponHelper.upon;
+import static net.zethmayr.fungu.flock.PackedFlockClocks.SEALED;
+import static net.zethmayr.fungu.throwing.ResultFactory.evaluateThrowing;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedFlockClocksTest {
+
+    private static final int THREADS = 4;
+    private static final int EVENTS_PER_THREAD = 20_000;
+    private static final int MEMBERSHIP_CHANGES = 200;
+
+    private static final URI UNUSABLE_TEST_URI = null;
+
+    private PackedFlockClocks underTest;
+
+    private static PackedFlockClocks secondOfThree() {
+        return evaluateThrowing(() -> new PackedFlockClocks(
+                1,
+                IntStream.range(0, 3)
+                        .mapToObj(x -> upon(new KnownMemberConfigProps(),
+                                k -> k.setIndex(x),
+                                k -> k.setLocation("local:" + x),
+                                k -> k.setInitialValue((long) x * 10)
+                        ))
+                        .toArray(KnownMember[]::new)
+        )).get();
+    }
+
+    @Test
+    void packedFlockClocks_givenSealedValue_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new PackedFlockClocks(0, new long[]{SEALED}, new URI[1]));
+    }
+
+    @Test
+    void packedFlockClocks_givenKnownMembers_keepsLocations() {
+        underTest = secondOfThree();
+
+        assertEquals(URI.create("local:2"), underTest.locations()[2]);
+    }
+
+    @Test
+    void localEvent_givenAnything_incrementsLocalCounter() {
+        underTest = secondOfThree();
+        final long prior = underTest.localClock();
+
+        final long result = underTest.localEvent();
+
+        assertThat(result, greaterThan(prior));
+        assertEquals(result, underTest.clocks()[1]);
+    }
+
+    @Test
+    void messageClocks_givenAnything_returnsIncrementedSnapshot() {
+        underTest = secondOfThree();
+        final long prior = underTest.localClock();
+
+        final EventClocks result = underTest.messageClocks();
+
+        assertEquals(1, result.memberId());
+        assertEquals(prior + 1, result.localClock());
+        assertNotSame(result.clocks(), underTest.clockData().clocks());
+    }
+
+    @Test
+    void messageReceived_givenAdvancedClock_mergesClocks() {
+        underTest = secondOfThree();
+        final long[] initial = underTest.clocks();
+        final PackedFlockClocks remote = new PackedFlockClocks(0, initial, underTest.locations());
+        remote.localEvent();
+
+        final EventClocks result = assertDoesNotThrow(() -> underTest.messageReceived(remote.clocks()));
+
+        assertThat(result.clocks()[0], greaterThan(initial[0]));
+        assertThat(result.clocks()[1], greaterThan(initial[1]));
+        assertThat(result.clocks()[2], equalTo(initial[2]));
+    }
+
+    @Test
+    void messageReceived_givenRemotelyAdvancedOwnClock_throws() {
+        underTest = secondOfThree();
+        final long[] remoteClocks = underTest.clocks();
+        remoteClocks[1]++;
+
+        assertThrows(PermanentNopException.class, () ->
+                underTest.messageReceived(remoteClocks));
+    }
+
+    @Test
+    void addMember_givenSequenceEqualToId_addsNewMemberMovingId() {
+        underTest = secondOfThree();
+        final long priorLocalValue = underTest.localClock();
+
+        assertDoesNotThrow(() ->
+                underTest.addMember(1, UNUSABLE_TEST_URI, underTest.proposeInsertValues(1)));
+
+        assertEquals(0L, underTest.clocks()[1]);
+        assertEquals(priorLocalValue, underTest.localClock());
+        assertEquals(2, underTest.clockData().memberId());
+    }
+
+    @Test
+    void addMember_whenOccursTwice_addsNewMemberThenIgnores() {
+        underTest = secondOfThree();
+        final long[] insertValues = underTest.proposeInsertValues(3);
+
+        assertDoesNotThrow(() ->
+                underTest.addMember(3, UNUSABLE_TEST_URI, insertValues));
+
+        assertThrows(PermanentNopException.class, () ->
+                underTest.addMember(3, UNUSABLE_TEST_URI, insertValues));
+        assertEquals(4, underTest.clocks().length);
+        assertDoesNotThrow(underTest::localEvent);
+    }
+
+    @Test
+    void addMember_givenIndexOutOfRange_throwsAndKeepsWorking() {
+        underTest = secondOfThree();
+        final long priorLocalValue = underTest.localClock();
+
+        assertThrows(IllegalArgumentException.class, () ->
+                underTest.addMember(5, UNUSABLE_TEST_URI, new long[6]));
+
+        assertEquals(priorLocalValue + 1, assertTimeoutPreemptively(Duration.ofSeconds(5), underTest::localEvent));
+        assertEquals(3, underTest.clockData().clocks().length);
+    }
+
+    @Test
+    void retireMember_givenSequencePastId_removesMember() {
+        underTest = secondOfThree();
+        final long priorLocalValue = underTest.localClock();
+
+        assertDoesNotThrow(() ->
+                underTest.retireMember(2, underTest.proposeDeleteValues(2)));
+
+        assertEquals(2, underTest.clocks().length);
+        assertEquals(priorLocalValue, underTest.clocks()[1]);
+    }
+
+    @Test
+    void retireMember_givenSequenceEqualToId_throws() {
+        underTest = secondOfThree();
+
+        assertThrows(IllegalStateException.class, () ->
+                underTest.retireMember(1, underTest.proposeDeleteValues(1)));
+    }
+
+    /**
+     * Proposals made from our own values become obsolete when local events race them.
+     */
+    private static boolean tried(final ThrowingRunnable<PermanentNopException> change) {
+        try {
+            change.run();
+            return true;
+        } catch (final PermanentNopException obsolete) {
+            return false;
+        }
+    }
+
+    @Test
+    void concurrently_givenEventsDuringMembershipChanges_losesNoIncrementsAndRepeatsNoValues() throws Exception {
+        underTest = secondOfThree();
+        final long initial = underTest.localClock();
+        final Set<Long> seen = ConcurrentHashMap.newKeySet();
+        final ExecutorService threads = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            final Future<?>[] work = IntStream.range(0, THREADS)
+                    .mapToObj(t -> threads.submit(() -> {
+                        for (int n = 0; n < EVENTS_PER_THREAD; n++) {
+                            final long local = n % 2 == 0
+                                    ? underTest.localEvent()
+                                    : underTest.messageClocks().localClock();
+                            assertTrue(seen.add(local));
+                        }
+                        return null;
+                    }))
+                    .toArray(Future[]::new);
+            final Future<?> membership = threads.submit(() -> {
+                for (int n = 0; n < MEMBERSHIP_CHANGES; n++) {
+                    while (!tried(() -> underTest.addMember(0, UNUSABLE_TEST_URI, underTest.proposeInsertValues(0)))) {
+                        Thread.yield();
+                    }
+                    while (!tried(() -> underTest.retireMember(0, underTest.proposeDeleteValues(0)))) {
+                        Thread.yield();
+                    }
+                }
+                return null;
+            });
+            membership.get(1, TimeUnit.MINUTES);
+            for (final Future<?> each : work) {
+                each.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(initial + THREADS * EVENTS_PER_THREAD, underTest.localClock());
+        assertEquals(THREADS * EVENTS_PER_THREAD, seen.size());
+        assertEquals(3, underTest.clocks().length);
+    }
+}
@@ -0,0 +1,323 @@
+package net.zethmayr.fungu.flock;
+
+import net.zethmayr.fungu.flock.config.HasKnownMembers;
+import net.zethmayr.fungu.flock.simulation.NetworkConditions;
+import net.zethmayr.fungu.flock.simulation.SimulatedFlock;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicatedMapTest {
+
+    private static final URI[] LOCATIONS = {URI.create("test:a"), URI.create("test:b"), URI.create("test:c")};
+
+    private static final class Recording implements FlockProtocol<ReplicatedMap.Batch<String, String>> {
+        private final List<ReplicatedMap.Batch<String, String>> sent = new ArrayList<>();
+        private IOException failure;
+
+        @Override
+        public void joinFlock(final HasKnownMembers knownMembers) {
+        }
+
+        @Override
+        public void reJoinFlock(final int memberId, final HasKnownMembers knownMembers) {
+        }
+
+        @Override
+        public void receiveMessage(final ReplicatedMap.Batch<String, String> message, final long[] sentClocks) {
+        }
+
+        @Override
+        public void sendMessage(final ReplicatedMap.Batch<String, String> message) throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            sent.add(message);
+        }
+    }
+
+    private static ReplicatedMap<String, String> map(final int memberId, final Recording recording) {
+        return new ReplicatedMap<>(memberId, LOCATIONS, recording, (a, b) -> a.compareTo(b) <= 0 ? b : a);
+    }
+
+    @Test
+    void put_givenValues_readsLocally() {
+        final ReplicatedMap<String, String> underTest = map(0, new Recording());
+
+        underTest.put("k", "v");
+        underTest.put("j", "w");
+        underTest.remove("j");
+
+        assertEquals("v", underTest.get("k"));
+        assertNull(underTest.get("j"));
+        assertEquals(1, underTest.versions("j").size());
+        assertEquals(List.of(), underTest.versions("absent"));
+        assertEquals(Map.of("k", "v"), underTest.snapshot());
+        assertEquals(3, underTest.pending());
+    }
+
+    @Test
+    void put_givenNull_throws() {
+        assertThrows(IllegalArgumentException.class, () -> map(0, new Recording()).put("k", null));
+    }
+
+    @Test
+    void flush_givenWrites_sendsOneBatch() {
+        final Recording recording = new Recording();
+        final ReplicatedMap<String, String> underTest = map(1, recording);
+        underTest.put("a", "1");
+        underTest.put("b", "2");
+
+        assertEquals(2, assertDoesNotThrow(underTest::flush));
+        assertEquals(0, assertDoesNotThrow(underTest::flush));
+
+        assertEquals(1, recording.sent.size());
+        assertEquals(1, recording.sent.get(0).memberId());
+        assertEquals(List.of("a", "b"), recording.sent.get(0).writes().stream().map(ReplicatedMap.Write::key).toList());
+        assertEquals(0, underTest.pending());
+    }
+
+    @Test
+    void flush_givenFailure_resendsSameBatchFirst() {
+        final Recording recording = new Recording();
+        final ReplicatedMap<String, String> underTest = map(0, recording);
+        underTest.put("a", "1");
+        recording.failure = new IOException("down");
+
+        assertThrows(IOException.class, underTest::flush);
+        underTest.put("b", "2");
+        recording.failure = null;
+
+        assertEquals(1, assertDoesNotThrow(underTest::flush));
+        assertEquals(1, assertDoesNotThrow(underTest::flush));
+        assertEquals(List.of("a"), recording.sent.get(0).writes().stream().map(ReplicatedMap.Write::key).toList());
+        assertEquals(List.of("b"), recording.sent.get(1).writes().stream().map(ReplicatedMap.Write::key).toList());
+        assertArrayEquals(new long[]{1, 0, 0}, recording.sent.get(0).clocks());
+        assertArrayEquals(new long[]{2, 0, 0}, recording.sent.get(1).clocks());
+    }
+
+    @Test
+    void received_givenCausallyLaterWrite_replaces() {
+        final Recording fromA = new Recording();
+        final Recording fromB = new Recording();
+        final ReplicatedMap<String, String> a = map(0, fromA);
+        final ReplicatedMap<String, String> b = map(1, fromB);
+        final ReplicatedMap<String, String> c = map(2, new Recording());
+        a.put("k", "first");
+        assertDoesNotThrow(a::flush);
+        assertDoesNotThrow(() -> b.received(fromA.sent.get(0)));
+        b.put("k", "after");
+        assertDoesNotThrow(b::flush);
+
+        assertDoesNotThrow(() -> c.received(fromB.sent.get(0)));
+        assertDoesNotThrow(() -> c.received(fromA.sent.get(0)));
+        assertDoesNotThrow(() -> a.received(fromB.sent.get(0)));
+
+        assertEquals("after", c.get("k"));
+        assertEquals("after", a.get("k"));
+        assertEquals(1, c.versions("k").size());
+        assertEquals(CausalOrder.EQUAL, a.versions("k").get(0).causalOrder(c.versions("k").get(0)));
+    }
+
+    @Test
+    void received_givenReorderedBatchesAcrossKeys_holdsBackUntilCausallyReady() {
+        final Recording fromA = new Recording();
+        final Recording fromB = new Recording();
+        final ReplicatedMap<String, String> a = map(0, fromA);
+        final ReplicatedMap<String, String> b = map(1, fromB);
+        final ReplicatedMap<String, String> c = map(2, new Recording());
+        a.put("account", "open");
+        assertDoesNotThrow(a::flush);
+        assertDoesNotThrow(() -> b.received(fromA.sent.get(0)));
+        b.put("session", "account is open");
+        assertDoesNotThrow(b::flush);
+
+        assertDoesNotThrow(() -> c.received(fromB.sent.get(0)));
+
+        assertNull(c.get("session"));
+        assertEquals(1, c.heldBack());
+
+        assertDoesNotThrow(() -> c.received(fromA.sent.get(0)));
+
+        assertEquals("open", c.get("account"));
+        assertEquals("account is open", c.get("session"));
+        assertEquals(0, c.heldBack());
+    }
+
+    @Test
+    void flush_givenWritesRacingAppliedBatches_followsEveryBatchTheWritesSaw() throws Exception {
+        final Recording fromA = new Recording();
+        final Recording fromB = new Recording();
+        final ReplicatedMap<String, String> a = map(0, fromA);
+        final ReplicatedMap<String, String> b = map(1, fromB);
+        final List<Long> remoteClocks = new ArrayList<>();
+        for (int n = 0; n < 2000; n++) {
+            remoteClocks.add(b.put("b" + n, "v").clocks()[1]);
+            assertDoesNotThrow(b::flush);
+        }
+        final Thread applying = new Thread(() -> {
+            for (final ReplicatedMap.Batch<String, String> batch : fromB.sent) {
+                assertDoesNotThrow(() -> a.received(batch));
+            }
+        });
+        final Thread writing = new Thread(() -> {
+            for (int n = 0; applying.isAlive(); n++) {
+                a.put("a", Integer.toString(n));
+            }
+        });
+
+        applying.start();
+        writing.start();
+        while (writing.isAlive()) {
+            assertDoesNotThrow(a::flush);
+        }
+        assertDoesNotThrow(a::flush);
+
+        for (final ReplicatedMap.Batch<String, String> batch : fromA.sent) {
+            final long seen = batch.writes().stream().mapToLong(w -> w.version().clocks()[1]).max().orElseThrow();
+            final long follows = remoteClocks.stream().filter(c -> c <= seen).count();
+            assertTrue(batch.clocks()[1] >= follows, "batch follows " + batch.clocks()[1] + " of " + follows);
+        }
+    }
+
+    @Test
+    void received_givenSameSenderBatchesReordered_appliesInOrder() {
+        final Recording fromA = new Recording();
+        final ReplicatedMap<String, String> a = map(0, fromA);
+        final ReplicatedMap<String, String> b = map(1, new Recording());
+        a.put("k", "first");
+        assertDoesNotThrow(a::flush);
+        a.put("j", "second");
+        assertDoesNotThrow(a::flush);
+
+        assertDoesNotThrow(() -> b.received(fromA.sent.get(1)));
+        assertNull(b.get("j"));
+        assertDoesNotThrow(() -> b.received(fromA.sent.get(0)));
+
+        assertEquals(Map.of("k", "first", "j", "second"), b.snapshot());
+        assertThrows(PermanentNopException.class, () -> b.received(fromA.sent.get(0)));
+    }
+
+    @Test
+    void received_givenConcurrentWrites_mergesAlike() {
+        final Recording fromA = new Recording();
+        final Recording fromB = new Recording();
+        final ReplicatedMap<String, String> a = map(0, fromA);
+        final ReplicatedMap<String, String> b = map(1, fromB);
+        a.put("k", "apple");
+        b.put("k", "banana");
+        assertDoesNotThrow(a::flush);
+        assertDoesNotThrow(b::flush);
+
+        assertDoesNotThrow(() -> a.received(fromB.sent.get(0)));
+        assertDoesNotThrow(() -> b.received(fromA.sent.get(0)));
+
+        assertEquals("banana", a.get("k"));
+        assertEquals("banana", b.get("k"));
+        assertEquals(2, a.versions("k").size());
+        assertArrayEquals(a.versions("k").get(0).clocks(), b.versions("k").get(0).clocks());
+    }
+
+    @Test
+    void put_givenConcurrentSiblings_obsoletesBoth() {
+        final Recording fromA = new Recording();
+        final Recording fromB = new Recording();
+        final ReplicatedMap<String, String> a = map(0, fromA);
+        final ReplicatedMap<String, String> b = map(1, fromB);
+        a.put("k", "apple");
+        b.put("k", "banana");
+        assertDoesNotThrow(a::flush);
+        assertDoesNotThrow(b::flush);
+        assertDoesNotThrow(() -> a.received(fromB.sent.get(0)));
+
+        a.put("k", "aardvark");
+        assertDoesNotThrow(a::flush);
+        assertDoesNotThrow(() -> b.received(fromA.sent.get(1)));
+        assertDoesNotThrow(() -> b.received(fromA.sent.get(0)));
+
+        assertEquals("aardvark", a.get("k"));
+        assertEquals("aardvark", b.get("k"));
+        assertEquals(1, b.versions("k").size());
+    }
+
+    @Test
+    void received_givenConcurrentRemoval_keepsLiveValue() {
+        final Recording fromA = new Recording();
+        final Recording fromB = new Recording();
+        final ReplicatedMap<String, String> a = map(0, fromA);
+        final ReplicatedMap<String, String> b = map(1, fromB);
+        a.remove("k");
+        b.put("k", "kept");
+        assertDoesNotThrow(a::flush);
+        assertDoesNotThrow(b::flush);
+
+        assertDoesNotThrow(() -> a.received(fromB.sent.get(0)));
+        assertDoesNotThrow(() -> b.received(fromA.sent.get(0)));
+
+        assertEquals("kept", a.get("k"));
+        assertEquals("kept", b.get("k"));
+    }
+
+    @Test
+    void received_givenOwnBatch_throwsPermanentNop() {
+        final Recording recording = new Recording();
+        final ReplicatedMap<String, String> underTest = map(0, recording);
+        underTest.put("k", "v");
+        assertDoesNotThrow(underTest::flush);
+
+        assertThrows(PermanentNopException.class, () -> underTest.received(recording.sent.get(0)));
+    }
+
+    @Test
+    void received_givenOtherSize_throwsRetryableNop() {
+        final ReplicatedMap<String, String> underTest = map(0, new Recording());
+        final ReplicatedMap.Batch<String, String> batch = new ReplicatedMap.Batch<>(1, new long[]{0, 1, 0},
+                List.of(new ReplicatedMap.Write<>("k", "v", new FlockClocks.ClockData(1, new long[]{0, 1}))));
+
+        assertThrows(RetryableNopException.class, () -> underTest.received(batch));
+    }
+
+    @Test
+    void received_givenSimulatedFlock_converges() {
+        final int size = 4;
+        final List<ReplicatedMap<String, String>> maps = new ArrayList<>();
+        final SimulatedFlock<ReplicatedMap.Batch<String, String>> flock = new SimulatedFlock<>(size,
+                new NetworkConditions(2, 10, 0.0, 0.3, 40), 11L,
+                (member, batch) -> assertDoesNotThrow(() -> maps.get(member.index()).received(batch)));
+        final URI[] locations = new URI[size];
+        for (int n = 0; n < size; n++) {
+            locations[n] = URI.create("sim:member-" + n);
+        }
+        for (int n = 0; n < size; n++) {
+            maps.add(new ReplicatedMap<>(n, locations, flock.members().get(n), (x, y) -> x.compareTo(y) <= 0 ? y : x));
+        }
+        final Random random = new Random(5L);
+        for (int round = 0; round < 50; round++) {
+            final ReplicatedMap<String, String> writer = maps.get(random.nextInt(size));
+            final String key = "k" + random.nextInt(6);
+            if (random.nextInt(5) == 0) {
+                writer.remove(key);
+            } else {
+                writer.put(key, "v" + round);
+            }
+            if (random.nextBoolean()) {
+                assertDoesNotThrow(writer::flush);
+            }
+            flock.step();
+        }
+        maps.forEach(map -> assertDoesNotThrow(map::flush));
+        flock.runUntilIdle();
+
+        for (final ReplicatedMap<String, String> map : maps) {
+            assertEquals(maps.get(0).snapshot(), map.snapshot());
+        }
+        assertFalse(maps.get(0).snapshot().isEmpty());
+    }
+}
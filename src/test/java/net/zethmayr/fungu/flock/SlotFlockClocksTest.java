@@ -0,0 +1,174 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlotFlockClocksTest {
+
+    private static final URI[] THREE = {URI.create("local:0"), URI.create("local:1"), URI.create("local:2")};
+
+    private static SlotFlockClocks member(final int slot) {
+        return new SlotFlockClocks(slot, new int[3], new long[3], THREE);
+    }
+
+    @Test
+    void new_givenFreeLocalSlot_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new SlotFlockClocks(1, new int[2], new long[2], new URI[]{THREE[0], null}));
+    }
+
+    @Test
+    void messageReceived_givenShorterVector_mergesCommonSlots() {
+        final SlotFlockClocks underTest = member(0);
+        final SlotClocks sent = new SlotClocks(1, new int[2], new long[]{0, 4});
+
+        final SlotClocks result = assertDoesNotThrow(() -> underTest.messageReceived(sent));
+
+        assertArrayEquals(new long[]{1, 4, 0}, result.values());
+    }
+
+    @Test
+    void messageReceived_givenLongerVector_growsAndMerges() {
+        final SlotFlockClocks underTest = member(0);
+        final SlotClocks sent = new SlotClocks(3, new int[]{0, 0, 0, 1}, new long[]{0, 0, 0, 2});
+
+        final SlotClocks result = assertDoesNotThrow(() -> underTest.messageReceived(sent));
+
+        assertArrayEquals(new long[]{1, 0, 0, 2}, result.values());
+        assertEquals(4, underTest.length());
+        assertEquals(1, underTest.epoch(3));
+    }
+
+    @Test
+    void messageReceived_givenRemotelyAdvancedOwnClock_throws() {
+        final SlotFlockClocks underTest = member(0);
+
+        assertThrows(PermanentNopException.class, () ->
+
+                underTest.messageReceived(new SlotClocks(1, new int[3], new long[]{1, 1, 0})));
+    }
+
+    @Test
+    void messageReceived_givenNewerOccupantOfOwnSlot_throws() {
+        final SlotFlockClocks underTest = member(0);
+
+        assertThrows(PermanentNopException.class, () ->
+
+                underTest.messageReceived(new SlotClocks(1, new int[]{1, 0, 0}, new long[]{0, 1, 0})));
+    }
+
+    @Test
+    void messageReceived_givenPreviousOccupantValues_ignoresThem() {
+        final SlotFlockClocks underTest = member(0);
+        underTest.retireSlot(2, 0);
+        underTest.claimSlot(URI.create("local:new"));
+        final SlotClocks stale = new SlotClocks(2, new int[]{0, 0, 0}, new long[]{0, 0, 9});
+
+        final SlotClocks result = assertDoesNotThrow(() -> underTest.messageReceived(stale));
+
+        assertEquals(0, result.values()[2]);
+        assertEquals(1, result.epochs()[2]);
+    }
+
+    @Test
+    void claimSlot_givenRetiredSlot_reusesItAtNextEpoch() {
+        final SlotFlockClocks underTest = member(0);
+        assertDoesNotThrow(() -> underTest.messageReceived(new SlotClocks(2, new int[3], new long[]{0, 0, 5})));
+        underTest.retireSlot(2, 0);
+
+        final SlotFlockClocks.SlotClaim result = underTest.claimSlot(URI.create("local:new"));
+
+        assertEquals(2, result.slot());
+        assertEquals(1, result.epoch());
+        assertEquals(3, underTest.length());
+        assertEquals(URI.create("local:new"), underTest.locations()[2]);
+        final SlotFlockClocks joined = SlotFlockClocks.joining(result, underTest.locations());
+        assertEquals(5, joined.localClock());
+        assertEquals(6, joined.localEvent());
+    }
+
+    @Test
+    void claimSlot_givenNoFreeSlot_appends() {
+        final SlotFlockClocks underTest = member(0);
+
+        final SlotFlockClocks.SlotClaim result = underTest.claimSlot(URI.create("local:new"));
+
+        assertEquals(3, result.slot());
+        assertEquals(4, underTest.length());
+        assertEquals(4, result.clocks().length());
+    }
+
+    @Test
+    void causalOrder_givenClocksAcrossAppend_padsMissingSlots() {
+        final SlotFlockClocks underTest = member(0);
+        final SlotClocks before = underTest.messageClocks();
+        underTest.claimSlot(URI.create("local:new"));
+        final SlotClocks after = underTest.messageClocks();
+
+        assertEquals(CausalOrder.BEFORE, before.causalOrder(after));
+        assertEquals(CausalOrder.AFTER, after.causalOrder(before));
+        assertEquals(-1, before.compareTo(after));
+        assertEquals(CausalOrder.EQUAL, before.causalOrder(new SlotClocks(0, new int[4], new long[]{1, 0, 0, 0})));
+    }
+
+    @Test
+    void causalOrder_givenClocksAcrossSlotReuse_ordersByEpochFirst() {
+        final SlotFlockClocks underTest = member(0);
+        assertDoesNotThrow(() -> underTest.messageReceived(new SlotClocks(2, new int[3], new long[]{0, 0, 9})));
+        final SlotClocks previousOccupant = underTest.messageClocks();
+        underTest.retireSlot(2, 0);
+        final SlotFlockClocks.SlotClaim claim = underTest.claimSlot(URI.create("local:new"));
+        final SlotFlockClocks joined = SlotFlockClocks.joining(claim, underTest.locations());
+        final SlotClocks newOccupant = joined.messageClocks();
+        final SlotClocks lowerValueNewerEpoch = new SlotClocks(2, new int[]{0, 0, 1}, new long[]{0, 0, 1});
+
+        assertEquals(CausalOrder.BEFORE, previousOccupant.causalOrder(newOccupant));
+        assertEquals(CausalOrder.CONCURRENT, previousOccupant.causalOrder(lowerValueNewerEpoch));
+        assertEquals(CausalOrder.AFTER, newOccupant.causalOrder(lowerValueNewerEpoch));
+    }
+
+    @Test
+    void slotClaimed_givenAnnouncement_acceptsNewMemberMessages() {
+        final SlotFlockClocks coordinator = member(0);
+        final SlotFlockClocks other = member(1);
+        final SlotClocks inFlight = other.messageClocks();
+        other.retireSlot(2, 0);
+        coordinator.retireSlot(2, 0);
+        final SlotFlockClocks.SlotClaim claim = coordinator.claimSlot(URI.create("local:new"));
+        other.slotClaimed(claim, URI.create("local:new"));
+        final SlotFlockClocks joined = SlotFlockClocks.joining(claim, coordinator.locations());
+
+        assertDoesNotThrow(() -> coordinator.messageReceived(inFlight));
+        final SlotClocks result = assertDoesNotThrow(() -> other.messageReceived(joined.messageClocks()));
+
+        assertEquals(1, other.epoch(2));
+        assertEquals(1, result.values()[2]);
+        assertEquals(URI.create("local:new"), other.locations()[2]);
+    }
+
+    @Test
+    void retireSlot_givenLocalSlot_throws() {
+        final SlotFlockClocks underTest = member(0);
+
+        assertThrows(IllegalStateException.class, () ->
+
+                underTest.retireSlot(0, 0));
+    }
+
+    @Test
+    void retireSlot_givenOlderEpoch_ignoresIt() {
+        final SlotFlockClocks underTest = member(0);
+        underTest.retireSlot(2, 0);
+        underTest.claimSlot(URI.create("local:new"));
+
+        underTest.retireSlot(2, 0);
+
+        assertEquals(URI.create("local:new"), underTest.locations()[2]);
+        assertEquals(3, underTest.claimSlot(URI.create("local:other")).slot());
+    }
+}
@@ -0,0 +1,90 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import static net.zethmayr.fungu.flock.FlockTreeUtilities.nthScatteredIndex;
+import static net.zethmayr.fungu.flock.SparseClocks.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparseClocksTest {
+
+    private static final int FIRST = nthScatteredIndex(0);
+    private static final int SECOND = nthScatteredIndex(1);
+    private static final int THIRD = nthScatteredIndex(2);
+    private static final int FAR = nthScatteredIndex(1000);
+
+    @Test
+    void of_givenKeysOutOfOrder_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                of(new int[]{SECOND, FIRST}, new long[]{1, 1}));
+    }
+
+    @Test
+    void of_givenZeroValues_dropsThem() {
+
+        final SparseClocks underTest = of(new int[]{FIRST, SECOND}, new long[]{0, 3});
+
+        assertEquals(1, underTest.size());
+        assertEquals(3L, underTest.get(SECOND));
+        assertEquals(0L, underTest.get(FIRST));
+    }
+
+    @Test
+    void fromDense_givenValues_keysByScatteredIndex() {
+
+        final SparseClocks underTest = fromDense(new long[]{4, 0, 6});
+
+        assertArrayEquals(new int[]{FIRST, THIRD}, underTest.keys());
+        assertArrayEquals(new long[]{4, 6}, underTest.values());
+    }
+
+    @Test
+    void increment_givenAbsentKey_insertsInOrder() {
+
+        final SparseClocks underTest = fromDense(new long[]{4, 0, 6}).increment(SECOND);
+
+        assertArrayEquals(new int[]{FIRST, SECOND, THIRD}, underTest.keys());
+        assertEquals(1L, underTest.get(SECOND));
+    }
+
+    @Test
+    void with_givenZero_removesEntry() {
+
+        final SparseClocks underTest = fromDense(new long[]{4, 0, 6}).with(FIRST, 0);
+
+        assertArrayEquals(new int[]{THIRD}, underTest.keys());
+    }
+
+    @Test
+    void merge_givenDisjointAndSharedKeys_returnsMaximums() {
+        final SparseClocks ours = of(new int[]{FIRST, SECOND}, new long[]{5, 1});
+        final SparseClocks theirs = of(new int[]{SECOND, FAR}, new long[]{3, 7});
+
+        final SparseClocks result = ours.merge(theirs);
+
+        assertArrayEquals(new int[]{FIRST, SECOND, FAR}, result.keys());
+        assertArrayEquals(new long[]{5, 3, 7}, result.values());
+    }
+
+    @Test
+    void causalOrder_givenAbsentKeys_treatsAsZero() {
+        final SparseClocks ours = of(new int[]{FIRST}, new long[]{5});
+        final SparseClocks theirs = of(new int[]{FIRST, FAR}, new long[]{5, 1});
+
+        assertEquals(CausalOrder.BEFORE, ours.causalOrder(theirs));
+        assertEquals(CausalOrder.AFTER, theirs.causalOrder(ours));
+        assertEquals(CausalOrder.EQUAL, ours.causalOrder(of(new int[]{FIRST, SECOND}, new long[]{5, 0})));
+        assertEquals(CausalOrder.CONCURRENT, ours.increment(SECOND).causalOrder(theirs));
+    }
+
+    @Test
+    void equals_givenSameEntries_isEqual() {
+
+        assertEquals(fromDense(new long[]{1, 2}), fromDense(new long[]{1, 2}));
+        assertEquals(fromDense(new long[]{1, 2}).hashCode(), fromDense(new long[]{1, 2}).hashCode());
+        assertNotEquals(fromDense(new long[]{1, 2}), fromDense(new long[]{1, 3}));
+        assertEquals(empty(), fromDense(new long[]{0, 0}));
+    }
+}
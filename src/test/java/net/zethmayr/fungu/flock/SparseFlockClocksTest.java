@@ -0,0 +1,126 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static net.zethmayr.fungu.flock.FlockTreeUtilities.nthScatteredIndex;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparseFlockClocksTest {
+
+    private static final int LOCAL = nthScatteredIndex(1);
+    private static final int REMOTE = nthScatteredIndex(2);
+    private static final int JOINED = nthScatteredIndex(5);
+
+    private SparseFlockClocks underTest;
+
+    private static SparseFlockClocks secondOfThree() {
+        return new SparseFlockClocks(LOCAL, SparseClocks.fromDense(new long[]{3, 4, 5}));
+    }
+
+    @Test
+    void localEvent_givenAnything_incrementsLocalCounter() {
+        underTest = secondOfThree();
+        final long prior = underTest.localClock();
+
+        final long result = underTest.localEvent();
+
+        assertEquals(prior + 1, result);
+        assertEquals(result, underTest.clockData().get(LOCAL));
+    }
+
+    @Test
+    void messageReceived_givenNewMember_mergesWithoutCoordination() {
+        underTest = secondOfThree();
+        final SparseClocks sent = SparseClocks.empty()
+                .with(REMOTE, 9)
+                .with(JOINED, 1);
+
+        final SparseClocks result = assertDoesNotThrow(() -> underTest.messageReceived(sent));
+
+        assertEquals(9L, result.get(REMOTE));
+        assertEquals(1L, result.get(JOINED));
+        assertEquals(5L, result.get(LOCAL));
+    }
+
+    @Test
+    void messageReceived_givenRemotelyAdvancedOwnClock_throws() {
+        underTest = secondOfThree();
+        final SparseClocks sent = underTest.clockData().increment(LOCAL);
+
+        assertThrows(PermanentNopException.class, () ->
+                underTest.messageReceived(sent));
+    }
+
+    @Test
+    void messageClocks_givenAnything_returnsIncrementedSnapshot() {
+        underTest = secondOfThree();
+        final SparseClocks prior = underTest.clockData();
+
+        final SparseClocks result = underTest.messageClocks();
+
+        assertThat(result.get(LOCAL), greaterThan(prior.get(LOCAL)));
+        assertEquals(CausalOrder.AFTER, result.causalOrder(prior));
+        assertSame(result, underTest.clockData());
+    }
+
+    @Test
+    void compact_givenRetiredEntry_dropsItAndStripsReceivedValues() {
+        underTest = secondOfThree();
+        final SparseClocks stale = underTest.clockData();
+
+        underTest.compact(REMOTE, 5);
+
+        assertEquals(0L, underTest.clockData().get(REMOTE));
+        assertEquals(2, underTest.clockData().size());
+        final SparseClocks result = assertDoesNotThrow(() -> underTest.messageReceived(stale));
+        assertEquals(0L, result.get(REMOTE));
+        assertEquals(Map.of(REMOTE, 5L), underTest.compacted());
+    }
+
+    @Test
+    void compact_whenKeyResumed_mergesNewValues() {
+        underTest = secondOfThree();
+        underTest.compact(REMOTE, 5);
+        final SparseClocks resumed = SparseClocks.empty().with(REMOTE, 6);
+
+        final SparseClocks result = assertDoesNotThrow(() -> underTest.messageReceived(resumed));
+
+        assertEquals(6L, result.get(REMOTE));
+        assertTrue(underTest.compacted().isEmpty());
+    }
+
+    @Test
+    void release_givenCompactedEntry_forgetsIt() {
+        underTest = secondOfThree();
+        underTest.compact(REMOTE, 5);
+
+        underTest.release(REMOTE, 5);
+
+        assertTrue(underTest.compacted().isEmpty());
+        assertEquals(0L, underTest.clockData().get(REMOTE));
+    }
+
+    @Test
+    void release_givenLesserFinalValue_keepsEntry() {
+        underTest = secondOfThree();
+        underTest.compact(REMOTE, 5);
+        underTest.compact(REMOTE, 8);
+
+        underTest.release(REMOTE, 5);
+
+        assertEquals(Map.of(REMOTE, 8L), underTest.compacted());
+    }
+
+    @Test
+    void compact_givenLocalKey_throws() {
+        underTest = secondOfThree();
+
+        assertThrows(IllegalStateException.class, () ->
+
+                underTest.compact(LOCAL, 5));
+    }
+}
@@ -0,0 +1,97 @@
+package net.zethmayr.fungu.flock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static net.zethmayr.fungu.flock.FlockTreeUtilities.nthScatteredIndex;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TombstoneCompactionTest {
+
+    private static final int A = nthScatteredIndex(0);
+    private static final int B = nthScatteredIndex(1);
+    private static final int C = nthScatteredIndex(2);
+    private static final int D = nthScatteredIndex(3);
+
+    private static SparseClocks knowing(final int key, final long value) {
+        return SparseClocks.empty().with(key, value);
+    }
+
+    @Test
+    void observed_whenEveryLiveMemberHasFinalValue_provesTombstone() {
+        final TombstoneCompaction underTest = new TombstoneCompaction(A, B, C);
+        assertTrue(underTest.retired(C, 7).isEmpty());
+
+        assertTrue(underTest.observed(A, knowing(C, 7)).isEmpty());
+        assertTrue(underTest.observed(B, knowing(C, 6)).isEmpty());
+        final List<TombstoneCompaction.Proof> result = underTest.observed(B, knowing(C, 8));
+
+        assertEquals(List.of(new TombstoneCompaction.Proof(C, 7)), result);
+        assertEquals(0, underTest.pending());
+    }
+
+    @Test
+    void observed_whenEveryLiveMemberDroppedFinalValue_releasesTombstone() {
+        final TombstoneCompaction underTest = new TombstoneCompaction(A, B, C);
+        underTest.retired(C, 7);
+        underTest.observed(A, knowing(C, 7));
+        assertEquals(1, underTest.observed(B, knowing(C, 7)).size());
+        assertEquals(1, underTest.draining());
+
+        underTest.observed(A, knowing(C, 7));
+        underTest.observed(A, SparseClocks.empty().with(A, 3));
+        assertTrue(underTest.released().isEmpty());
+        underTest.observed(B, knowing(C, 9));
+
+        assertEquals(List.of(new TombstoneCompaction.Proof(C, 7)), underTest.released());
+        assertTrue(underTest.released().isEmpty());
+        assertEquals(0, underTest.draining());
+    }
+
+    @Test
+    void joined_whileDraining_awaitsNewMember() {
+        final TombstoneCompaction underTest = new TombstoneCompaction(A, B);
+        underTest.retired(B, 3);
+        underTest.observed(A, knowing(B, 3));
+        underTest.joined(D);
+        underTest.observed(A, SparseClocks.empty());
+
+        assertTrue(underTest.released().isEmpty());
+
+        underTest.observed(D, SparseClocks.empty());
+        assertEquals(1, underTest.released().size());
+    }
+
+    @Test
+    void joined_whilePending_awaitsNewMember() {
+        final TombstoneCompaction underTest = new TombstoneCompaction(A, B);
+        underTest.retired(B, 3);
+        underTest.joined(D);
+
+        assertTrue(underTest.observed(A, knowing(B, 3)).isEmpty());
+
+        assertEquals(1, underTest.observed(D, knowing(B, 3)).size());
+    }
+
+    @Test
+    void retired_givenAwaitedMember_provesOtherTombstones() {
+        final TombstoneCompaction underTest = new TombstoneCompaction(A, B, C);
+        underTest.retired(C, 2);
+        underTest.observed(A, knowing(C, 2));
+
+        final List<TombstoneCompaction.Proof> result = underTest.retired(B, 4);
+
+        assertEquals(List.of(new TombstoneCompaction.Proof(C, 2)), result);
+        assertEquals(1, underTest.pending());
+    }
+
+    @Test
+    void retired_givenUnknownMember_throws() {
+        final TombstoneCompaction underTest = new TombstoneCompaction(A);
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                underTest.retired(B, 1));
+    }
+}
@@ -0,0 +1,37 @@
+package net.zethmayr.fungu.flock.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChurnBenchmarkTest {
+
+    @Test
+    void compare_givenHighChurn_runsSameSequenceOnBoth() {
+
+        final List<ChurnBenchmark.ChurnReport> result = ChurnBenchmark.compare(8, 2_000, 0.2, 11L);
+
+        final ChurnBenchmark.ChurnReport vectors = result.get(0);
+        final ChurnBenchmark.ChurnReport stamps = result.get(1);
+        assertEquals("FlockClocks", vectors.clocks());
+        assertEquals("IntervalTreeClock", stamps.clocks());
+        assertEquals(vectors.joins(), stamps.joins());
+        assertEquals(vectors.leaves(), stamps.leaves());
+        assertEquals(vectors.finalMembers(), stamps.finalMembers());
+        assertThat(vectors.joins(), greaterThan(0));
+        assertThat(stamps.meanMessageBytes(), greaterThan(0.0));
+        assertThat(stamps.operationsPerSecond(), greaterThan(0.0));
+    }
+
+    @Test
+    void compare_givenTooFewMembers_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                ChurnBenchmark.compare(1, 10, 0.1, 1L));
+    }
+}
@@ -0,0 +1,27 @@
+package net.zethmayr.fungu.flock.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkConditionsTest {
+
+    @Test
+    void networkConditions_givenNegativeLatency_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new NetworkConditions(-1, 0, 0.0, 0.0, 0));
+    }
+
+    @Test
+    void networkConditions_givenImprobableLoss_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new NetworkConditions(1, 0, 1.5, 0.0, 0));
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new NetworkConditions(1, 0, 0.0, Double.NaN, 0));
+    }
+}
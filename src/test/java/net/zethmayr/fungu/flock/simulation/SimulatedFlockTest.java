@@ -0,0 +1,104 @@
+package net.zethmayr.fungu.flock.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulatedFlockTest {
+
+    private static final NetworkConditions LOSSY = new NetworkConditions(2, 10, 0.2, 0.1, 50);
+
+    @Test
+    void run_givenPerfectNetwork_deliversEveryMessage() {
+        final List<String> delivered = new ArrayList<>();
+        final SimulatedFlock<String> underTest = new SimulatedFlock<>(4, NetworkConditions.PERFECT, 1L,
+                (m, t) -> delivered.add(m.index() + "<" + t));
+
+        final SimulationReport report = underTest.run(5, 3, m -> "from " + m.index());
+
+        assertEquals(4 * 5 * 3, delivered.size());
+        assertEquals(0, report.lost());
+        assertEquals(0, report.rejected());
+        assertEquals(1.0, report.meanTransitTicks());
+        assertThat(report.convergenceTicks(), greaterThanOrEqualTo(0L));
+        underTest.members().forEach(m -> assertEquals(15, m.received()));
+    }
+
+    @Test
+    void run_givenLossyNetwork_convergesByHeartbeat() {
+        final SimulatedFlock<Long> underTest = new SimulatedFlock<>(6, LOSSY, 7L, (m, t) -> {
+        });
+
+        final SimulationReport report = underTest.run(20, 5, SimulatedMember::received);
+
+        assertThat(report.lost(), greaterThan(0L));
+        assertThat(report.convergenceTicks(), greaterThanOrEqualTo(0L));
+        assertThat(report.sent(), greaterThanOrEqualTo(report.delivered() + report.lost() + report.rejected()));
+    }
+
+    @Test
+    void run_givenSameSeed_repeatsDeliveries() {
+        final List<String> first = new ArrayList<>();
+        final List<String> second = new ArrayList<>();
+
+        final SimulationReport firstReport = new SimulatedFlock<String>(5, LOSSY, 3L, (m, t) -> first.add(m.index() + "<" + t))
+                .run(10, 4, m -> m.index() + ":" + m.clocks().localClock());
+        final SimulationReport secondReport = new SimulatedFlock<String>(5, LOSSY, 3L, (m, t) -> second.add(m.index() + "<" + t))
+                .run(10, 4, m -> m.index() + ":" + m.clocks().localClock());
+
+        assertEquals(first, second);
+        assertEquals(firstReport.delivered(), secondReport.delivered());
+        assertEquals(firstReport.convergenceTicks(), secondReport.convergenceTicks());
+    }
+
+    @Test
+    void run_givenTotalLoss_doesNotConverge() {
+        final SimulatedFlock<Long> underTest = new SimulatedFlock<>(2, new NetworkConditions(1, 0, 1.0, 0.0, 0), 0L,
+                (m, t) -> {
+                });
+
+        final SimulationReport report = underTest.run(1, 1, SimulatedMember::received);
+
+        assertEquals(-1, report.convergenceTicks());
+        assertEquals(0, report.delivered());
+    }
+
+    @Test
+    void benchmark_givenSizes_reportsEachSize() {
+
+        final List<SimulationReport> reports = SimulatedFlock.benchmark(new int[]{2, 8, 32}, LOSSY, 11L, 10, 5);
+
+        assertEquals(3, reports.size());
+        assertEquals(32, reports.get(2).members());
+        reports.forEach(r -> {
+            assertThat(r.convergenceTicks(), greaterThanOrEqualTo(0L));
+            assertThat(r.mergesPerSecond(), greaterThan(0.0));
+            assertThat(r.meanMergeNanos(), greaterThan(0.0));
+        });
+    }
+
+    @Test
+    void simulatedFlock_givenNoMembers_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new SimulatedFlock<String>(0, NetworkConditions.PERFECT, 0L, (m, t) -> {
+                }));
+    }
+
+    @Test
+    void joinFlock_whenSimulated_throws() {
+        final SimulatedMember<String> member = new SimulatedFlock<String>(1, NetworkConditions.PERFECT, 0L, (m, t) -> {
+        }).members().get(0);
+
+        assertThrows(UnsupportedOperationException.class, () ->
+
+                member.joinFlock(List::of));
+    }
+}
@@ -0,0 +1,333 @@
+package net.zethmayr.fungu.flock.transport;
+
+import net.zethmayr.fungu.flock.EventClocks;
+import net.zethmayr.fungu.flock.PermanentNopException;
+import net.zethmayr.fungu.flock.RetryableNopException;
+import net.zethmayr.fungu.flock.config.HasKnownMembers;
+import net.zethmayr.fungu.flock.config.KnownMember;
+import net.zethmayr.fungu.flock.config.KnownMemberConfigProps;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioFlockTransportTest {
+
+    private final List<NioFlockTransport<String>> transports = new ArrayList<>();
+    private final List<List<String>> received = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() throws IOException {
+        for (final NioFlockTransport<String> transport : transports) {
+            transport.close();
+        }
+    }
+
+    private static HasKnownMembers loopback(final int size) throws IOException {
+        final List<KnownMember> members = new ArrayList<>(size);
+        for (int n = 0; n < size; n++) {
+            final int port;
+            try (final ServerSocketChannel probe = ServerSocketChannel.open()) {
+                probe.bind(new InetSocketAddress("127.0.0.1", 0));
+                port = ((InetSocketAddress) probe.getLocalAddress()).getPort();
+            }
+            final KnownMemberConfigProps member = new KnownMemberConfigProps();
+            member.setIndex(n);
+            member.setLocation("tcp://127.0.0.1:" + port);
+            member.setInitialValue(0L);
+            members.add(member);
+        }
+        return () -> members;
+    }
+
+    private NioFlockTransport<String> transport() {
+        return transport(NioFlockTransport.DEFAULT_QUEUE_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    private NioFlockTransport<String> transport(final int queueCapacity, final OverflowPolicy policy) {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        received.add(messages);
+        final NioFlockTransport<String> transport = new NioFlockTransport<>(PayloadCodec.utf8(), (m, c) -> messages.add(m),
+                queueCapacity, policy);
+        transports.add(transport);
+        return transport;
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat("timed out", System.nanoTime(), lessThan(deadline));
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void sendMessage_givenThreeMembers_deliversInOrderAndMergesClocks() throws Exception {
+        final HasKnownMembers flock = loopback(3);
+        for (int n = 0; n < 3; n++) {
+            transport().reJoinFlock(n, flock);
+        }
+
+        for (int k = 0; k < 500; k++) {
+            transports.get(0).sendMessage("0:" + k);
+            transports.get(1).sendMessage("1:" + k);
+        }
+
+        await(() -> received.get(2).size() == 1000 && received.get(0).size() == 500 && received.get(1).size() == 500);
+        final List<String> fromZero = received.get(2).stream().filter(m -> m.startsWith("0:")).toList();
+        for (int k = 0; k < 500; k++) {
+            assertEquals("0:" + k, fromZero.get(k));
+        }
+        assertThat(transports.get(2).clocks().clocks()[0], greaterThanOrEqualTo(500L));
+        assertThat(transports.get(2).clocks().clocks()[1], greaterThanOrEqualTo(500L));
+        assertEquals(0, transports.get(2).rejected());
+        assertThat(transports.get(0).writes(), lessThan(1000L));
+    }
+
+    @Test
+    void sendMessage_givenLargePayload_deliversWhole() throws Exception {
+        final HasKnownMembers flock = loopback(2);
+        transport().reJoinFlock(0, flock);
+        transport().reJoinFlock(1, flock);
+        final String large = "x".repeat(300_000);
+
+        transports.get(0).sendMessage(large);
+        transports.get(0).sendMessage("after");
+
+        await(() -> received.get(1).size() == 2);
+        assertEquals(large, received.get(1).get(0));
+        assertEquals("after", received.get(1).get(1));
+    }
+
+    @Test
+    void sendMessage_givenLateMember_deliversOnceConnected() throws Exception {
+        final HasKnownMembers flock = loopback(2);
+        transport().reJoinFlock(0, flock);
+        transports.get(0).sendMessage("early");
+        Thread.sleep(100);
+
+        transport().reJoinFlock(1, flock);
+
+        await(() -> received.get(1).size() == 1);
+        assertEquals("early", received.get(1).get(0));
+    }
+
+    @Test
+    void sendMessageAsync_givenManyInFlight_completesWhenAcknowledged() throws Exception {
+        final HasKnownMembers flock = loopback(3);
+        for (int n = 0; n < 3; n++) {
+            transport().reJoinFlock(n, flock);
+        }
+        final List<CompletableFuture<EventClocks>> sends = new ArrayList<>();
+
+        for (int k = 0; k < 1000; k++) {
+            sends.add(transports.get(0).sendMessageAsync("0:" + k));
+        }
+
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        for (int k = 1; k < sends.size(); k++) {
+            assertThat(sends.get(k).get().localClock(), greaterThan(sends.get(k - 1).get().localClock()));
+        }
+        assertEquals(0, transports.get(0).inFlight());
+        assertEquals(1000, received.get(1).size());
+        assertEquals(1000, received.get(2).size());
+    }
+
+    @Test
+    void sendMessageAsync_givenAbsentMemberAndDropOldest_dropsOnlyForThatMember() throws Exception {
+        final HasKnownMembers flock = loopback(3);
+        final NioFlockTransport<String> underTest = transport(8, OverflowPolicy.DROP_OLDEST);
+        underTest.reJoinFlock(0, flock);
+        transport().reJoinFlock(1, flock);
+        final List<CompletableFuture<EventClocks>> sends = new ArrayList<>();
+
+        for (int k = 0; k < 100; k++) {
+            sends.add(underTest.sendMessageAsync("0:" + k));
+            final int sent = k + 1;
+            await(() -> received.get(1).size() == sent);
+        }
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class, () ->
+                sends.get(0).get(10, TimeUnit.SECONDS));
+        assertInstanceOf(RetryableNopException.class, thrown.getCause());
+        final OutboundQueue.Metrics absent = underTest.queueMetrics().get(2);
+        assertEquals(8, absent.depth());
+        assertEquals(92, absent.dropped());
+        assertEquals(0, underTest.queueMetrics().get(1).dropped());
+    }
+
+    @Test
+    void sendMessageAsync_givenDropOldestRacingSelector_deliversExactlyTheCompletedSends() throws Exception {
+        final HasKnownMembers flock = loopback(2);
+        final NioFlockTransport<String> underTest = transport(2, OverflowPolicy.DROP_OLDEST);
+        underTest.reJoinFlock(0, flock);
+        transport().reJoinFlock(1, flock);
+        final List<CompletableFuture<EventClocks>> sends = new ArrayList<>();
+
+        for (int k = 0; k < 5000; k++) {
+            sends.add(underTest.sendMessageAsync("0:" + k));
+        }
+
+        await(() -> sends.stream().allMatch(CompletableFuture::isDone));
+        final List<String> delivered = List.copyOf(received.get(1));
+        for (int k = 0; k < sends.size(); k++) {
+            assertEquals(!sends.get(k).isCompletedExceptionally(), delivered.contains("0:" + k), "0:" + k);
+        }
+    }
+
+    @Test
+    void sendMessage_givenAbsentMemberAndFail_throwsButDeliversToOthers() throws Exception {
+        final HasKnownMembers flock = loopback(3);
+        final NioFlockTransport<String> underTest = transport(4, OverflowPolicy.FAIL);
+        underTest.reJoinFlock(0, flock);
+        transport().reJoinFlock(1, flock);
+        for (int k = 0; k < 4; k++) {
+            underTest.sendMessage("0:" + k);
+        }
+        await(() -> received.get(1).size() == 4);
+
+        assertThrows(RetryableNopException.class, () ->
+
+                underTest.sendMessage("0:4"));
+        await(() -> received.get(1).size() == 5);
+        assertEquals(1, underTest.queueMetrics().get(2).rejected());
+    }
+
+    @Test
+    void sendMessageAsync_givenDefaultPolicyAndAbsentMember_keepsDeliveringToOthers() throws Exception {
+        final HasKnownMembers flock = loopback(3);
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        final NioFlockTransport<String> underTest = new NioFlockTransport<>(PayloadCodec.utf8(), (m, c) -> {
+        });
+        transports.add(underTest);
+        received.add(messages);
+        underTest.reJoinFlock(0, flock);
+        transport().reJoinFlock(1, flock);
+        final int count = NioFlockTransport.DEFAULT_QUEUE_CAPACITY + 10;
+
+        final CompletableFuture<Void> sending = CompletableFuture.runAsync(() -> {
+            for (int k = 0; k < count; k++) {
+                underTest.sendMessageAsync("0:" + k);
+            }
+        });
+
+        assertNull(sending.get(10, TimeUnit.SECONDS));
+        // the present member's queue may also overflow if the sender outpaces the selector
+        await(() -> received.get(1).size() + underTest.queueMetrics().get(1).dropped() == count);
+        assertEquals(10, underTest.queueMetrics().get(2).dropped());
+    }
+
+    @Test
+    void sendMessage_givenBlockedOnAbsentMember_failsWhenClosed() throws Exception {
+        final HasKnownMembers flock = loopback(2);
+        final NioFlockTransport<String> underTest = transport(2, OverflowPolicy.BLOCK);
+        underTest.reJoinFlock(0, flock);
+        underTest.sendMessage("0:0");
+        underTest.sendMessage("0:1");
+        final CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+            try {
+                underTest.sendMessage("0:2");
+            } catch (final RetryableNopException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        underTest.close();
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class, () ->
+                blocked.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(RetryableNopException.class, thrown.getCause().getCause());
+    }
+
+    @Test
+    void sendMessageAsync_givenRejectingMember_completesExceptionally() throws Exception {
+        final HasKnownMembers flock = loopback(3);
+        final HasKnownMembers smaller = () -> flock.getKnownMembers().subList(0, 2);
+        transport().reJoinFlock(0, smaller);
+        transport().reJoinFlock(1, flock);
+
+        final CompletableFuture<EventClocks> sent = transports.get(0).sendMessageAsync("mismatched");
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class, () ->
+                sent.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(PermanentNopException.class, thrown.getCause());
+        assertEquals(1, transports.get(1).rejected());
+    }
+
+    @Test
+    void sendMessageAsync_whenClosedBeforeAcknowledgement_completesExceptionally() throws Exception {
+        final HasKnownMembers flock = loopback(2);
+        final NioFlockTransport<String> underTest = transport();
+        underTest.reJoinFlock(0, flock);
+        final CompletableFuture<EventClocks> sent = underTest.sendMessageAsync("unheard");
+
+        underTest.close();
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class, sent::get);
+        assertInstanceOf(IOException.class, thrown.getCause());
+    }
+
+    @Test
+    void sendMessageAsync_whenNotJoined_completesExceptionally() {
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class, () ->
+
+                transport().sendMessageAsync("nowhere").get());
+        assertInstanceOf(RetryableNopException.class, thrown.getCause());
+    }
+
+    @Test
+    void reJoinFlockAsync_whenJoined_completesExceptionally() throws Exception {
+        final HasKnownMembers flock = loopback(2);
+        final NioFlockTransport<String> underTest = transport();
+        underTest.reJoinFlockAsync(0, flock).get();
+
+        assertTrue(underTest.reJoinFlockAsync(0, flock).isCompletedExceptionally());
+        assertTrue(underTest.joinFlockAsync(flock).isCompletedExceptionally());
+    }
+
+    @Test
+    void sendMessage_whenNotJoined_throws() {
+
+        assertThrows(RetryableNopException.class, () ->
+
+                transport().sendMessage("nowhere"));
+    }
+
+    @Test
+    void reJoinFlock_whenJoined_throws() throws Exception {
+        final HasKnownMembers flock = loopback(2);
+        final NioFlockTransport<String> underTest = transport();
+        underTest.reJoinFlock(0, flock);
+
+        assertThrows(IllegalStateException.class, () ->
+
+                underTest.reJoinFlock(0, flock));
+    }
+
+    @Test
+    void joinFlock_whenCalled_throws() throws Exception {
+        final HasKnownMembers flock = loopback(1);
+
+        assertThrows(UnsupportedOperationException.class, () ->
+
+                transport().joinFlock(flock));
+    }
+}
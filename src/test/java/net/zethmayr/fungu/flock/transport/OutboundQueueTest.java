@@ -0,0 +1,123 @@
+package net.zethmayr.fungu.flock.transport;
+
+import net.zethmayr.fungu.flock.RetryableNopException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundQueueTest {
+
+    @Test
+    void new_givenNonPositiveCapacity_throws() {
+
+        assertThrows(IllegalArgumentException.class, () ->
+
+                new OutboundQueue<String>(0, OverflowPolicy.BLOCK));
+    }
+
+    @Test
+    void poll_givenOffersBeyondWrap_returnsInOrder() throws Exception {
+        final OutboundQueue<Integer> underTest = new OutboundQueue<>(3, OverflowPolicy.FAIL);
+        for (int n = 0; n < 10; n++) {
+            assertNull(underTest.offer(n));
+
+            assertEquals(n, underTest.poll());
+        }
+        assertNull(underTest.poll());
+        assertNull(underTest.peek());
+        assertTrue(underTest.isEmpty());
+    }
+
+    @Test
+    void offer_givenFullAndDropOldest_returnsDiscarded() throws Exception {
+        final OutboundQueue<String> underTest = new OutboundQueue<>(2, OverflowPolicy.DROP_OLDEST);
+        underTest.offer("a");
+        underTest.offer("b");
+
+        assertEquals("a", underTest.offer("c"));
+
+        assertEquals("b", underTest.peek());
+        assertEquals(new OutboundQueue.Metrics(2, 2, 2, 1, 0, 0), underTest.metrics());
+    }
+
+    @Test
+    void offer_givenFullAndFail_throwsRetryable() throws Exception {
+        final OutboundQueue<String> underTest = new OutboundQueue<>(1, OverflowPolicy.FAIL);
+        underTest.offer("a");
+
+        assertThrows(RetryableNopException.class, () ->
+
+                underTest.offer("b"));
+        assertEquals(1, underTest.size());
+        assertEquals(1, underTest.metrics().rejected());
+    }
+
+    @Test
+    void offer_givenFullAndBlock_waitsForPoll() throws Exception {
+        final OutboundQueue<String> underTest = new OutboundQueue<>(1, OverflowPolicy.BLOCK);
+        underTest.offer("a");
+        final CompletableFuture<String> blocked = CompletableFuture.supplyAsync(() -> {
+            try {
+                return underTest.offer("b");
+            } catch (final RetryableNopException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(blocked.isDone());
+
+        assertEquals("a", underTest.poll());
+
+        assertNull(blocked.get(10, TimeUnit.SECONDS));
+        assertEquals("b", underTest.poll());
+        assertEquals(1, underTest.metrics().blocked());
+    }
+
+    @Test
+    void close_givenBlockedOffer_failsIt() throws Exception {
+        final OutboundQueue<String> underTest = new OutboundQueue<>(1, OverflowPolicy.BLOCK);
+        underTest.offer("a");
+        final CompletableFuture<String> blocked = CompletableFuture.supplyAsync(() -> {
+            try {
+                return underTest.offer("b");
+            } catch (final RetryableNopException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(blocked.isDone());
+
+        underTest.close();
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class, () ->
+                blocked.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(RetryableNopException.class, thrown.getCause().getCause());
+        assertThrows(RetryableNopException.class, () -> underTest.offer("c"));
+        assertEquals("a", underTest.poll());
+    }
+
+    @Test
+    void awaitRoom_givenFull_waitsForPollWithoutAdding() throws Exception {
+        final OutboundQueue<String> underTest = new OutboundQueue<>(1, OverflowPolicy.BLOCK);
+        underTest.offer("a");
+        assertFalse(underTest.hasRoom());
+        final CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+            try {
+                underTest.awaitRoom();
+            } catch (final RetryableNopException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(waiting.isDone());
+
+        underTest.poll();
+
+        assertNull(waiting.get(10, TimeUnit.SECONDS));
+        assertTrue(underTest.isEmpty());
+    }
+}
@@ -0,0 +1,15 @@
+package net.zethmayr.fungu.flock.transport;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadCodecTest {
+
+    @Test
+    void utf8_givenEncodedString_decodesSameString() {
+        final PayloadCodec<String> underTest = PayloadCodec.utf8();
+
+        assertEquals("\u0127ello", underTest.decode(underTest.encode("\u0127ello")));
+    }
+}